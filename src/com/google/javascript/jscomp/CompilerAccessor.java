@@ -1,5 +1,7 @@
 package com.google.javascript.jscomp;
 
+import com.google.javascript.rhino.Node;
+
 /**
  * Helpers to access package-private methods
  */
@@ -11,4 +13,14 @@ public class CompilerAccessor {
   public static boolean addNewSourceAst(Compiler compiler, JsAst ast) {
     return compiler.addNewSourceAst(ast);
   }
+
+  public static ChangeVerifier snapshotForChangeVerification(
+      Compiler compiler, Node root) {
+    return new ChangeVerifier(compiler).snapshot(root);
+  }
+
+  public static void checkRecordedChanges(
+      ChangeVerifier changeVerifier, String passName, Node root) {
+    changeVerifier.checkRecordedChanges(passName, root);
+  }
 }
@@ -1,16 +1,138 @@
 package info.persistent.jscomp;
 
+import com.google.common.base.Charsets;
+import com.google.common.base.Splitter;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.io.Files;
+import com.google.gson.stream.JsonWriter;
 import com.google.javascript.jscomp.Compiler;
 import com.google.javascript.jscomp.CompilerOptions;
 import com.google.javascript.jscomp.SourceFile;
+import com.google.javascript.rhino.Node;
+import com.google.javascript.rhino.Token;
 
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+/**
+ * Dumps the AST of the JavaScript read from stdin to stdout. Supported flags:
+ *
+ * --format=text|json: one indented line per node (the default), or one JSON
+ *     object per node
+ * --tokens=NAME,STRING: only output nodes with the given tokens
+ * --lines=10-20: only output nodes that start within the given lines (either
+ *     end may also have a 0-based column, e.g. --lines=10:4-20:8)
+ *
+ * If files (or globs such as src/**.js) are passed in, or a file with a list
+ * of them via --file_list=files.txt, they are dumped instead of stdin. They
+ * are parsed in parallel (on --threads=N threads), and either written to
+ * stdout in order (each preceded by its path if there are several), or to one
+ * dump per file with --output_dir=dir. The dumps in the output directory have
+ * the files' paths relative to --base_dir=dir (the working directory by
+ * default), so only files in it can be dumped there.
+ */
 public class AstDump {
+  private final Debug.DumpOptions dumpOptions;
+  private final int threadCount;
+  private final File baseDir;
+
+  AstDump(Debug.DumpOptions dumpOptions, int threadCount, File baseDir) {
+    this.dumpOptions = dumpOptions;
+    this.threadCount = threadCount;
+    this.baseDir = baseDir;
+  }
+
   public static void main(String[] args) throws Exception {
+    Debug.DumpOptions dumpOptions = new Debug.DumpOptions();
+    List<String> paths = Lists.newArrayList();
+    File outputDir = null;
+    File baseDir = new File(".");
+    int threadCount = Runtime.getRuntime().availableProcessors();
+    for (String arg : args) {
+      if (arg.startsWith("--format=")) {
+        dumpOptions.format = Debug.DumpFormat.valueOf(
+            arg.substring("--format=".length()).toUpperCase());
+      } else if (arg.startsWith("--tokens=")) {
+        for (String token :
+            Splitter.on(',').split(arg.substring("--tokens=".length()))) {
+          dumpOptions.tokens.add(Token.valueOf(token.toUpperCase()));
+        }
+      } else if (arg.startsWith("--lines=")) {
+        List<String> lines = Splitter.on('-').splitToList(
+            arg.substring("--lines=".length()));
+        List<String> start = Splitter.on(':').splitToList(lines.get(0));
+        List<String> end = lines.size() > 1 ?
+            Splitter.on(':').splitToList(lines.get(1)) : start;
+        dumpOptions.startLine = Integer.parseInt(start.get(0));
+        if (start.size() > 1) {
+          dumpOptions.startColumn = Integer.parseInt(start.get(1));
+        }
+        dumpOptions.endLine = Integer.parseInt(end.get(0));
+        if (end.size() > 1) {
+          dumpOptions.endColumn = Integer.parseInt(end.get(1));
+        }
+      } else if (arg.startsWith("--file_list=")) {
+        for (String path : Files.readLines(
+            new File(arg.substring("--file_list=".length())), Charsets.UTF_8)) {
+          if (!path.trim().isEmpty()) {
+            paths.add(path.trim());
+          }
+        }
+      } else if (arg.startsWith("--output_dir=")) {
+        outputDir = new File(arg.substring("--output_dir=".length()));
+      } else if (arg.startsWith("--base_dir=")) {
+        baseDir = new File(arg.substring("--base_dir=".length()));
+      } else if (arg.startsWith("--threads=")) {
+        threadCount = Integer.parseInt(arg.substring("--threads=".length()));
+      } else if (!arg.startsWith("--")) {
+        paths.add(arg);
+      } else {
+        System.err.println("Usage: AstDump [--format=text|json] " +
+            "[--tokens=NAME,...] [--lines=START[:COL]-END[:COL]] < input.js\n" +
+            "       AstDump [flags] [--threads=N] [--output_dir=DIR] " +
+            "[--base_dir=DIR] [--file_list=FILE] [file or glob...]");
+        System.exit(-1);
+      }
+    }
+
+    Writer out = new BufferedWriter(
+        new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+    AstDump astDump = new AstDump(dumpOptions, threadCount, baseDir);
+    if (paths.isEmpty()) {
+      astDump.dumpStdin(out);
+    } else if (!astDump.dumpFiles(
+        expandGlobs(paths), outputDir, out, System.err)) {
+      out.flush();
+      System.exit(-1);
+    }
+    out.flush();
+  }
+
+  private void dumpStdin(Writer out) throws IOException {
     Compiler compiler = new Compiler(System.err);
     compiler.disableThreads(); // Makes errors easier to track down.
 
@@ -18,13 +140,211 @@ public class AstDump {
         SourceFile.fromInputStream("stdin", System.in, StandardCharsets.UTF_8)
     );
 
+    compiler.compile(
+        Collections.<SourceFile>emptyList(), inputs, createOptions());
+    Debug.dump(compiler.getRoot(), dumpOptions, out);
+    if (dumpOptions.format == Debug.DumpFormat.TEXT) {
+      out.append("\n");
+    }
+  }
+
+  /**
+   * Dumps the given files, either in order to the output, or to files of the
+   * same name (with an .ast or .ast.json extension) in the output directory.
+   * Parse errors are reported per file (in order too). Returns true if there
+   * were none.
+   */
+  boolean dumpFiles(List<String> paths, File outputDir, Writer out,
+      PrintStream err) throws IOException, InterruptedException {
+    List<File> outputFiles = null;
+    if (outputDir != null) {
+      outputFiles = getOutputFiles(paths, outputDir, err);
+      if (outputFiles == null) {
+        return false;
+      }
+    }
+    ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+    try {
+      // Dumps for the output are written to temporary files (so that large
+      // ones aren't held in memory), and only a bounded number of them are
+      // done ahead of the one being copied to the output.
+      Deque<Future<FileDump>> pending = new ArrayDeque<>();
+      boolean success = true;
+      for (int i = 0; i < paths.size(); i++) {
+        String path = paths.get(i);
+        File outputFile = outputFiles != null ? outputFiles.get(i) : null;
+        boolean withHeader = outputDir == null && paths.size() > 1;
+        pending.add(executor.submit(
+            () -> dumpFile(path, outputFile, withHeader)));
+        if (pending.size() > threadCount * 2) {
+          success &= writeFileDump(pending.remove(), out, err);
+        }
+      }
+      while (!pending.isEmpty()) {
+        success &= writeFileDump(pending.remove(), out, err);
+      }
+      return success;
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Returns the dump file of each path (the path relative to the base
+   * directory, in the output directory). Paths outside of the base directory
+   * and ones that are the same file as an earlier path are reported, and null
+   * is returned if there are any.
+   */
+  private List<File> getOutputFiles(
+      List<String> paths, File outputDir, PrintStream err) {
+    String extension =
+        dumpOptions.format == Debug.DumpFormat.JSON ? ".ast.json" : ".ast";
+    Path basePath = baseDir.toPath().toAbsolutePath().normalize();
+    Map<Path, String> pathsByOutputPath = Maps.newHashMap();
+    List<File> outputFiles = Lists.newArrayList();
+    boolean valid = true;
+    for (String path : paths) {
+      Path relativePath = basePath.relativize(
+          Paths.get(path).toAbsolutePath().normalize());
+      if (relativePath.startsWith("..")) {
+        err.println(path + ": not in the base directory " + basePath);
+        valid = false;
+        continue;
+      }
+      Path outputPath = outputDir.toPath().resolve(relativePath + extension);
+      String otherPath = pathsByOutputPath.put(outputPath, path);
+      if (otherPath != null) {
+        err.println(path + ": the same file as " + otherPath);
+        valid = false;
+        continue;
+      }
+      outputFiles.add(outputPath.toFile());
+    }
+    return valid ? outputFiles : null;
+  }
+
+  private static class FileDump {
+    // Temporary file with the dump, if it's for the output.
+    File dumpFile;
+    String diagnostics;
+    boolean success;
+  }
+
+  private FileDump dumpFile(String path, File outputFile, boolean withHeader)
+      throws IOException {
+    ByteArrayOutputStream diagnostics = new ByteArrayOutputStream();
+    Compiler compiler = new Compiler(new PrintStream(diagnostics, true));
+    compiler.disableThreads();
+    compiler.initOptions(createOptions());
+    Node script = compiler.parse(SourceFile.fromCode(
+        path, Files.asCharSource(new File(path), Charsets.UTF_8).read()));
+    compiler.getErrorManager().generateReport();
+
+    FileDump fileDump = new FileDump();
+    fileDump.success = !compiler.hasErrors();
+    fileDump.diagnostics = diagnostics.toString();
+    if (outputFile != null) {
+      Files.createParentDirs(outputFile);
+    } else {
+      outputFile = File.createTempFile("ast-dump", ".tmp");
+      // In case it's not copied to the output (e.g. if an earlier dump
+      // failed).
+      outputFile.deleteOnExit();
+      fileDump.dumpFile = outputFile;
+    }
+    try (Writer fileOut = Files.newWriter(outputFile, Charsets.UTF_8)) {
+      if (withHeader) {
+        appendHeader(path, fileOut);
+      }
+      Debug.dump(script, dumpOptions, fileOut);
+    }
+    return fileDump;
+  }
+
+  private void appendHeader(String path, Writer out) throws IOException {
+    if (dumpOptions.format == Debug.DumpFormat.JSON) {
+      // Kept as one JSON object per line.
+      StringWriter line = new StringWriter();
+      JsonWriter writer = new JsonWriter(line);
+      writer.beginObject();
+      writer.name("file").value(path);
+      writer.endObject();
+      writer.close();
+      out.append(line.toString()).append('\n');
+    } else {
+      out.append(path).append(":\n");
+    }
+  }
+
+  private static boolean writeFileDump(
+      Future<FileDump> future, Writer out, PrintStream err)
+      throws IOException, InterruptedException {
+    FileDump fileDump;
+    try {
+      fileDump = future.get();
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      throw new RuntimeException(e.getCause());
+    }
+    err.print(fileDump.diagnostics);
+    if (fileDump.dumpFile != null) {
+      try {
+        Files.asCharSource(fileDump.dumpFile, Charsets.UTF_8).copyTo(out);
+      } finally {
+        fileDump.dumpFile.delete();
+      }
+    }
+    return fileDump.success;
+  }
+
+  private static CompilerOptions createOptions() {
     CompilerOptions options = new CompilerOptions();
     options.setLanguageIn(CompilerOptions.LanguageMode.ECMASCRIPT_2018);
     options.setLanguageOut(CompilerOptions.LanguageMode.NO_TRANSPILE);
     options.skipAllCompilerPasses();
     options.setEs6ModuleTranspilation(CompilerOptions.Es6ModuleTranspilation.NONE);
-    compiler.compile(Collections.<SourceFile>emptyList(), inputs, options);
-    System.out.println(Debug.toStringTreeVerbose(compiler.getRoot()));
-    System.out.append("\n");
+    return options;
+  }
+
+  /**
+   * Expands paths with glob characters (e.g. src/**.js) into the (sorted)
+   * files that match them, relative to the directory before the first glob
+   * character.
+   */
+  static List<String> expandGlobs(List<String> paths) throws IOException {
+    List<String> expandedPaths = Lists.newArrayList();
+    for (String path : paths) {
+      int globIndex = indexOfGlob(path);
+      if (globIndex == -1) {
+        expandedPaths.add(path);
+        continue;
+      }
+      int dirEnd = path.lastIndexOf('/', globIndex);
+      Path dir = Paths.get(dirEnd == -1 ? "." : path.substring(0, dirEnd + 1));
+      PathMatcher matcher = FileSystems.getDefault().getPathMatcher(
+          "glob:" + path.substring(dirEnd + 1));
+      try (Stream<Path> files = java.nio.file.Files.walk(dir)) {
+        expandedPaths.addAll(files
+            .filter(file -> java.nio.file.Files.isRegularFile(file) &&
+                matcher.matches(dir.relativize(file)))
+            .map(file -> dirEnd == -1 ?
+                dir.relativize(file).toString() : file.toString())
+            .sorted()
+            .collect(Collectors.toList()));
+      }
+    }
+    return expandedPaths;
+  }
+
+  private static int indexOfGlob(String path) {
+    for (int i = 0; i < path.length(); i++) {
+      char c = path.charAt(i);
+      if (c == '*' || c == '?' || c == '[' || c == '{') {
+        return i;
+      }
+    }
+    return -1;
   }
 }
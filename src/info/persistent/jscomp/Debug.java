@@ -1,11 +1,23 @@
 package info.persistent.jscomp;
 
+import com.google.gson.stream.JsonWriter;
 import com.google.javascript.jscomp.CodePrinter;
 import com.google.javascript.jscomp.Compiler;
 import com.google.javascript.jscomp.CompilerOptions;
+import com.google.javascript.jscomp.JSDocInfoPrinter;
+import com.google.javascript.rhino.JSDocInfo;
 import com.google.javascript.rhino.Node;
+import com.google.javascript.rhino.Token;
 
 import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public class Debug {
   public static String toTypeAnnotatedSource(Compiler compiler, Node root) {
@@ -31,22 +43,100 @@ public class Debug {
     }
   }
 
+  /** Output formats for {@link #dump}. */
+  public enum DumpFormat {
+    /** One line per node, indented by depth. */
+    TEXT,
+    /** One JSON object per line (JSON Lines), with a "depth" field. */
+    JSON,
+  }
+
+  /** Options for {@link #dump}. */
+  public static class DumpOptions {
+    public DumpFormat format = DumpFormat.TEXT;
+    /** If not empty, only nodes with these tokens are output. */
+    public Set<Token> tokens = EnumSet.noneOf(Token.class);
+    /**
+     * If set, only nodes that start within this range (inclusive) are output.
+     * Columns are 0-based, like Node.getCharno.
+     */
+    public int startLine = 1;
+    public int startColumn = 0;
+    public int endLine = Integer.MAX_VALUE;
+    public int endColumn = Integer.MAX_VALUE;
+
+    boolean matches(Node n) {
+      if (!tokens.isEmpty() && !tokens.contains(n.getToken())) {
+        return false;
+      }
+      if (startLine > 1 || startColumn > 0 ||
+          endLine < Integer.MAX_VALUE || endColumn < Integer.MAX_VALUE) {
+        int lineno = n.getLineno();
+        int charno = n.getCharno();
+        if (lineno < startLine ||
+            (lineno == startLine && charno < startColumn)) {
+          return false;
+        }
+        return lineno < endLine || (lineno == endLine && charno <= endColumn);
+      }
+      return true;
+    }
+  }
+
+  // Tokens of nodes that have a string value (see Node.StringNode).
+  private static final Set<Token> STRING_TOKENS = EnumSet.of(
+      Token.NAME, Token.STRING, Token.STRING_KEY, Token.LABEL_NAME,
+      Token.MEMBER_FUNCTION_DEF, Token.GETTER_DEF, Token.SETTER_DEF,
+      Token.IMPORT_STAR);
+
   /**
    * Unlike {@code Node.toStringTree} this includes JSDocInfo inline.
    */
   public static String toStringTreeVerbose(Node root) {
-      StringBuilder builder = new StringBuilder();
-      try {
-          dump(root, 0, builder);
-      } catch (IOException err) {
-          throw new RuntimeException(err);
+    StringBuilder builder = new StringBuilder();
+    try {
+      dump(root, new DumpOptions(), builder);
+    } catch (IOException err) {
+      throw new RuntimeException(err);
+    }
+    return builder.toString();
+  }
+
+  /**
+   * Writes the nodes of the tree to the output as they are visited, in
+   * pre-order. The traversal follows sibling and parent links instead of
+   * recursing, so that neither the stack depth nor the memory that is used
+   * depend on the size of the tree. Nodes that are filtered out are skipped,
+   * but their children are still visited.
+   */
+  public static void dump(Node root, DumpOptions options, Appendable out)
+      throws IOException {
+    int depth = 0;
+    Node n = root;
+    while (n != null) {
+      if (options.matches(n)) {
+        if (options.format == DumpFormat.JSON) {
+          dumpJson(n, depth, out);
+        } else {
+          dumpText(n, depth, out);
+        }
+      }
+      if (n.hasChildren()) {
+        n = n.getFirstChild();
+        depth++;
+        continue;
+      }
+      while (n != root && n.getNext() == null) {
+        n = n.getParent();
+        depth--;
       }
-      return builder.toString();
+      n = n == root ? null : n.getNext();
+    }
   }
 
-  private static void dump(Node n, int level, Appendable out)
+  private static void dumpText(Node n, int depth, Appendable out)
       throws IOException {
-    for (int i = 0; i != level; ++i) {
+    for (int i = 0; i != depth; ++i) {
       out.append("    ");
     }
     out.append(n.toString(true, true, true));
@@ -56,10 +146,296 @@ public class Debug {
       out.append("]");
     }
     out.append('\n');
-    for (Node child = n.getFirstChild();
-         child != null;
-         child = child.getNext()) {
-      dump(child, level + 1, out);
+  }
+
+  private static void dumpJson(Node n, int depth, Appendable out)
+      throws IOException {
+    StringWriter line = new StringWriter();
+    JsonWriter writer = new JsonWriter(line);
+    writer.beginObject();
+    writer.name("depth").value(depth);
+    writer.name("token").value(n.getToken().name());
+    if (STRING_TOKENS.contains(n.getToken())) {
+      writer.name("string").value(n.getString());
+    } else if (n.isNumber()) {
+      double number = n.getDouble();
+      if (Double.isNaN(number) || Double.isInfinite(number)) {
+        // JSON has no representation for these (e.g. 1e400 is Infinity).
+        writer.name("number").value(Double.toString(number));
+      } else {
+        writer.name("number").value(number);
+      }
+    }
+    if (n.getSourceFileName() != null) {
+      writer.name("sourceFile").value(n.getSourceFileName());
+    }
+    if (n.getLineno() != -1) {
+      writer.name("line").value(n.getLineno());
+      writer.name("column").value(n.getCharno());
+      writer.name("length").value(n.getLength());
+    }
+    if (n.getJSType() != null) {
+      writer.name("type").value(n.getJSType().toString());
+    }
+    if (n.getJSDocInfo() != null) {
+      writer.name("jsdoc").value(n.getJSDocInfo().toStringVerbose());
+    }
+    writer.endObject();
+    writer.close();
+    out.append(line.toString());
+    out.append('\n');
+  }
+
+  /**
+   * Records the structure of the tree (the parent, previous sibling and JSDoc
+   * of every node, and a hash of every subtree), so that
+   * {@link AstSnapshot#dumpChanges} can later print only the subtrees that
+   * were changed since then.
+   */
+  public static AstSnapshot snapshot(Node root) {
+    return new AstSnapshot(root);
+  }
+
+  /** See {@link #snapshot}. */
+  public static class AstSnapshot {
+    private static class NodeState {
+      final int index;
+      final Node parent;
+      final Node previous;
+      final JSDocInfo jsDoc;
+      final long hash;
+
+      NodeState(int index, Node parent, Node previous, JSDocInfo jsDoc,
+          long hash) {
+        this.index = index;
+        this.parent = parent;
+        this.previous = previous;
+        this.jsDoc = jsDoc;
+        this.hash = hash;
+      }
+    }
+
+    private final Node root;
+    private final Map<Node, NodeState> states = new IdentityHashMap<>();
+
+    private AstSnapshot(Node root) {
+      this.root = root;
+      Map<Node, Long> hashes = hashSubtrees(root);
+      int index = 0;
+      for (Node n = root; n != null; n = nextInPreOrder(n, root)) {
+        states.put(n, new NodeState(index++, n.getParent(),
+            n == root ? null : n.getPrevious(), n.getJSDocInfo(),
+            hashes.get(n)));
+      }
+    }
+
+    /**
+     * Hashes the identities of the nodes of every subtree (and of their
+     * JSDoc), with the children in order, so that a subtree that still has
+     * the same hash can be skipped and reordered children change the hash of
+     * their parent.
+     */
+    private static Map<Node, Long> hashSubtrees(Node root) {
+      List<Node> nodes = new ArrayList<>();
+      for (Node n = root; n != null; n = nextInPreOrder(n, root)) {
+        nodes.add(n);
+      }
+      Map<Node, Long> hashes = new IdentityHashMap<>();
+      // Descendants come after their ancestors in pre-order, so going
+      // backwards hashes the children before their parent.
+      for (int i = nodes.size() - 1; i >= 0; i--) {
+        Node n = nodes.get(i);
+        long hash = System.identityHashCode(n) * 31L +
+            System.identityHashCode(n.getJSDocInfo());
+        for (Node child = n.getFirstChild(); child != null;
+            child = child.getNext()) {
+          hash = hash * 31 + hashes.get(child);
+        }
+        hashes.put(n, hash);
+      }
+      return hashes;
+    }
+
+    /**
+     * Writes the subtrees that were inserted, replaced, moved (including
+     * among their siblings) or detached since the snapshot was taken (and the
+     * JSDoc that was changed), with their source positions, as type-annotated
+     * source. Nodes within a changed subtree are not listed separately.
+     * Unchanged code is not printed and subtrees with the same hash are not
+     * compared, so this is much cheaper than {@link #toTypeAnnotatedSource}
+     * on the whole tree.
+     */
+    public void dumpChanges(Compiler compiler, Appendable out)
+        throws IOException {
+      Map<Node, Long> hashes = hashSubtrees(root);
+      Set<Node> current = Collections.newSetFromMap(new IdentityHashMap<>());
+      Set<Node> compared = Collections.newSetFromMap(new IdentityHashMap<>());
+      Set<Node> reordered = Collections.newSetFromMap(new IdentityHashMap<>());
+      Map<Node, Integer> lastIndexByParent = new IdentityHashMap<>();
+      List<Node> changed = new ArrayList<>();
+      for (Node n = root; n != null;) {
+        current.add(n);
+        NodeState state = states.get(n);
+        boolean unchanged = state != null && state.hash == hashes.get(n);
+        if (!unchanged) {
+          compared.add(n);
+        }
+        Node parent = n.getParent();
+        // Nodes in a subtree that is printed as a whole are not checked.
+        if (n != root && states.containsKey(parent)) {
+          if (state == null || state.parent != parent ||
+              !JSDocInfo.areEquivalent(state.jsDoc, n.getJSDocInfo())) {
+            changed.add(n);
+          } else {
+            // The children that were already there must still be in order.
+            Integer lastIndex = lastIndexByParent.get(parent);
+            if (lastIndex != null && state.index < lastIndex) {
+              reordered.add(n);
+              changed.add(n);
+            } else {
+              lastIndexByParent.put(parent, state.index);
+            }
+          }
+        }
+        n = nextInPreOrder(n, root, unchanged);
+      }
+
+      List<Node> detached = new ArrayList<>();
+      Map<Node, Node> replacedByReplacement = new IdentityHashMap<>();
+      for (Map.Entry<Node, NodeState> entry : states.entrySet()) {
+        Node n = entry.getKey();
+        NodeState state = entry.getValue();
+        // The children of unchanged subtrees were not visited, but they are
+        // all still there.
+        if (current.contains(n) || !compared.contains(state.parent)) {
+          continue;
+        }
+        // A node that was inserted in the same position is its replacement.
+        Node replacement = state.previous == null ?
+            state.parent.getFirstChild() : state.previous.getNext();
+        if (replacement != null && !states.containsKey(replacement) &&
+            (state.previous == null || current.contains(state.previous)) &&
+            !replacedByReplacement.containsKey(replacement)) {
+          replacedByReplacement.put(replacement, n);
+        } else {
+          detached.add(n);
+        }
+      }
+      detached.sort((n1, n2) ->
+          Integer.compare(states.get(n1).index, states.get(n2).index));
+
+      for (Node n : changed) {
+        NodeState state = states.get(n);
+        Node replaced = replacedByReplacement.get(n);
+        if (replaced != null) {
+          dumpChange("replaced", replaced, out);
+          dumpSource("- ", replaced, compiler, out);
+          dumpSource("+ ", elideUnchanged(n), compiler, out);
+        } else if (state == null) {
+          dumpChange("inserted", n, out);
+          dumpSource("+ ", elideUnchanged(n), compiler, out);
+        } else if (state.parent != n.getParent() || reordered.contains(n)) {
+          dumpChange("moved", n, out);
+          dumpSource("+ ", n, compiler, out);
+        } else {
+          dumpChange("annotated", n, out);
+          JSDocInfoPrinter printer = new JSDocInfoPrinter(false);
+          if (state.jsDoc != null) {
+            dumpLines("- ", printer.print(state.jsDoc), out);
+          }
+          if (n.getJSDocInfo() != null) {
+            dumpLines("+ ", printer.print(n.getJSDocInfo()), out);
+          }
+        }
+      }
+      for (Node n : detached) {
+        dumpChange("detached", n, out);
+        dumpSource("- ", n, compiler, out);
+      }
+    }
+
+    /**
+     * Nodes that are inserted around existing code (e.g. casts) would
+     * otherwise print all of it, so existing functions, classes and object
+     * literals within them are printed as "...".
+     */
+    private Node elideUnchanged(Node root) {
+      boolean hasElidable = false;
+      for (Node n = root; n != null && !hasElidable;
+          n = nextInPreOrder(n, root)) {
+        hasElidable = isElidable(n, root);
+      }
+      if (!hasElidable) {
+        // The node is printed as is, since it may need its parent for that.
+        return root;
+      }
+      Node clone = root.cloneTree();
+      // Some nodes are printed differently based on their parent's token.
+      if (root.getParent() != null) {
+        root.getParent().cloneNode().addChildToFront(clone);
+      }
+      Node n = root;
+      Node cloneNode = clone;
+      while (n != null) {
+        boolean elide = isElidable(n, root);
+        if (elide) {
+          Node placeholder = Node.newString(Token.NAME, "...");
+          cloneNode.replaceWith(placeholder);
+          cloneNode = placeholder;
+        }
+        // The placeholder has no children, so both traversals stay in step.
+        n = nextInPreOrder(n, root, elide);
+        cloneNode = nextInPreOrder(cloneNode, clone, elide);
+      }
+      return clone;
+    }
+
+    private boolean isElidable(Node n, Node root) {
+      return n != root && states.containsKey(n) &&
+          (n.isFunction() || n.isClass() || n.isObjectLit());
+    }
+
+    private static void dumpChange(String change, Node n, Appendable out)
+        throws IOException {
+      out.append(change).append(' ').append(n.getToken().name());
+      // Generated nodes may not have source information of their own.
+      Node positionNode = n;
+      while (positionNode != null && positionNode.getLineno() == -1) {
+        positionNode = positionNode.getParent();
+      }
+      if (positionNode != null) {
+        out.append(' ').append(String.valueOf(positionNode.getSourceFileName()))
+            .append(':').append(String.valueOf(positionNode.getLineno()))
+            .append(':').append(String.valueOf(positionNode.getCharno()));
+      }
+      out.append('\n');
+    }
+
+    private static void dumpSource(
+        String prefix, Node n, Compiler compiler, Appendable out)
+        throws IOException {
+      dumpLines(prefix, toTypeAnnotatedSource(compiler, n), out);
+    }
+
+    private static void dumpLines(String prefix, String text, Appendable out)
+        throws IOException {
+      for (String line : text.trim().split("\n")) {
+        out.append(prefix).append(line).append('\n');
+      }
+    }
+  }
+
+  private static Node nextInPreOrder(Node n, Node root) {
+    return nextInPreOrder(n, root, false);
+  }
+
+  private static Node nextInPreOrder(Node n, Node root, boolean skipChildren) {
+    if (!skipChildren && n.hasChildren()) {
+      return n.getFirstChild();
+    }
+    while (n != root && n.getNext() == null) {
+      n = n.getParent();
     }
+    return n == root ? null : n.getNext();
   }
 }
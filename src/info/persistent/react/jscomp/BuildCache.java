@@ -0,0 +1,526 @@
+package info.persistent.react.jscomp;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Joiner;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Files;
+import com.google.javascript.jscomp.Compiler;
+import com.google.javascript.jscomp.CompilerInput;
+import com.google.javascript.jscomp.CompilerOptions;
+import com.google.javascript.jscomp.JSModule;
+import com.google.javascript.jscomp.SourceFile;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.CodeSource;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * A cache of whole ReactCommandLineRunner runs, so that repeating a build
+ * with the same inputs, externs, flags and compiler version replays the
+ * output files (e.g. the --js_output_file and the --create_source_map), the
+ * printed output and diagnostics, and the exit code of the previous run,
+ * instead of compiling again.
+ *
+ * Entries are keyed by a hash of:
+ * - the version of Closure Compiler and of this compiler pass (the contents
+ *   of their jars or class directories)
+ * - the flags, and the contents of the flag files and of the other files
+ *   that flags refer to (e.g. --output_wrapper_file)
+ * - the ReactCompilerPass options
+ * - the names and contents of the externs and inputs, in order (after globs
+ *   and flag files are expanded, but before dependency pruning, so a change
+ *   to a file that pruning drops still invalidates the entry)
+ * The CompilerOptions are derived from the flags and the pass options, so
+ * they are covered by those.
+ *
+ * Finding the inputs requires reading them (but not parsing them), so a
+ * cache miss reads them twice. Runs that read inputs from stdin or write
+ * outputs that don't go through the command line runner's output streams
+ * (e.g. renaming reports) are not cached.
+ *
+ * The least recently used entries are removed once the cache is larger than
+ * its maximum size. Several builds may share the same cache directory.
+ */
+class BuildCache {
+  // Flags whose values are files that are read by the compiler, but are not
+  // its inputs or externs.
+  private static final Set<String> INPUT_FILE_FLAGS = ImmutableSet.of(
+      "--flagfile",
+      "--output_wrapper_file",
+      "--source_map_input",
+      "--translations_file",
+      "--warnings_whitelist_file",
+      "--conformance_configs");
+  // Flags whose behavior can't be replayed.
+  private static final Set<String> UNCACHEABLE_FLAGS = ImmutableSet.of(
+      "--variable_renaming_report",
+      "--property_renaming_report",
+      "--create_renaming_reports",
+      "--save-after-checks",
+      "--continue-saved-compilation",
+      "--json_streams");
+  private static final String STDIN_NAME = "stdin";
+
+  private static final String EXIT_CODE_FILE = "exit_code";
+  private static final String OUT_FILE = "out";
+  private static final String ERR_FILE = "err";
+  private static final String OUTPUTS_FILE = "outputs";
+  private static final String OUTPUT_FILE_PREFIX = "output-";
+  private static final String TEMP_SUFFIX = ".tmp";
+  // Temporary directories are only written to for the duration of a build,
+  // older ones were left behind by builds that were killed.
+  private static final long STALE_TEMP_DIR_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+  private static String toolVersion;
+
+  private final File dir;
+  private final long maxSizeBytes;
+  private int hitCount = 0;
+
+  BuildCache(File dir, long maxSizeBytes) {
+    this.dir = dir;
+    this.maxSizeBytes = maxSizeBytes;
+  }
+
+  /**
+   * Builds with the command line flags (or replays a previous identical
+   * build), returning the exit code.
+   */
+  int run(String[] args, PrintStream out, PrintStream err)
+      throws IOException {
+    String key = getKey(args);
+    if (key == null) {
+      return runCompiler(new ReactCommandLineRunner(args, out, err));
+    }
+    File entryDir = new File(dir, key);
+    if (replay(entryDir, out, err)) {
+      hitCount++;
+      return getExitCode(entryDir);
+    }
+
+    ByteArrayOutputStream recordedOut = new ByteArrayOutputStream();
+    ByteArrayOutputStream recordedErr = new ByteArrayOutputStream();
+    RecordingRunner runner = new RecordingRunner(
+        args,
+        new PrintStream(new TeeOutputStream(out, recordedOut, false), true),
+        new PrintStream(new TeeOutputStream(err, recordedErr, false), true));
+    int exitCode = runCompiler(runner);
+    store(entryDir, exitCode, recordedOut.toByteArray(),
+        recordedErr.toByteArray(), runner.outputs);
+    evict();
+    return exitCode;
+  }
+
+  /**
+   * The number of runs that were replayed from the cache.
+   */
+  int getHitCount() {
+    return hitCount;
+  }
+
+  private static int runCompiler(ReactCommandLineRunner runner) {
+    int[] exitCode = {0};
+    runner.setExitCodeReceiver(code -> {
+      exitCode[0] = code;
+      return null;
+    });
+    if (!runner.shouldRunCompiler()) {
+      return runner.hasErrors() ? -1 : 0;
+    }
+    runner.run();
+    return exitCode[0];
+  }
+
+  /**
+   * The cache key of the build, or null if it can't be cached.
+   */
+  private static String getKey(String[] args) throws IOException {
+    List<String> allArgs = Lists.newArrayList(args);
+    Hasher hasher = Hashing.sha256().newHasher();
+    putString(hasher, getToolVersion());
+    putString(hasher, getDescription(ReactCommandLineRunner.createPassOptions()));
+    for (int i = 0; i < allArgs.size(); i++) {
+      String arg = allArgs.get(i);
+      putString(hasher, arg);
+      String flag = arg.contains("=") ? arg.substring(0, arg.indexOf('=')) : arg;
+      if (UNCACHEABLE_FLAGS.contains(flag)) {
+        return null;
+      }
+      if (!INPUT_FILE_FLAGS.contains(flag)) {
+        continue;
+      }
+      String value = arg.contains("=") ? arg.substring(arg.indexOf('=') + 1) :
+          i + 1 < allArgs.size() ? allArgs.get(i + 1) : "";
+      // --source_map_input values are of the form input.js|input.js.map.
+      for (String path : Splitter.on('|').split(value)) {
+        File file = new File(path);
+        putString(hasher, path);
+        if (!file.isFile()) {
+          continue;
+        }
+        byte[] contents = Files.toByteArray(file);
+        hasher.putInt(contents.length).putBytes(contents);
+        if (flag.equals("--flagfile")) {
+          // Flags in flag files are checked too.
+          allArgs.addAll(Splitter.onPattern("\\s+").omitEmptyStrings()
+              .splitToList(new String(contents, Charsets.UTF_8)));
+        }
+      }
+    }
+
+    List<SourceFile> sources = new SourceReadingRunner(args).readSources();
+    if (sources == null) {
+      return null;
+    }
+    for (SourceFile source : sources) {
+      if (source == null) {
+        // Module boundary.
+        putString(hasher, "");
+        continue;
+      }
+      if (source.getName().equals(STDIN_NAME)) {
+        return null;
+      }
+      putString(hasher, source.getName());
+      putString(hasher, source.getCode());
+    }
+    return hasher.hash().toString();
+  }
+
+  private static void putString(Hasher hasher, String s) {
+    hasher.putInt(s.length()).putString(s, Charsets.UTF_8);
+  }
+
+  private static String getDescription(ReactCompilerPass.Options options) {
+    StringBuilder description = new StringBuilder();
+    for (Field field : ReactCompilerPass.Options.class.getFields()) {
+      if (Modifier.isStatic(field.getModifiers())) {
+        continue;
+      }
+      Object value;
+      try {
+        value = field.get(options);
+      } catch (IllegalAccessException e) {
+        throw new RuntimeException(e);
+      }
+      // Only whether values of other types (e.g. streams) are set matters.
+      if (value != null && !(value instanceof Boolean) &&
+          !(value instanceof Number) && !(value instanceof Enum) &&
+          !(value instanceof String)) {
+        value = "set";
+      }
+      description.append(field.getName()).append('=').append(value)
+          .append('\n');
+    }
+    return description.toString();
+  }
+
+  private static synchronized String getToolVersion() throws IOException {
+    if (toolVersion == null) {
+      Hasher hasher = Hashing.sha256().newHasher();
+      putString(hasher, String.valueOf(Compiler.getReleaseVersion()));
+      Set<File> codeSources = ImmutableSet.of(
+          getCodeSource(Compiler.class), getCodeSource(ReactCompilerPass.class));
+      for (File codeSource : codeSources) {
+        if (codeSource.isFile()) {
+          hasher.putBytes(
+              Files.asByteSource(codeSource).hash(Hashing.sha256()).asBytes());
+          continue;
+        }
+        // A directory of classes (e.g. during development).
+        List<Path> files;
+        try (Stream<Path> paths = java.nio.file.Files.walk(codeSource.toPath())) {
+          files = paths.filter(java.nio.file.Files::isRegularFile).sorted()
+              .collect(Collectors.toList());
+        }
+        for (Path file : files) {
+          putString(hasher, file.toString());
+          hasher.putBytes(Files.asByteSource(file.toFile())
+              .hash(Hashing.sha256()).asBytes());
+        }
+      }
+      toolVersion = hasher.hash().toString();
+    }
+    return toolVersion;
+  }
+
+  private static File getCodeSource(Class<?> cls) throws IOException {
+    CodeSource codeSource = cls.getProtectionDomain().getCodeSource();
+    URL location = codeSource != null ? codeSource.getLocation() : null;
+    if (location == null) {
+      throw new IOException("Could not find the location of " + cls);
+    }
+    try {
+      return new File(location.toURI());
+    } catch (URISyntaxException | IllegalArgumentException e) {
+      throw new IOException("Could not find the location of " + cls, e);
+    }
+  }
+
+  private boolean replay(File entryDir, PrintStream out, PrintStream err) {
+    byte[] outBytes;
+    byte[] errBytes;
+    Map<String, byte[]> outputs = Maps.newLinkedHashMap();
+    // Everything is read before anything is written, in case the entry is
+    // being evicted by another build.
+    try {
+      if (!new File(entryDir, EXIT_CODE_FILE).isFile()) {
+        return false;
+      }
+      outBytes = Files.toByteArray(new File(entryDir, OUT_FILE));
+      errBytes = Files.toByteArray(new File(entryDir, ERR_FILE));
+      List<String> outputNames = Files.readLines(
+          new File(entryDir, OUTPUTS_FILE), Charsets.UTF_8);
+      for (int i = 0; i < outputNames.size(); i++) {
+        outputs.put(outputNames.get(i), Files.toByteArray(
+            new File(entryDir, OUTPUT_FILE_PREFIX + i)));
+      }
+    } catch (IOException e) {
+      return false;
+    }
+    try {
+      for (Map.Entry<String, byte[]> output : outputs.entrySet()) {
+        File outputFile = new File(output.getKey());
+        Files.createParentDirs(outputFile);
+        Files.write(output.getValue(), outputFile);
+      }
+    } catch (IOException e) {
+      return false;
+    }
+    out.write(outBytes, 0, outBytes.length);
+    out.flush();
+    err.write(errBytes, 0, errBytes.length);
+    err.flush();
+    entryDir.setLastModified(System.currentTimeMillis());
+    return true;
+  }
+
+  private static int getExitCode(File entryDir) throws IOException {
+    return Integer.parseInt(Files.asCharSource(
+        new File(entryDir, EXIT_CODE_FILE), Charsets.UTF_8).read().trim());
+  }
+
+  private void store(File entryDir, int exitCode, byte[] outBytes,
+      byte[] errBytes, Map<String, ByteArrayOutputStream> outputs)
+      throws IOException {
+    // Entries are written to a temporary directory and then moved in place,
+    // so that other builds never see partial entries.
+    File tempDir = new File(dir, entryDir.getName() + "." + UUID.randomUUID() +
+        TEMP_SUFFIX);
+    if (!tempDir.mkdirs()) {
+      throw new IOException("Could not create " + tempDir);
+    }
+    Files.write(outBytes, new File(tempDir, OUT_FILE));
+    Files.write(errBytes, new File(tempDir, ERR_FILE));
+    List<String> outputNames = ImmutableList.copyOf(outputs.keySet());
+    for (int i = 0; i < outputNames.size(); i++) {
+      Files.write(outputs.get(outputNames.get(i)).toByteArray(),
+          new File(tempDir, OUTPUT_FILE_PREFIX + i));
+    }
+    Files.asCharSink(new File(tempDir, OUTPUTS_FILE), Charsets.UTF_8)
+        .write(Joiner.on('\n').join(outputNames));
+    Files.asCharSink(new File(tempDir, EXIT_CODE_FILE), Charsets.UTF_8)
+        .write(Integer.toString(exitCode));
+    try {
+      java.nio.file.Files.move(tempDir.toPath(), entryDir.toPath(),
+          StandardCopyOption.ATOMIC_MOVE);
+    } catch (FileAlreadyExistsException e) {
+      // Stored by a concurrent build.
+      deleteRecursively(tempDir);
+    } catch (IOException e) {
+      deleteRecursively(tempDir);
+      if (!entryDir.isDirectory()) {
+        throw e;
+      }
+    }
+  }
+
+  /**
+   * Removes the least recently used entries until the cache fits in its
+   * maximum size, and the temporary directories of builds that did not
+   * finish.
+   */
+  private void evict() {
+    File[] tempDirs = dir.listFiles(
+        file -> file.isDirectory() && file.getName().endsWith(TEMP_SUFFIX));
+    if (tempDirs != null) {
+      long staleTime = System.currentTimeMillis() - STALE_TEMP_DIR_MILLIS;
+      for (File tempDir : tempDirs) {
+        if (tempDir.lastModified() < staleTime) {
+          deleteRecursively(tempDir);
+        }
+      }
+    }
+    File[] entryDirs = dir.listFiles(
+        file -> file.isDirectory() && !file.getName().endsWith(TEMP_SUFFIX));
+    if (entryDirs == null) {
+      return;
+    }
+    Arrays.sort(entryDirs,
+        Comparator.comparingLong(File::lastModified).reversed());
+    long size = 0;
+    for (File entryDir : entryDirs) {
+      size += getSize(entryDir);
+      if (size > maxSizeBytes) {
+        deleteRecursively(entryDir);
+      }
+    }
+  }
+
+  private static long getSize(File entryDir) {
+    long size = 0;
+    File[] files = entryDir.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        size += file.length();
+      }
+    }
+    return size;
+  }
+
+  private static void deleteRecursively(File file) {
+    File[] children = file.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        deleteRecursively(child);
+      }
+    }
+    file.delete();
+  }
+
+  /**
+   * Processes the flags and reads the externs and inputs like a regular run
+   * would, but stops before compiling.
+   */
+  private static class SourceReadingRunner extends ReactCommandLineRunner {
+    private static class SourcesReadException extends RuntimeException {
+      final List<SourceFile> sources;
+
+      SourcesReadException(List<SourceFile> sources) {
+        this.sources = sources;
+      }
+    }
+
+    SourceReadingRunner(String[] args) {
+      super(args,
+          new ByteArrayInputStream(new byte[0]),
+          new PrintStream(ByteStreams.nullOutputStream()),
+          new PrintStream(ByteStreams.nullOutputStream()));
+    }
+
+    @Override
+    protected Compiler createCompiler() {
+      return new Compiler(getErrorPrintStream()) {
+        @Override
+        public <T extends SourceFile> void initModules(
+            List<T> externs, List<JSModule> modules,
+            CompilerOptions options) {
+          List<SourceFile> sources = Lists.newArrayList(externs);
+          for (JSModule module : modules) {
+            sources.add(null);
+            for (CompilerInput input : module.getInputs()) {
+              sources.add(input.getSourceFile());
+            }
+          }
+          throw new SourcesReadException(sources);
+        }
+      };
+    }
+
+    /**
+     * The externs and then the inputs of each module (preceded by a null),
+     * or null if they could not be read (e.g. because of invalid flags).
+     */
+    List<SourceFile> readSources() {
+      if (!shouldRunCompiler()) {
+        return null;
+      }
+      try {
+        doRun();
+      } catch (SourcesReadException e) {
+        return e.sources;
+      } catch (IOException | RuntimeException e) {
+        // The actual run will report the error.
+      }
+      return null;
+    }
+  }
+
+  /**
+   * A regular run that also records the files that are written.
+   */
+  private static class RecordingRunner extends ReactCommandLineRunner {
+    final Map<String, ByteArrayOutputStream> outputs = Maps.newLinkedHashMap();
+
+    RecordingRunner(String[] args, PrintStream out, PrintStream err) {
+      super(args, out, err);
+    }
+
+    @Override
+    protected OutputStream filenameToOutputStream(String fileName)
+        throws IOException {
+      ByteArrayOutputStream output = new ByteArrayOutputStream();
+      outputs.put(fileName, output);
+      return new TeeOutputStream(
+          super.filenameToOutputStream(fileName), output, true);
+    }
+  }
+
+  private static class TeeOutputStream extends FilterOutputStream {
+    private final OutputStream copy;
+    private final boolean closeOut;
+
+    TeeOutputStream(OutputStream out, OutputStream copy, boolean closeOut) {
+      super(out);
+      this.copy = copy;
+      this.closeOut = closeOut;
+    }
+
+    @Override public void write(int b) throws IOException {
+      out.write(b);
+      copy.write(b);
+    }
+
+    @Override public void write(byte[] b, int off, int len)
+        throws IOException {
+      out.write(b, off, len);
+      copy.write(b, off, len);
+    }
+
+    @Override public void close() throws IOException {
+      if (closeOut) {
+        out.close();
+      } else {
+        out.flush();
+      }
+    }
+  }
+}
@@ -0,0 +1,44 @@
+package info.persistent.react.jscomp;
+
+import com.google.javascript.jscomp.AbstractCompiler;
+import com.google.javascript.jscomp.NodeUtil;
+import com.google.javascript.rhino.Node;
+
+/**
+ * Helpers for reporting the pass's changes to the AST to the compiler. Later
+ * optimization loops only revisit the functions (and scripts) that were
+ * reported as changed, so every mutation needs to be reported, to the
+ * narrowest change scope that contains it. Changes that only affect JSDoc are
+ * not reported, since they don't change the code.
+ */
+class ChangeReports {
+  /**
+   * Reports a change to the code within the function or script that contains
+   * n (e.g. n was inserted in place of, or around, existing code).
+   */
+  static void reportChange(AbstractCompiler compiler, Node n) {
+    compiler.reportChangeToEnclosingScope(n);
+  }
+
+  /**
+   * Reports that n was inserted, and that it's made up of new code only (any
+   * functions in it are new change scopes).
+   */
+  static void reportNewCode(AbstractCompiler compiler, Node n) {
+    compiler.reportChangeToEnclosingScope(n);
+    NodeUtil.visitPreOrder(n, node -> {
+      if (node.isFunction()) {
+        compiler.reportChangeToChangeScope(node);
+      }
+    });
+  }
+
+  /**
+   * Reports that n was detached from formerParent, and that any functions in
+   * it are gone (it's not re-inserted elsewhere).
+   */
+  static void reportRemoval(AbstractCompiler compiler, Node n, Node formerParent) {
+    compiler.reportChangeToEnclosingScope(formerParent);
+    NodeUtil.markFunctionsDeleted(n, compiler);
+  }
+}
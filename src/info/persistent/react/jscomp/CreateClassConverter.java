@@ -0,0 +1,393 @@
+package info.persistent.react.jscomp;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.google.javascript.jscomp.Compiler;
+import com.google.javascript.jscomp.NodeTraversal;
+import com.google.javascript.jscomp.NodeUtil;
+import com.google.javascript.rhino.IR;
+import com.google.javascript.rhino.JSDocInfo;
+import com.google.javascript.rhino.JSDocInfoBuilder;
+import com.google.javascript.rhino.JSTypeExpression;
+import com.google.javascript.rhino.Node;
+import com.google.javascript.rhino.Token;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Rewrites React.createClass calls into classes that extend React.Component,
+ * so that they get the (cheaper) ES6 class handling from the rest of the pass.
+ *
+ * React.createClass autobinds every method to the instance, which costs a
+ * closure per method per mounted component. Classes do not autobind, so the
+ * conversion only binds (in the constructor) the methods whose references
+ * escape without being called, e.g. {@code onClick: this.handleClick}.
+ *
+ * Specs that rely on createClass-only behavior (mixins, non-function
+ * properties, replaceState/isMounted, getDefaultProps that computes its
+ * result, etc.) are left alone and go through the regular React.createClass
+ * handling.
+ */
+class CreateClassConverter implements NodeTraversal.Callback {
+  // Spec keys that are moved over as-is to static properties of the class.
+  private static final ImmutableSet<String> STATIC_SPEC_KEYS = ImmutableSet.of(
+      "propTypes", "contextTypes", "childContextTypes", "displayName");
+  // Instance methods that only exist for React.createClass components.
+  private static final ImmutableSet<String> CREATE_CLASS_ONLY_METHODS =
+      ImmutableSet.of("replaceState", "isMounted");
+
+  private final Compiler compiler;
+  private final Set<String> componentMethodNames;
+  private final List<Node> createClassCalls = Lists.newArrayList();
+  // Names of properties that are read without being immediately called (and
+  // thus may be methods that are passed around as callbacks).
+  private final Set<String> detachedPropertyNames = Sets.newHashSet();
+  // Set if properties are destructured from this in a way that does not name
+  // them (computed keys or rest), in which case any method may be detached.
+  private boolean hasUnknownDetachedProperties = false;
+
+  CreateClassConverter(Compiler compiler, Set<String> componentMethodNames) {
+    this.compiler = compiler;
+    this.componentMethodNames = componentMethodNames;
+  }
+
+  void convert(Node root) {
+    NodeTraversal.traverse(compiler, root, this);
+    for (Node callNode : createClassCalls) {
+      if (isConvertible(callNode)) {
+        convertCreateClass(callNode);
+      }
+    }
+    createClassCalls.clear();
+    detachedPropertyNames.clear();
+    hasUnknownDetachedProperties = false;
+  }
+
+  @Override
+  public boolean shouldTraverse(NodeTraversal t, Node n, Node parent) {
+    return true;
+  }
+
+  @Override
+  public void visit(NodeTraversal t, Node n, Node parent) {
+    if (n.isCall() && n.getFirstChild().matchesQualifiedName("React.createClass")) {
+      createClassCalls.add(n);
+    } else if (n.isGetProp()) {
+      boolean isCallee = parent.isCall() && parent.getFirstChild() == n;
+      boolean isAssignTarget = parent.isAssign() && parent.getFirstChild() == n;
+      if (!isCallee && !isAssignTarget) {
+        detachedPropertyNames.add(n.getLastChild().getString());
+      }
+    } else if (n.isGetElem()) {
+      // Element accesses don't look like method calls, so they are treated
+      // as detaching the property (e.g. this['handleClick']).
+      Node key = n.getLastChild();
+      if (key.isString()) {
+        detachedPropertyNames.add(key.getString());
+      } else if (n.getFirstChild().isThis()) {
+        hasUnknownDetachedProperties = true;
+      }
+    } else if (n.isObjectPattern() && n.getNext() != null &&
+        n.getNext().isThis()) {
+      // Destructuring this detaches the properties too, e.g.
+      // const {handleClick} = this;
+      for (Node key : n.children()) {
+        if (key.isStringKey()) {
+          detachedPropertyNames.add(key.getString());
+        } else {
+          hasUnknownDetachedProperties = true;
+        }
+      }
+    }
+  }
+
+  private boolean isConvertible(Node callNode) {
+    if (hasUnknownDetachedProperties) {
+      // We can't tell which methods need to be bound.
+      return false;
+    }
+    if (callNode.getChildCount() != 2 ||
+        !callNode.getSecondChild().isObjectLit()) {
+      return false;
+    }
+    Node nameNode = getTypeNameNode(callNode);
+    if (nameNode == null) {
+      return false;
+    }
+    JSDocInfo jsDocInfo = NodeUtil.getBestJSDocInfo(callNode);
+    if (jsDocInfo != null && jsDocInfo.isExport()) {
+      // Exported createClass components export methods based on @public
+      // annotations, keep that behavior.
+      return false;
+    }
+    Node specNode = callNode.getSecondChild();
+    for (Node key : specNode.children()) {
+      if (!key.isStringKey() && !key.isMemberFunctionDef()) {
+        return false;
+      }
+      String keyName = key.getString();
+      Node value = key.getFirstChild();
+      if (keyName.equals("mixins") ||
+          keyName.equals("constructor") ||
+          keyName.equals("initialState")) {
+        return false;
+      }
+      if (STATIC_SPEC_KEYS.contains(keyName)) {
+        continue;
+      }
+      if (keyName.equals("statics")) {
+        if (!areStaticsConvertible(value)) {
+          return false;
+        }
+        continue;
+      }
+      if (!value.isFunction() || value.isArrowFunction() ||
+          usesCreateClassOnlyFeatures(value)) {
+        return false;
+      }
+      if (keyName.equals("getDefaultProps") &&
+          getLiteralDefaultProps(value) == null) {
+        // Classes ignore getDefaultProps methods, and only a literal can be
+        // moved to a static defaultProps without changing when it's evaluated.
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean areStaticsConvertible(Node staticsNode) {
+    if (!staticsNode.isObjectLit()) {
+      return false;
+    }
+    for (Node key : staticsNode.children()) {
+      if (!key.isStringKey() && !key.isMemberFunctionDef()) {
+        return false;
+      }
+      // JSDoc is required for statics, let the createClass handling report
+      // missing ones.
+      if (key.getJSDocInfo() == null) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean usesCreateClassOnlyFeatures(Node functionNode) {
+    return NodeUtil.has(
+        functionNode,
+        n -> n.isSuper() ||
+            ((n.isGetProp() || n.isGetElem()) && n.getFirstChild().isThis() &&
+                n.getLastChild().isString() &&
+                CREATE_CLASS_ONLY_METHODS.contains(
+                    n.getLastChild().getString())),
+        // Arrow functions share this with the method.
+        n -> !n.isFunction() || n.isArrowFunction() || n == functionNode);
+  }
+
+  /**
+   * The class pipeline needs either a var/let/const declaration or an
+   * assignment to a qualified name to determine the type name.
+   */
+  private static Node getTypeNameNode(Node callNode) {
+    Node parent = callNode.getParent();
+    if (parent.isName() && NodeUtil.isNameDeclaration(parent.getParent())) {
+      return parent;
+    }
+    if (parent.isAssign() && parent.getParent().isExprResult() &&
+        callNode.getPrevious().isQualifiedName()) {
+      return callNode.getPrevious();
+    }
+    return null;
+  }
+
+  private void convertCreateClass(Node callNode) {
+    // Converts:
+    //
+    //   var Comp = React.createClass({
+    //     propTypes: {...},
+    //     getInitialState: function() {...},
+    //     handleClick: function() {...},
+    //     render: function() {... onClick: this.handleClick ...}
+    //   });
+    //
+    // Into:
+    //
+    //   var Comp = class extends React.Component {
+    //     constructor(props, context) {
+    //       super(props, context);
+    //       this.handleClick = this.handleClick.bind(this);
+    //       /** @type {Comp.State} */
+    //       this.state = this.initialState();
+    //     }
+    //     initialState() {...}
+    //     handleClick() {...}
+    //     render() {... onClick: this.handleClick ...}
+    //   };
+    //   Comp.propTypes = {...};
+    Node specNode = callNode.getSecondChild();
+    String typeName = getTypeNameNode(callNode).getQualifiedName();
+    Node statement = NodeUtil.getEnclosingStatement(callNode);
+    if (statement.getParent().isExport()) {
+      statement = statement.getParent();
+    }
+
+    Node classMembers = new Node(Token.CLASS_MEMBERS);
+    List<Node> staticAssignments = Lists.newArrayList();
+    List<String> boundMethodNames = Lists.newArrayList();
+    List<Node> removedFunctions = Lists.newArrayList();
+    boolean hasInitialState = false;
+
+    for (Node key : specNode.children()) {
+      String keyName = key.getString();
+      Node value = key.getFirstChild();
+      if (STATIC_SPEC_KEYS.contains(keyName)) {
+        staticAssignments.add(createStaticAssignment(
+            typeName, keyName, value.detach(), key.getJSDocInfo()));
+      } else if (keyName.equals("statics")) {
+        for (Node staticKey : value.children()) {
+          Node staticValue = staticKey.getFirstChild();
+          if (staticValue.isFunction() && !staticValue.isArrowFunction()) {
+            Node member = createMethod(staticKey.getString(), staticKey);
+            member.setStaticMember(true);
+            classMembers.addChildToBack(member);
+          } else {
+            staticAssignments.add(createStaticAssignment(
+                typeName,
+                staticKey.getString(),
+                staticValue.detach(),
+                staticKey.getJSDocInfo()));
+          }
+        }
+      } else if (keyName.equals("getDefaultProps")) {
+        staticAssignments.add(createStaticAssignment(
+            typeName,
+            "defaultProps",
+            getLiteralDefaultProps(value).detach(),
+            null));
+        // Only the returned object literal is kept.
+        removedFunctions.add(value);
+      } else if (keyName.equals("getInitialState")) {
+        hasInitialState = true;
+        classMembers.addChildToBack(createMethod("initialState", key));
+      } else {
+        classMembers.addChildToBack(createMethod(keyName, key));
+        if (detachedPropertyNames.contains(keyName) &&
+            !componentMethodNames.contains(keyName)) {
+          boundMethodNames.add(keyName);
+        }
+      }
+    }
+
+    Node constructor = null;
+    if (hasInitialState || !boundMethodNames.isEmpty()) {
+      constructor =
+          createConstructor(typeName, boundMethodNames, hasInitialState);
+      classMembers.addChildToFront(constructor);
+    }
+
+    Node classNode = new Node(
+        Token.CLASS,
+        IR.empty(),
+        IR.getprop(IR.name("React"), IR.string("Component")),
+        classMembers);
+    classNode.useSourceInfoIfMissingFromForTree(callNode);
+    callNode.replaceWith(classNode);
+    // The other methods were moved from the spec, so only the constructor is
+    // a new scope.
+    ChangeReports.reportChange(compiler, classNode);
+    if (constructor != null) {
+      ChangeReports.reportNewCode(compiler, constructor);
+    }
+    for (Node removedFunction : removedFunctions) {
+      // Its key was in the spec that the class replaced.
+      ChangeReports.reportRemoval(compiler, removedFunction, classNode);
+    }
+
+    Node insertionPoint = statement;
+    for (Node assignment : staticAssignments) {
+      assignment.useSourceInfoIfMissingFromForTree(statement);
+      insertionPoint.getParent().addChildAfter(assignment, insertionPoint);
+      ChangeReports.reportChange(compiler, assignment);
+      insertionPoint = assignment;
+    }
+  }
+
+  private static Node createMethod(String name, Node key) {
+    Node member = IR.memberFunctionDef(name, key.getFirstChild().detach());
+    member.setJSDocInfo(key.getJSDocInfo());
+    return member;
+  }
+
+  private Node createStaticAssignment(
+      String typeName, String propertyName, Node value, JSDocInfo jsDocInfo) {
+    Node assign = IR.assign(
+        NodeUtil.newQName(compiler, typeName + "." + propertyName), value);
+    if (jsDocInfo != null) {
+      assign.setJSDocInfo(jsDocInfo);
+    }
+    return IR.exprResult(assign);
+  }
+
+  private static Node createConstructor(
+      String typeName,
+      List<String> boundMethodNames,
+      boolean hasInitialState) {
+    Node body = IR.block(IR.exprResult(IR.call(
+        IR.superNode(), IR.name("props"), IR.name("context"))));
+    for (String methodName : boundMethodNames) {
+      body.addChildToBack(IR.exprResult(IR.assign(
+          IR.getprop(IR.thisNode(), IR.string(methodName)),
+          IR.call(
+              IR.getprop(
+                  IR.getprop(IR.thisNode(), IR.string(methodName)),
+                  IR.string("bind")),
+              IR.thisNode()))));
+    }
+    if (hasInitialState) {
+      Node assign = IR.assign(
+          IR.getprop(IR.thisNode(), IR.string("state")),
+          IR.call(IR.getprop(IR.thisNode(), IR.string("initialState"))));
+      JSDocInfoBuilder jsDocBuilder = new JSDocInfoBuilder(true);
+      jsDocBuilder.recordType(new JSTypeExpression(
+          IR.string(typeName + ".State"), null));
+      assign.setJSDocInfo(jsDocBuilder.build());
+      body.addChildToBack(IR.exprResult(assign));
+    }
+    Node constructor = IR.memberFunctionDef(
+        "constructor",
+        IR.function(
+            IR.name(""),
+            IR.paramList(IR.name("props"), IR.name("context")),
+            body));
+    JSDocInfoBuilder jsDocBuilder = new JSDocInfoBuilder(true);
+    jsDocBuilder.recordParameter("props", new JSTypeExpression(
+        new Node(Token.EQUALS, new Node(Token.QMARK)), null));
+    jsDocBuilder.recordParameter("context", new JSTypeExpression(
+        new Node(Token.EQUALS, new Node(Token.QMARK)), null));
+    constructor.setJSDocInfo(jsDocBuilder.build());
+    return constructor;
+  }
+
+  /**
+   * Returns the object literal returned by a getDefaultProps implementation
+   * of the form function() { return {...}; } that does not reference this,
+   * or null if it does not have that form.
+   */
+  private static Node getLiteralDefaultProps(Node functionNode) {
+    Node body = functionNode.getLastChild();
+    if (!body.hasOneChild() || !body.getFirstChild().isReturn()) {
+      return null;
+    }
+    Node returnValue = body.getFirstFirstChild();
+    if (returnValue == null || !returnValue.isObjectLit()) {
+      return null;
+    }
+    if (NodeUtil.has(returnValue, Node::isThis,
+        n -> !n.isFunction() || n.isArrowFunction())) {
+      return null;
+    }
+    return returnValue;
+  }
+}
@@ -0,0 +1,207 @@
+package info.persistent.react.jscomp;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.javascript.rhino.JSDocInfo;
+import com.google.javascript.rhino.Node;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * A mixin together with the mixins that it includes (transitively), in the
+ * order in which types that include it get their methods and statics. Mixins
+ * are often included by many types, so this is computed once per mixin
+ * instead of walking the included mixins again for each of those types.
+ */
+class FlattenedMixin {
+  /**
+   * A method that comes from the mixin or one of the mixins that it includes.
+   * The name node is the reference to the included mixin that it came from
+   * (null for the mixin's own methods).
+   */
+  static class Member {
+    final MixinSummary.Method method;
+    final Node mixinNameNode;
+    final boolean isStatic;
+
+    Member(MixinSummary.Method method, Node mixinNameNode, boolean isStatic) {
+      this.method = method;
+      this.mixinNameNode = mixinNameNode;
+      this.isStatic = isStatic;
+    }
+  }
+
+  private final MixinSummary summary;
+  private final boolean isFinal;
+  private final ImmutableList<Member> specMethods;
+  private final ImmutableList<Node> includedMixinNameNodes;
+  private final ImmutableMap<String, JSDocInfo> staticsJsDocs;
+  private final ImmutableList<Node> unknownSpecMixins;
+  private final ImmutableList<Member> classMembers;
+  private final ImmutableList<Node> unknownClassMixins;
+
+  /**
+   * Flattens the given mixin, using the resolver to get the flattened mixins
+   * that it includes (null if they are unknown). Mixins that may still
+   * change (because their script is being traversed) are not final, nor are
+   * those that include them.
+   */
+  FlattenedMixin(
+      MixinSummary summary,
+      boolean isFinal,
+      Function<String, FlattenedMixin> resolver) {
+    this.summary = summary;
+
+    // React.createMixin specs: their methods, with those of the included
+    // mixins at the position of the "mixins" key.
+    List<Member> specMethods = Lists.newArrayList();
+    List<Node> includedMixinNameNodes = Lists.newArrayList();
+    Map<String, JSDocInfo> staticsJsDocs = Maps.newHashMap();
+    List<Node> unknownSpecMixins = Lists.newArrayList();
+    List<MixinSummary.Method> ownSpecMethods = summary.getSpecMethods();
+    for (int i = 0; i <= ownSpecMethods.size(); i++) {
+      if (i == summary.getIncludedMixinsIndex()) {
+        Set<String> mixinNames = Sets.newHashSet();
+        for (MixinSummary.IncludedMixin includedMixin :
+            summary.getIncludedMixins()) {
+          Node mixinNameNode = includedMixin.nameNode;
+          String mixinName = mixinNameNode.getQualifiedName();
+          if (!mixinNames.add(mixinName)) {
+            continue;
+          }
+          includedMixinNameNodes.add(mixinNameNode);
+          if (mixinName.equals(ReactCompilerPass.REACT_PURE_RENDER_MIXIN_NAME)) {
+            continue;
+          }
+          FlattenedMixin mixin = resolver.apply(includedMixin.symbolName);
+          if (mixin == null) {
+            unknownSpecMixins.add(mixinNameNode);
+            isFinal = false;
+            continue;
+          }
+          isFinal &= mixin.isFinal;
+          unknownSpecMixins.addAll(mixin.unknownSpecMixins);
+          includedMixinNameNodes.addAll(mixin.includedMixinNameNodes);
+          for (Member member : mixin.specMethods) {
+            specMethods.add(new Member(
+                member.method,
+                member.mixinNameNode != null ?
+                    member.mixinNameNode : mixinNameNode,
+                false));
+          }
+          staticsJsDocs.putAll(mixin.staticsJsDocs);
+        }
+      }
+      if (i == ownSpecMethods.size()) {
+        break;
+      }
+      specMethods.add(new Member(ownSpecMethods.get(i), null, false));
+    }
+    staticsJsDocs.putAll(summary.getStaticsJsDocs());
+
+    // ReactSupport.declareMixin classes: their interface methods and statics,
+    // followed by those of the mixins that they include.
+    List<Member> classMembers = Lists.newArrayList();
+    List<Node> unknownClassMixins = Lists.newArrayList();
+    for (MixinSummary.Method method : summary.getInterfaceMethods()) {
+      classMembers.add(new Member(method, null, false));
+    }
+    if (summary.isClassMixin()) {
+      for (MixinSummary.Method method : summary.getStaticMethods()) {
+        classMembers.add(new Member(method, null, true));
+      }
+      for (MixinSummary.IncludedMixin includedMixin :
+          summary.getIncludedMixins()) {
+        FlattenedMixin mixin = resolver.apply(includedMixin.symbolName);
+        if (mixin == null) {
+          unknownClassMixins.add(includedMixin.nameNode);
+          isFinal = false;
+          continue;
+        }
+        isFinal &= mixin.isFinal;
+        unknownClassMixins.addAll(mixin.unknownClassMixins);
+        for (Member member : mixin.classMembers) {
+          classMembers.add(new Member(
+              member.method,
+              member.mixinNameNode != null ?
+                  member.mixinNameNode : includedMixin.nameNode,
+              member.isStatic));
+        }
+      }
+    }
+
+    this.isFinal = isFinal;
+    this.specMethods = ImmutableList.copyOf(specMethods);
+    this.includedMixinNameNodes = ImmutableList.copyOf(includedMixinNameNodes);
+    this.staticsJsDocs = ImmutableMap.copyOf(staticsJsDocs);
+    this.unknownSpecMixins = ImmutableList.copyOf(unknownSpecMixins);
+    this.classMembers = ImmutableList.copyOf(classMembers);
+    this.unknownClassMixins = ImmutableList.copyOf(unknownClassMixins);
+  }
+
+  MixinSummary getSummary() {
+    return summary;
+  }
+
+  /**
+   * Whether the flattened mixin can be reused by later types (none of the
+   * mixins in it can change anymore, and they were all known).
+   */
+  boolean isFinal() {
+    return isFinal;
+  }
+
+  /**
+   * The methods that React.createClass types that include the mixin get, in
+   * order.
+   */
+  List<Member> getSpecMethods() {
+    return specMethods;
+  }
+
+  /**
+   * References to the mixins that the mixin includes (transitively, in the
+   * order in which their methods are included).
+   */
+  List<Node> getIncludedMixinNameNodes() {
+    return includedMixinNameNodes;
+  }
+
+  /**
+   * The JSDoc of the statics of the mixin and of the mixins that it includes
+   * (the mixin's own take precedence).
+   */
+  Map<String, JSDocInfo> getStaticsJsDocs() {
+    return staticsJsDocs;
+  }
+
+  /**
+   * References to included mixins that could not be found, when flattening
+   * the mixin for React.createClass types.
+   */
+  List<Node> getUnknownSpecMixins() {
+    return unknownSpecMixins;
+  }
+
+  /**
+   * The methods and statics that class types that include the mixin get, in
+   * order.
+   */
+  List<Member> getClassMembers() {
+    return classMembers;
+  }
+
+  /**
+   * References to included mixins that could not be found, when flattening
+   * the mixin for class types.
+   */
+  List<Node> getUnknownClassMixins() {
+    return unknownClassMixins;
+  }
+}
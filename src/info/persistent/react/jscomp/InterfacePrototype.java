@@ -0,0 +1,65 @@
+package info.persistent.react.jscomp;
+
+import com.google.common.collect.Maps;
+import com.google.javascript.rhino.IR;
+import com.google.javascript.rhino.Node;
+
+import java.util.Map;
+
+/**
+ * The method stubs of a generated interface's prototype, by name. Mixins copy
+ * their methods into the types that include them, and those types may then
+ * define them too, so a later definition replaces an earlier one (it's from
+ * the type itself or from a more specific mixin), and moves to the end.
+ *
+ * The object literal is only built once the interface is inserted, after which
+ * it's kept in sync with later definitions.
+ */
+class InterfacePrototype {
+  // Need insertion order iteration
+  private final Map<String, Node> keysByName = Maps.newLinkedHashMap();
+  private Node objectLiteral;
+
+  /**
+   * Adds the key node, returning the one with the same name that it replaced
+   * (if any). The replaced node is detached if the object literal was built.
+   */
+  Node put(Node keyNode) {
+    String name = keyNode.getString();
+    Node replacedKeyNode = keysByName.remove(name);
+    keysByName.put(name, keyNode);
+    if (objectLiteral != null) {
+      if (replacedKeyNode != null) {
+        replacedKeyNode.detach();
+      }
+      objectLiteral.addChildToBack(keyNode);
+    }
+    return replacedKeyNode;
+  }
+
+  /**
+   * Removes the key node with the given name (must be called before the
+   * object literal is built).
+   */
+  void remove(String name) {
+    keysByName.remove(name);
+  }
+
+  /**
+   * The object literal to assign to the interface's prototype.
+   */
+  Node buildObjectLiteral() {
+    objectLiteral = IR.objectlit();
+    for (Node keyNode : keysByName.values()) {
+      objectLiteral.addChildToBack(keyNode);
+    }
+    return objectLiteral;
+  }
+
+  /**
+   * The built object literal (null if it wasn't built yet).
+   */
+  Node getObjectLiteral() {
+    return objectLiteral;
+  }
+}
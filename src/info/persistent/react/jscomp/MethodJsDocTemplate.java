@@ -0,0 +1,66 @@
+package info.persistent.react.jscomp;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.javascript.rhino.JSDocInfo;
+import com.google.javascript.rhino.JSTypeExpression;
+import com.google.javascript.rhino.Node;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The parts of a method's JSDoc that are merged into the JSDoc of the
+ * implementations of that method (parameter types, in order, return type,
+ * template types and whether it's an override). Built-in component methods
+ * have their template created once per API version, so that annotating each
+ * component's methods doesn't need to go through the original JSDocInfo.
+ */
+final class MethodJsDocTemplate {
+  private final ImmutableList<JSTypeExpression> parameterTypes;
+  private final JSTypeExpression returnType;
+  private final ImmutableList<String> templateTypeNames;
+  private final ImmutableMap<String, Node> typeTransformations;
+  private final boolean isOverride;
+
+  private MethodJsDocTemplate(JSDocInfo jsDoc) {
+    ImmutableList.Builder<JSTypeExpression> parameterTypes =
+        ImmutableList.builder();
+    for (String parameterName : jsDoc.getParameterNames()) {
+      parameterTypes.add(jsDoc.getParameterType(parameterName));
+    }
+    this.parameterTypes = parameterTypes.build();
+    this.returnType = jsDoc.hasReturnType() ? jsDoc.getReturnType() : null;
+    this.templateTypeNames = ImmutableList.copyOf(jsDoc.getTemplateTypeNames());
+    this.typeTransformations =
+        ImmutableMap.copyOf(jsDoc.getTypeTransformations());
+    this.isOverride = jsDoc.isOverride();
+  }
+
+  static MethodJsDocTemplate of(JSDocInfo jsDoc) {
+    return new MethodJsDocTemplate(jsDoc);
+  }
+
+  List<JSTypeExpression> getParameterTypes() {
+    return parameterTypes;
+  }
+
+  /**
+   * The return type (null if the method doesn't declare one).
+   */
+  JSTypeExpression getReturnType() {
+    return returnType;
+  }
+
+  List<String> getTemplateTypeNames() {
+    return templateTypeNames;
+  }
+
+  Map<String, Node> getTypeTransformations() {
+    return typeTransformations;
+  }
+
+  boolean isOverride() {
+    return isOverride;
+  }
+}
@@ -0,0 +1,127 @@
+package info.persistent.react.jscomp;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.javascript.rhino.JSDocInfo;
+import com.google.javascript.rhino.Node;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * What types that include a mixin need to know about it: its method
+ * signatures, statics, abstract methods and the mixins that it includes in
+ * turn.
+ *
+ * Mixins have to stay visible to scripts (and modules) that are traversed
+ * after the one that defines them. Summaries are what is kept for that, so
+ * that the mixin's AST and scope can be released once its script is done.
+ */
+class MixinSummary {
+  /**
+   * A method signature. For methods of React.createMixin specs, the stub is a
+   * copy of the function with its parameters but without its body.
+   */
+  static class Method {
+    final String name;
+    final JSDocInfo jsDocInfo;
+    final String sourceFileName;
+    final Node stub;
+
+    Method(String name, JSDocInfo jsDocInfo, String sourceFileName, Node stub) {
+      this.name = name;
+      this.jsDocInfo = jsDocInfo;
+      this.sourceFileName = sourceFileName;
+      this.stub = stub;
+    }
+  }
+
+  /**
+   * A reference to another mixin. The name node is a detached copy, used for
+   * reporting errors and for its qualified name, and the symbol name is what
+   * it resolved to in the scope of the including mixin.
+   */
+  static class IncludedMixin {
+    final Node nameNode;
+    final String symbolName;
+
+    IncludedMixin(Node nameNode, String symbolName) {
+      this.nameNode = nameNode;
+      this.symbolName = symbolName;
+    }
+  }
+
+  private final boolean isClassMixin;
+  private final ImmutableList<Method> specMethods;
+  private final int includedMixinsIndex;
+  private final ImmutableList<IncludedMixin> includedMixins;
+  private final ImmutableMap<String, JSDocInfo> staticsJsDocs;
+  private final ImmutableList<Method> interfaceMethods;
+  private final ImmutableList<Method> staticMethods;
+  private final ImmutableMap<String, JSDocInfo> abstractMethodJsDocs;
+
+  MixinSummary(
+      boolean isClassMixin,
+      List<Method> specMethods,
+      int includedMixinsIndex,
+      List<IncludedMixin> includedMixins,
+      Map<String, JSDocInfo> staticsJsDocs,
+      List<Method> interfaceMethods,
+      List<Method> staticMethods,
+      Map<String, JSDocInfo> abstractMethodJsDocs) {
+    this.isClassMixin = isClassMixin;
+    this.specMethods = ImmutableList.copyOf(specMethods);
+    this.includedMixinsIndex = includedMixinsIndex;
+    this.includedMixins = ImmutableList.copyOf(includedMixins);
+    this.staticsJsDocs = ImmutableMap.copyOf(staticsJsDocs);
+    this.interfaceMethods = ImmutableList.copyOf(interfaceMethods);
+    this.staticMethods = ImmutableList.copyOf(staticMethods);
+    this.abstractMethodJsDocs = ImmutableMap.copyOf(abstractMethodJsDocs);
+  }
+
+  /**
+   * Whether the mixin is a class (declared via ReactSupport.declareMixin), as
+   * opposed to a React.createMixin spec.
+   */
+  boolean isClassMixin() {
+    return isClassMixin;
+  }
+
+  /**
+   * Non-private methods of a React.createMixin spec, in spec order.
+   */
+  List<Method> getSpecMethods() {
+    return specMethods;
+  }
+
+  /**
+   * The position in {@link #getSpecMethods()} at which the spec's "mixins" key
+   * appeared (or -1 if there is none).
+   */
+  int getIncludedMixinsIndex() {
+    return includedMixinsIndex;
+  }
+
+  List<IncludedMixin> getIncludedMixins() {
+    return includedMixins;
+  }
+
+  Map<String, JSDocInfo> getStaticsJsDocs() {
+    return staticsJsDocs;
+  }
+
+  /**
+   * Methods of the mixin's generated interface (including abstract ones).
+   */
+  List<Method> getInterfaceMethods() {
+    return interfaceMethods;
+  }
+
+  List<Method> getStaticMethods() {
+    return staticMethods;
+  }
+
+  Map<String, JSDocInfo> getAbstractMethodJsDocs() {
+    return abstractMethodJsDocs;
+  }
+}
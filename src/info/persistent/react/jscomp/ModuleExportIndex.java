@@ -0,0 +1,360 @@
+package info.persistent.react.jscomp;
+
+import com.google.common.base.Joiner;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.javascript.jscomp.AbstractCompiler;
+import com.google.javascript.jscomp.ModulePathAccessor;
+import com.google.javascript.jscomp.NodeUtil;
+import com.google.javascript.jscomp.Scope;
+import com.google.javascript.jscomp.Var;
+import com.google.javascript.jscomp.deps.ModuleLoader.ModulePath;
+import com.google.javascript.rhino.Node;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Index of the names that ES6 modules export, mapping each one to the module
+ * and local name that define it, through re-exports (export {Name} from
+ * "./file.js", export * from "./file.js" and exported imports). Resolved for
+ * all modules up front, so that references to React classes and mixins that
+ * go through barrel modules resolve to their definitions (see SymbolTable)
+ * with a single lookup.
+ */
+class ModuleExportIndex {
+  private static final String DEFAULT_EXPORT_NAME = "default";
+
+  /** A name in a module, either an exported or a local one. */
+  private static class Binding {
+    final String moduleKey;
+    final String name;
+    // Whether the name is an exported name of the module (export ... from)
+    // rather than a local one.
+    final boolean isExportedName;
+
+    Binding(String moduleKey, String name, boolean isExportedName) {
+      this.moduleKey = moduleKey;
+      this.name = name;
+      this.isExportedName = isExportedName;
+    }
+  }
+
+  // Module key -> exported name -> what it refers to.
+  private final Map<String, Map<String, Binding>> exportsByModule =
+      Maps.newHashMap();
+  // Module key -> keys of the modules that it re-exports all names of.
+  private final Map<String, List<String>> exportAllFromByModule =
+      Maps.newHashMap();
+  // Module key -> local name -> exported name of another module.
+  private final Map<String, Map<String, Binding>> importsByModule =
+      Maps.newHashMap();
+  // Exported name key -> local name key of its definition.
+  private final Map<String, String> resolvedExports = Maps.newHashMap();
+
+  public void clear() {
+    exportsByModule.clear();
+    exportAllFromByModule.clear();
+    importsByModule.clear();
+    resolvedExports.clear();
+  }
+
+  /**
+   * (Re-)indexes the modules in root (a script or the parent of scripts) and
+   * resolves the exports of all indexed modules again.
+   */
+  public void update(AbstractCompiler compiler, Node root) {
+    boolean changed = false;
+    if (root.isScript()) {
+      changed = addScript(compiler, root);
+    } else {
+      for (Node script : root.children()) {
+        changed |= addScript(compiler, script);
+      }
+    }
+    if (changed) {
+      resolveExports();
+    }
+  }
+
+  /**
+   * The name that a reference to a symbol resolves to in the given scope.
+   * Only module scopes affect it, so the scope may be null for references
+   * that are not in one (they resolve to their qualified name).
+   */
+  public String getName(Scope scope, Node nameNode) {
+    String name = nameNode.getQualifiedName();
+    if (scope == null || !scope.isModuleScope()) {
+      return name;
+    }
+    String[] namePieces = name.split("\\.");
+    Var nameVar = scope.getVar(namePieces[0]);
+    if (nameVar == null) {
+      return name;
+    }
+    ModulePath modulePath = ModulePathAccessor.getVarInputModulePath(nameVar);
+    Node nameVarNode = nameVar.getNode();
+    if (namePieces.length == 1) {
+      if (nameVarNode.getParent().isImportSpec()) {
+        // Even if we're not doing a property access the name could be something
+        // that's exported. We handle both patterns:
+        // import {Name} from "./file.js";
+        // import {Name as Name2} from "./file.js";
+        // The AST looks like this:
+        // IMPORT
+        //    EMPTY
+        //    IMPORT_SPECS
+        //        IMPORT_SPEC
+        //            NAME # exported name
+        //            NAME # nameVar node
+        //    STRING # module identifier
+        Node moduleIdentifier = nameVarNode.getGrandparent().getNext();
+        return resolveExport(
+            getModuleKey(modulePath, moduleIdentifier.getString()),
+            nameVarNode.getPrevious().getString());
+      }
+      if (nameVarNode.getParent().isImport()) {
+        // import Name from "./file.js";
+        Node moduleIdentifier = nameVarNode.getParent().getLastChild();
+        return resolveExport(
+            getModuleKey(modulePath, moduleIdentifier.getString()),
+            DEFAULT_EXPORT_NAME);
+      }
+      return getKey(getModuleKey(modulePath), name);
+    }
+
+    if (nameVarNode.isImportStar()) {
+      // Handle importing an entire module too, with this pattern:
+      // import * as file1 from "./file1.js"
+      // The AST looks like this:
+      // IMPORT
+      //    EMPTY
+      //    IMPORT_STAR # nameVar node
+      //    STRING # module identifier
+      Node moduleIdentifier = nameVarNode.getNext();
+      String key = resolveExport(
+          getModuleKey(modulePath, moduleIdentifier.getString()),
+          namePieces[1]);
+      if (namePieces.length == 2) {
+        return key;
+      }
+      return key + "." + Joiner.on(".").join(
+          Arrays.copyOfRange(namePieces, 2, namePieces.length));
+    }
+    return name;
+  }
+
+  /**
+   * The key that symbols defined in a module are stored under (see
+   * SymbolTable).
+   */
+  static String getKey(String moduleKey, String name) {
+    return moduleKey + "|" + name;
+  }
+
+  static String getModuleKey(ModulePath modulePath) {
+    String key = modulePath.toString();
+    // Undo ModuleResolver.resolveModuleAsPath adding .js extensions to .jsx
+    // files.
+    if (key.endsWith(".jsx.js")) {
+      key = key.substring(0, key.length() - 3);
+    }
+    return key;
+  }
+
+  private static String getModuleKey(
+      ModulePath modulePath, String moduleIdentifier) {
+    return getModuleKey(modulePath.resolveModuleAsPath(moduleIdentifier));
+  }
+
+  /**
+   * The key of the definition of a module's export. Modules that were not
+   * indexed are assumed to define all their exports themselves.
+   */
+  private String resolveExport(String moduleKey, String exportedName) {
+    String key = getKey(moduleKey, exportedName);
+    return resolvedExports.getOrDefault(key, key);
+  }
+
+  private boolean addScript(AbstractCompiler compiler, Node script) {
+    Node moduleBody = script.getFirstChild();
+    if (moduleBody == null || !moduleBody.isModuleBody()) {
+      return false;
+    }
+    ModulePath modulePath = ModulePathAccessor.getInputModulePath(
+        compiler.getInput(script.getInputId()));
+    String moduleKey = getModuleKey(modulePath);
+    Map<String, Binding> exports = Maps.newHashMap();
+    List<String> exportAllFrom = Lists.newArrayList();
+    Map<String, Binding> imports = Maps.newHashMap();
+    for (Node n : moduleBody.children()) {
+      if (n.isImport()) {
+        addImport(n, modulePath, imports);
+      } else if (n.isExport()) {
+        addExport(n, modulePath, moduleKey, exports, exportAllFrom);
+      }
+    }
+    exportsByModule.put(moduleKey, exports);
+    exportAllFromByModule.put(moduleKey, exportAllFrom);
+    importsByModule.put(moduleKey, imports);
+    return true;
+  }
+
+  private static void addImport(
+      Node importNode, ModulePath modulePath, Map<String, Binding> imports) {
+    String importModuleKey =
+        getModuleKey(modulePath, importNode.getLastChild().getString());
+    if (importNode.getFirstChild().isName()) {
+      // import Name from "./file.js";
+      imports.put(
+          importNode.getFirstChild().getString(),
+          new Binding(importModuleKey, DEFAULT_EXPORT_NAME, true));
+    }
+    if (importNode.getSecondChild().isImportSpecs()) {
+      // import {Name, Name2 as Name3} from "./file.js";
+      for (Node spec : importNode.getSecondChild().children()) {
+        imports.put(
+            spec.getLastChild().getString(),
+            new Binding(
+                importModuleKey, spec.getFirstChild().getString(), true));
+      }
+    }
+  }
+
+  private static void addExport(
+      Node exportNode,
+      ModulePath modulePath,
+      String moduleKey,
+      Map<String, Binding> exports,
+      List<String> exportAllFrom) {
+    if (exportNode.getBooleanProp(Node.EXPORT_ALL_FROM)) {
+      // export * from "./file.js";
+      exportAllFrom.add(
+          getModuleKey(modulePath, exportNode.getLastChild().getString()));
+      return;
+    }
+    Node declaration = exportNode.getFirstChild();
+    if (exportNode.getBooleanProp(Node.EXPORT_DEFAULT)) {
+      // export default Name;
+      // export default class Name {}
+      String name = declaration.isName() ?
+          declaration.getString() : NodeUtil.getName(declaration);
+      if (name != null && !name.isEmpty() &&
+          (declaration.isName() || declaration.isClass() ||
+              declaration.isFunction())) {
+        exports.put(
+            DEFAULT_EXPORT_NAME, new Binding(moduleKey, name, false));
+      }
+      return;
+    }
+    if (declaration.isExportSpecs()) {
+      // export {Name, Name2 as Name3};
+      // export {Name, Name2 as Name3} from "./file.js";
+      String fromModuleKey = exportNode.hasTwoChildren() ?
+          getModuleKey(modulePath, exportNode.getLastChild().getString()) :
+          null;
+      for (Node spec : declaration.children()) {
+        String name = spec.getFirstChild().getString();
+        exports.put(
+            spec.getLastChild().getString(),
+            fromModuleKey != null ?
+                new Binding(fromModuleKey, name, true) :
+                new Binding(moduleKey, name, false));
+      }
+      return;
+    }
+    if (NodeUtil.isNameDeclaration(declaration)) {
+      // export const Name = ...;
+      for (Node lhs : NodeUtil.findLhsNodesInNode(declaration)) {
+        exports.put(
+            lhs.getString(), new Binding(moduleKey, lhs.getString(), false));
+      }
+    } else if (declaration.isClass() || declaration.isFunction()) {
+      // export class Name {}
+      String name = declaration.getFirstChild().getString();
+      exports.put(name, new Binding(moduleKey, name, false));
+    }
+  }
+
+  private void resolveExports() {
+    resolvedExports.clear();
+    for (String moduleKey : exportsByModule.keySet()) {
+      Set<String> exportedNames = Sets.newHashSet();
+      collectExportedNames(moduleKey, Sets.newHashSet(), exportedNames);
+      for (String exportedName : exportedNames) {
+        String key = resolveExport(moduleKey, exportedName, Sets.newHashSet());
+        if (key != null) {
+          resolvedExports.put(getKey(moduleKey, exportedName), key);
+        }
+      }
+    }
+  }
+
+  private void collectExportedNames(
+      String moduleKey, Set<String> visitedModuleKeys, Set<String> names) {
+    if (!visitedModuleKeys.add(moduleKey) ||
+        !exportsByModule.containsKey(moduleKey)) {
+      return;
+    }
+    boolean isExportAll = visitedModuleKeys.size() > 1;
+    for (String name : exportsByModule.get(moduleKey).keySet()) {
+      // export * does not include the default export.
+      if (!isExportAll || !name.equals(DEFAULT_EXPORT_NAME)) {
+        names.add(name);
+      }
+    }
+    for (String fromModuleKey : exportAllFromByModule.get(moduleKey)) {
+      collectExportedNames(fromModuleKey, visitedModuleKeys, names);
+    }
+  }
+
+  /**
+   * Follows re-exports of the given name to the key of its definition. Null
+   * if the module does not export the name (or the re-exports are circular).
+   */
+  private String resolveExport(
+      String moduleKey, String exportedName, Set<String> visitedKeys) {
+    String key = getKey(moduleKey, exportedName);
+    if (!visitedKeys.add(key)) {
+      return null;
+    }
+    Map<String, Binding> exports = exportsByModule.get(moduleKey);
+    if (exports == null) {
+      // Not a module that was indexed, assume that it defines the name.
+      return key;
+    }
+    Binding binding = exports.get(exportedName);
+    if (binding != null) {
+      return resolveBinding(binding, visitedKeys);
+    }
+    if (exportedName.equals(DEFAULT_EXPORT_NAME)) {
+      return null;
+    }
+    for (String fromModuleKey : exportAllFromByModule.get(moduleKey)) {
+      String fromKey = resolveExport(fromModuleKey, exportedName, visitedKeys);
+      // Modules that were not indexed can't be known to export the name.
+      if (fromKey != null && exportsByModule.containsKey(fromModuleKey)) {
+        return fromKey;
+      }
+    }
+    return null;
+  }
+
+  private String resolveBinding(Binding binding, Set<String> visitedKeys) {
+    if (binding.isExportedName) {
+      return resolveExport(binding.moduleKey, binding.name, visitedKeys);
+    }
+    // Exported local names may be imports themselves:
+    // import {Name} from "./file.js";
+    // export {Name};
+    Binding importBinding =
+        importsByModule.get(binding.moduleKey).get(binding.name);
+    if (importBinding != null) {
+      return resolveBinding(importBinding, visitedKeys);
+    }
+    return getKey(binding.moduleKey, binding.name);
+  }
+}
@@ -0,0 +1,144 @@
+package info.persistent.react.jscomp;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.javascript.jscomp.AbstractCompiler;
+import com.google.javascript.jscomp.Compiler;
+import com.google.javascript.jscomp.CompilerInput;
+import com.google.javascript.jscomp.JSModule;
+import com.google.javascript.jscomp.JsAst;
+import com.google.javascript.jscomp.SourceAst;
+import com.google.javascript.jscomp.SourceFile;
+import com.google.javascript.rhino.InputId;
+import com.google.javascript.rhino.Node;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Parsed inputs that are kept across compilations of the same program, so
+ * that only the inputs whose contents changed are parsed again. Inputs that
+ * had parse errors or warnings are not kept, so that those are reported by
+ * every compilation.
+ */
+class ParsedInputCache {
+  private static class Entry {
+    final String code;
+    final Node root;
+
+    Entry(String code, Node root) {
+      this.code = code;
+      this.root = root;
+    }
+  }
+
+  private final Map<String, Entry> entriesByName = Maps.newHashMap();
+  private ImmutableSet<String> inputNames = ImmutableSet.of();
+  private ImmutableMap<String, String> unsavedCodeByName = ImmutableMap.of();
+
+  /**
+   * Sets the contents to use for inputs (by name) instead of reading them.
+   */
+  void setUnsavedCode(Map<String, String> unsavedCodeByName) {
+    this.unsavedCodeByName = ImmutableMap.copyOf(unsavedCodeByName);
+  }
+
+  /**
+   * Makes the inputs of the modules use (and populate) the cache. Must be
+   * called before the compiler is initialized with the modules.
+   */
+  void useFor(List<JSModule> modules) {
+    Set<String> inputNames = Sets.newLinkedHashSet();
+    for (JSModule module : modules) {
+      List<CompilerInput> inputs = ImmutableList.copyOf(module.getInputs());
+      module.removeAll();
+      for (CompilerInput input : inputs) {
+        String name = input.getName();
+        inputNames.add(name);
+        String unsavedCode = unsavedCodeByName.get(name);
+        SourceFile sourceFile = unsavedCode != null ?
+            SourceFile.fromCode(name, unsavedCode) : input.getSourceFile();
+        module.add(new CompilerInput(
+            new CachedAst(sourceFile), input.isExtern()));
+      }
+    }
+    entriesByName.keySet().retainAll(inputNames);
+    this.inputNames = ImmutableSet.copyOf(inputNames);
+  }
+
+  /**
+   * The names of the inputs of the last compilation that used the cache.
+   */
+  Set<String> getInputNames() {
+    return inputNames;
+  }
+
+  /**
+   * An input that gets a copy of the cached AST if its contents are
+   * unchanged, and is parsed (and cached) otherwise.
+   */
+  private class CachedAst implements SourceAst {
+    private final InputId inputId;
+    private SourceFile sourceFile;
+    private Node root;
+
+    CachedAst(SourceFile sourceFile) {
+      this.inputId = new InputId(sourceFile.getName());
+      this.sourceFile = sourceFile;
+    }
+
+    @Override public Node getAstRoot(AbstractCompiler compiler) {
+      if (root != null) {
+        return root;
+      }
+      String name = sourceFile.getName();
+      String code;
+      try {
+        code = sourceFile.getCode();
+      } catch (IOException e) {
+        // Let the parser report it.
+        entriesByName.remove(name);
+        root = new JsAst(sourceFile).getAstRoot(compiler);
+        return root;
+      }
+      Entry entry = entriesByName.get(name);
+      if (entry != null && entry.code.equals(code)) {
+        root = entry.root.cloneTree(true);
+        return root;
+      }
+      Compiler parsingCompiler = (Compiler) compiler;
+      int errorCount = parsingCompiler.getErrorCount();
+      int warningCount = parsingCompiler.getWarningCount();
+      root = new JsAst(sourceFile).getAstRoot(compiler);
+      if (root != null &&
+          parsingCompiler.getErrorCount() == errorCount &&
+          parsingCompiler.getWarningCount() == warningCount) {
+        entriesByName.put(name, new Entry(code, root.cloneTree(true)));
+      } else {
+        entriesByName.remove(name);
+      }
+      return root;
+    }
+
+    @Override public void clearAst() {
+      root = null;
+    }
+
+    @Override public InputId getInputId() {
+      return inputId;
+    }
+
+    @Override public SourceFile getSourceFile() {
+      return sourceFile;
+    }
+
+    @Override public void setSourceFile(SourceFile sourceFile) {
+      this.sourceFile = sourceFile;
+    }
+  }
+}
@@ -8,6 +8,7 @@ import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 import com.google.javascript.jscomp.Compiler;
 import com.google.javascript.jscomp.DiagnosticType;
+import com.google.javascript.jscomp.JSDocInfoPrinter;
 import com.google.javascript.jscomp.JSError;
 import com.google.javascript.jscomp.NodeUtil;
 import com.google.javascript.rhino.IR;
@@ -23,6 +24,7 @@ import com.google.javascript.rhino.jstype.PrototypeObjectType;
 import com.google.javascript.rhino.jstype.UnionType;
 
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -86,12 +88,12 @@ class PropTypesExtractor {
   private static final String PROPS_VALIDATOR_SUFFIX = ".PropsValidator";
   private static final String CHILDREN_VALIDATOR_SUFFIX = ".ChildrenValidator";
 
-  private static final JSTypeExpression REACT_PROPS_TYPE = new JSTypeExpression(
-      IR.string("ReactProps"), null);
-  private static final JSTypeExpression REACT_PROPS_TYPE_BANG = new JSTypeExpression(
-      new Node(Token.BANG, IR.string("ReactProps")), null);
-  private static final JSTypeExpression REACT_PROPS_TYPE_QMARK = new JSTypeExpression(
-      new Node(Token.QMARK, IR.string("ReactProps")), null);
+  private static final TypeExpressionKey REACT_PROPS_TYPE =
+      TypeExpressionKey.of(IR.string("ReactProps"));
+  private static final TypeExpressionKey REACT_PROPS_TYPE_BANG =
+      TypeExpressionKey.of(new Node(Token.BANG, IR.string("ReactProps")));
+  private static final TypeExpressionKey REACT_PROPS_TYPE_QMARK =
+      TypeExpressionKey.of(new Node(Token.QMARK, IR.string("ReactProps")));
 
   private final Node propTypesNode;
   private final Node defaultPropsNode;
@@ -113,6 +115,14 @@ class PropTypesExtractor {
   private boolean childrenIsRequired;
   private String spreadValidatorFuncName;
   private String spreadValidatorPropsTypeName;
+  private final List<Node> validatorNodes = Lists.newArrayList();
+  // Set if an earlier component had the same props, in which case its record
+  // types and validators are aliased instead of being generated again.
+  private PropTypesExtractor sharedShape;
+  private Node lastInsertedNode;
+  private boolean deferValidators;
+  // Set while the validators that insert deferred are yet to be inserted.
+  private Node deferredValidatorsInsertionPoint;
 
   public PropTypesExtractor(
       Node propTypesNode,
@@ -562,19 +572,107 @@ class PropTypesExtractor {
         qmark(IR.string(propsTypeName)), sourceFileName);
     React.replaceComponentMethodParameterTypes(
         componentMethodKeys,
-        ImmutableMap.<JSTypeExpression, JSTypeExpression>builder()
+        ImmutableMap.<TypeExpressionKey, JSTypeExpression>builder()
             .put(REACT_PROPS_TYPE, replacementType)
             .put(REACT_PROPS_TYPE_BANG, replacementType)
             .put(REACT_PROPS_TYPE_QMARK, replacementTypeQMark)
             .build());
   }
 
+  /**
+   * A key that is the same for extractors that generate the same record types
+   * and validators (other than their names), if they are in the same scope.
+   * That is, for props with the same names, types, required-ness and which
+   * props have defaults (the default values themselves don't matter), in any
+   * order, and the same mixins. Null if there is nothing worth sharing (there
+   * are no props).
+   */
+  String getShapeKey() {
+    if (forContext || (props.isEmpty() && mixedInPropTypes.isEmpty())) {
+      return null;
+    }
+    StringBuilder key = new StringBuilder();
+    // Mixins are iterated over in no particular order, and neither the record
+    // types nor the validators depend on the order of the props.
+    mixedInPropTypes.keySet().stream()
+        .map(Node::getQualifiedName)
+        .sorted()
+        .forEach(name -> key.append("mixin ").append(name).append('\n'));
+    List<Prop> sortedProps = Lists.newArrayList(props);
+    sortedProps.sort(Comparator.comparing(prop -> prop.propTypeKeyNode.getString()));
+    for (Prop prop : sortedProps) {
+      key.append(prop.propTypeKeyNode.isQuotedString() ? "'" : "")
+          .append(prop.propTypeKeyNode.getString())
+          .append(prop.propType.isRequired ? " required" : "")
+          .append(prop.hasDefaultValue ? " default" : "");
+      TypeExpressionKey.appendCanonicalForm(
+          prop.propType.optionalTypeNode, key.append(' '));
+      TypeExpressionKey.appendCanonicalForm(
+          prop.propType.requiredTypeNode, key.append(' '));
+      key.append('\n');
+    }
+    return key.toString();
+  }
+
+  /**
+   * Makes {@link #insert} alias the types and validators of the given
+   * extractor (which must have the same shape key) instead of generating its
+   * own.
+   */
+  void shareShapeWith(PropTypesExtractor sharedShape) {
+    this.sharedShape = sharedShape;
+  }
+
+  /**
+   * Whether the types that {@link #insert} added are still in the tree and
+   * come before n, so that n can refer to them.
+   */
+  boolean isInsertedBefore(Node n) {
+    if (lastInsertedNode == null ||
+        lastInsertedNode.getParent() != n.getParent()) {
+      return false;
+    }
+    for (Node previous = n; previous != null; previous = previous.getPrevious()) {
+      if (previous == lastInsertedNode) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Makes {@link #insert} only add the props type (and the component's props
+   * field), leaving the validators (and the record types that only they use)
+   * for {@link #insertDeferredValidators} to add, once they are needed.
+   */
+  void deferValidators() {
+    this.deferValidators = true;
+  }
+
+  /**
+   * Adds the validators that {@link #insert} deferred, in the same place that
+   * it would have added them. Does nothing if they were added already.
+   */
+  void insertDeferredValidators() {
+    if (deferredValidatorsInsertionPoint == null) {
+      return;
+    }
+    Node insertionPoint = deferredValidatorsInsertionPoint;
+    deferredValidatorsInsertionPoint = null;
+    insertValidators(insertionPoint);
+  }
+
   public void insert(Node insertionPoint) {
+    if (sharedShape != null) {
+      insertSharedShapeAliases(insertionPoint);
+      return;
+    }
     Node propsRecordTypeNode = getPropsRecordTypeNode(
         propsTypeName, RequiredMode.COMPONENT);
     propsRecordTypeNode.useSourceInfoIfMissingFromForTree(insertionPoint);
     insertionPoint.getParent().addChildAfter(
         propsRecordTypeNode, insertionPoint);
+    ChangeReports.reportNewCode(compiler, propsRecordTypeNode);
     insertionPoint = propsRecordTypeNode;
 
     if (forContext) {
@@ -589,10 +687,43 @@ class PropTypesExtractor {
       propsNode = IR.exprResult(propsNode);
       propsNode.useSourceInfoIfMissingFromForTree(insertionPoint);
       insertionPoint.getParent().addChildAfter(propsNode, insertionPoint);
+      ChangeReports.reportNewCode(compiler, propsNode);
       insertionPoint = propsNode;
       return;
     }
 
+    if (deferValidators) {
+      deferredValidatorsInsertionPoint = insertionPoint;
+    } else {
+      insertionPoint = insertValidators(insertionPoint);
+    }
+
+    // /** @type {!Comp.Props} */
+    // CompInterface.prototype.props;
+    JSDocInfoBuilder jsDocBuilder = new JSDocInfoBuilder(true);
+    jsDocBuilder.recordType(
+        new JSTypeExpression(bang(IR.string(propsTypeName)), sourceFileName));
+    Node propsNode = NodeUtil.newQName(
+        compiler, interfaceTypeName + ".prototype.props");
+    propsNode.setJSDocInfo(jsDocBuilder.build());
+    propsNode = IR.exprResult(propsNode);
+    propsNode.useSourceInfoIfMissingFromForTree(insertionPoint);
+    insertionPoint.getParent().addChildAfter(propsNode, insertionPoint);
+    ChangeReports.reportNewCode(compiler, propsNode);
+    lastInsertedNode = propsNode;
+  }
+
+  /**
+   * Inserts the validators (and their record types) after the given node.
+   * Returns the last node that was inserted.
+   */
+  private Node insertValidators(Node insertionPoint) {
+    if (sharedShape != null) {
+      // The shared validators may have been deferred too.
+      sharedShape.insertDeferredValidators();
+      return insertSharedShapeValidatorAliases(insertionPoint);
+    }
+
     // To type check React.createElement calls we wrap the "props" parameter
     // with a call to this function. This forces the compiler to check the
     // type of the parameter against the element's props (we can't do it via a
@@ -622,6 +753,7 @@ class PropTypesExtractor {
           insertionPoint);
       insertionPoint.getParent().addChildAfter(
           validatorPropsRecordTypeNode, insertionPoint);
+      ChangeReports.reportNewCode(compiler, validatorPropsRecordTypeNode);
       insertionPoint = validatorPropsRecordTypeNode;
     }
     if (!props.isEmpty() || !mixedInPropTypes.isEmpty()) {
@@ -649,7 +781,9 @@ class PropTypesExtractor {
       validatorAssignmentNode.useSourceInfoIfMissingFromForTree(insertionPoint);
       insertionPoint.getParent().addChildAfter(
         validatorAssignmentNode, insertionPoint);
+      ChangeReports.reportNewCode(compiler, validatorAssignmentNode);
       insertionPoint = validatorAssignmentNode;
+      validatorNodes.add(validatorAssignmentNode);
     }
 
     // A similar validator function is also necessary to validate the children
@@ -673,7 +807,9 @@ class PropTypesExtractor {
       childrenValidatorAssignmentNode.useSourceInfoIfMissingFromForTree(insertionPoint);
       insertionPoint.getParent().addChildAfter(
         childrenValidatorAssignmentNode, insertionPoint);
+      ChangeReports.reportNewCode(compiler, childrenValidatorAssignmentNode);
       insertionPoint = childrenValidatorAssignmentNode;
+      validatorNodes.add(childrenValidatorAssignmentNode);
     }
 
     // And yet another validation function is needed to validate props used in
@@ -690,6 +826,7 @@ class PropTypesExtractor {
           insertionPoint);
       insertionPoint.getParent().addChildAfter(
           spreadValidatorPropsRecordTypeNode, insertionPoint);
+      ChangeReports.reportNewCode(compiler, spreadValidatorPropsRecordTypeNode);
       insertionPoint = spreadValidatorPropsRecordTypeNode;
 
       Node spreadValidatorFuncNode = IR.function(
@@ -708,7 +845,23 @@ class PropTypesExtractor {
       spreadValidatorAssignmentNode.useSourceInfoIfMissingFromForTree(insertionPoint);
       insertionPoint.getParent().addChildAfter(
         spreadValidatorAssignmentNode, insertionPoint);
+      ChangeReports.reportNewCode(compiler, spreadValidatorAssignmentNode);
       insertionPoint = spreadValidatorAssignmentNode;
+      validatorNodes.add(spreadValidatorAssignmentNode);
+    }
+    return insertionPoint;
+  }
+
+  private void insertSharedShapeAliases(Node insertionPoint) {
+    // /** @typedef {!SharedComp$Props} */
+    // Comp.Props;
+    insertionPoint = insertAfter(
+        getTypedefAliasNode(propsTypeName, sharedShape.propsTypeName),
+        insertionPoint);
+    if (deferValidators) {
+      deferredValidatorsInsertionPoint = insertionPoint;
+    } else {
+      insertionPoint = insertValidators(insertionPoint);
     }
 
     // /** @type {!Comp.Props} */
@@ -719,10 +872,91 @@ class PropTypesExtractor {
     Node propsNode = NodeUtil.newQName(
         compiler, interfaceTypeName + ".prototype.props");
     propsNode.setJSDocInfo(jsDocBuilder.build());
-    propsNode = IR.exprResult(propsNode);
-    propsNode.useSourceInfoIfMissingFromForTree(insertionPoint);
-    insertionPoint.getParent().addChildAfter(propsNode, insertionPoint);
-    insertionPoint = propsNode;
+    lastInsertedNode = insertAfter(IR.exprResult(propsNode), insertionPoint);
+  }
+
+  private Node insertSharedShapeValidatorAliases(Node insertionPoint) {
+    validatorPropsTypeName = propsTypeName;
+    if (!sharedShape.validatorPropsTypeName.equals(sharedShape.propsTypeName)) {
+      validatorPropsTypeName = typeName + ".CreateProps";
+      insertionPoint = insertAfter(
+          getTypedefAliasNode(
+              validatorPropsTypeName, sharedShape.validatorPropsTypeName),
+          insertionPoint);
+    }
+    // The validators are aliased too (instead of the calls being rewritten to
+    // use the shared ones directly), so that errors still name the component
+    // that was being created.
+    // /** @const */
+    // Comp.PropsValidator = SharedComp.PropsValidator;
+    if (sharedShape.validatorFuncNode != null) {
+      validatorFuncNode = sharedShape.validatorFuncNode;
+      insertionPoint = insertAfter(
+          getValidatorAliasNode(
+              validatorFuncName, sharedShape.validatorFuncName),
+          insertionPoint);
+      validatorNodes.add(insertionPoint);
+    }
+    if (childrenPropTypeNode != null) {
+      insertionPoint = insertAfter(
+          getValidatorAliasNode(
+              childrenValidatorFuncName, sharedShape.childrenValidatorFuncName),
+          insertionPoint);
+      validatorNodes.add(insertionPoint);
+    }
+    spreadValidatorPropsTypeName = validatorPropsTypeName;
+    spreadValidatorFuncName = validatorFuncName;
+    if (!canBeCreatedWithNoProps) {
+      spreadValidatorFuncName = validatorFuncName + "Spread";
+      spreadValidatorPropsTypeName = typeName + ".SpreadProps";
+      insertionPoint = insertAfter(
+          getTypedefAliasNode(
+              spreadValidatorPropsTypeName,
+              sharedShape.spreadValidatorPropsTypeName),
+          insertionPoint);
+      insertionPoint = insertAfter(
+          getValidatorAliasNode(
+              spreadValidatorFuncName, sharedShape.spreadValidatorFuncName),
+          insertionPoint);
+      validatorNodes.add(insertionPoint);
+    }
+    return insertionPoint;
+  }
+
+  private Node insertAfter(Node node, Node insertionPoint) {
+    node.useSourceInfoIfMissingFromForTree(insertionPoint);
+    insertionPoint.getParent().addChildAfter(node, insertionPoint);
+    ChangeReports.reportNewCode(compiler, node);
+    return node;
+  }
+
+  private Node getTypedefAliasNode(String name, String sharedName) {
+    JSDocInfoBuilder jsDocBuilder = new JSDocInfoBuilder(true);
+    jsDocBuilder.recordTypedef(new JSTypeExpression(
+        bang(IR.string(getRecordTypeName(sharedName))), sourceFileName));
+    return NodeUtil.newQNameDeclaration(
+        compiler, name, null, jsDocBuilder.build());
+  }
+
+  private Node getValidatorAliasNode(String name, String sharedName) {
+    JSDocInfoBuilder jsDocBuilder = new JSDocInfoBuilder(true);
+    jsDocBuilder.recordConstancy();
+    return NodeUtil.newQNameDeclaration(
+        compiler,
+        name,
+        NodeUtil.newQName(compiler, sharedName),
+        jsDocBuilder.build());
+  }
+
+  private static String getRecordTypeName(String name) {
+    return name.replaceAll("\\.", "\\$");
+  }
+
+  /**
+   * The validator function assignments that {@link #insert} added.
+   */
+  List<Node> getValidatorNodes() {
+    return validatorNodes;
   }
 
   private static enum RequiredMode {
@@ -737,7 +971,7 @@ class PropTypesExtractor {
     // because they're just object literals, and it makes the compiler think
     // that they are namespaces (and then it complains about incomplete aliases
     // when the mixins are reference).
-    String typeName = name.replaceAll("\\.", "\\$");
+    String typeName = getRecordTypeName(name);
     // /** @record */
     // var Comp$Props = function() {};
     JSDocInfoBuilder jsDocBuilder = new JSDocInfoBuilder(true);
@@ -859,6 +1093,7 @@ class PropTypesExtractor {
         }
         validatorCallNode.useSourceInfoIfMissingFrom(spreadParamNode);
         callNode.addChildAfter(validatorCallNode, prevNode);
+        ChangeReports.reportChange(compiler, validatorCallNode);
       }
     }
   }
@@ -873,6 +1108,7 @@ class PropTypesExtractor {
           propsNode);
       validatorCallNode.useSourceInfoIfMissingFrom(propsNode);
       parentNode.addChildAfter(validatorCallNode, prevNode);
+      ChangeReports.reportChange(compiler, validatorCallNode);
     } else if (propsNode.isCall()) {
       // If it's a Object.asign() call (created because of a spread operator)
       // then add the validator to object literal parameters instead.
@@ -883,7 +1119,12 @@ class PropTypesExtractor {
     }
   }
 
-  public void visitReactCreateElement(Node callNode) {
+  /**
+   * @param checkLiteralProps whether to check props (and children) that are
+   *     literals directly, instead of inserting validator calls for the type
+   *     checker to check.
+   */
+  public void visitReactCreateElement(Node callNode, boolean checkLiteralProps) {
     int callParamCount = callNode.getChildCount() - 1;
     // Replaces
     // React.createElement(Comp, {...});
@@ -892,16 +1133,24 @@ class PropTypesExtractor {
     if (callParamCount < 2) {
       return;
     }
+    insertDeferredValidators();
 
     Node callTypeNode = callNode.getChildAtIndex(1);
     Node propsParamNode = callNode.getChildAtIndex(2);
-    visitReactProp(callTypeNode, propsParamNode);
+    if (!checkLiteralProps || !checkLiteralProps(propsParamNode)) {
+      visitReactProp(callTypeNode, propsParamNode);
+    }
 
     // It's more difficult to validate multiple children, but that use case is
     // uncommon.
     if (childrenPropTypeNode != null) {
       if (callParamCount == 3) {
         Node childParamNode = callNode.getChildAtIndex(3);
+        if (checkLiteralProps &&
+            Boolean.TRUE.equals(literalMatchesType(
+                childParamNode, childrenPropTypeNode))) {
+          return;
+        }
         childParamNode.detach();
         Node childValidatorCallNode = IR.call(
             generateValidatorFuncCallName(callTypeNode, childrenValidatorFuncName),
@@ -909,12 +1158,211 @@ class PropTypesExtractor {
         childValidatorCallNode.useSourceInfoIfMissingFrom(childParamNode);
         callNode.addChildAfter(
           childValidatorCallNode, callNode.getChildAtIndex(2));
+        ChangeReports.reportChange(compiler, childValidatorCallNode);
       } else if (callParamCount == 2 && childrenIsRequired) {
         compiler.report(JSError.make(callNode, NO_CHILDREN_ARGUMENT, typeName));
       }
     }
   }
 
+  /**
+   * Checks props that are null or an object literal with literal values
+   * against the extracted props, and reports any mismatches. Returns false
+   * (without reporting anything) if that's not possible without the type
+   * checker, e.g. because a value is not a literal or its prop type refers to
+   * other types, or because the props of mixins are involved.
+   */
+  private boolean checkLiteralProps(Node propsNode) {
+    if (!mixedInPropTypes.isEmpty() || props == null) {
+      return false;
+    }
+    Set<String> propNames;
+    if (propsNode.isNull()) {
+      if (canBeCreatedWithNoProps) {
+        return true;
+      }
+      propNames = Collections.emptySet();
+    } else if (propsNode.isObjectLit()) {
+      propNames = Sets.newHashSetWithExpectedSize(propsNode.getChildCount());
+      for (Node keyNode : propsNode.children()) {
+        if (!keyNode.isStringKey()) {
+          return false;
+        }
+        propNames.add(keyNode.getString());
+      }
+    } else {
+      return false;
+    }
+
+    List<String> errors = Lists.newArrayList();
+    for (Prop prop : props) {
+      PropType propType = prop.propType;
+      if (propType.typeNode == childrenPropTypeNode) {
+        continue;
+      }
+      String propName = prop.propTypeKeyNode.getString();
+      if (!propNames.contains(propName)) {
+        if (propType.isRequired && !prop.hasDefaultValue) {
+          errors.add("\"" + propName + "\" was missing, expected to be of " +
+              "type " + typeToString(propType.requiredTypeNode));
+        }
+        continue;
+      }
+      // Same as the type of the prop in the validator's record type.
+      Node typeNode = propType.isRequired && prop.hasDefaultValue ?
+          propType.optionalTypeNode : propType.typeNode;
+      for (Node keyNode : propsNode.children()) {
+        if (!keyNode.getString().equals(propName)) {
+          continue;
+        }
+        Node valueNode = keyNode.getFirstChild();
+        Boolean matches = literalMatchesType(valueNode, typeNode);
+        if (matches == null) {
+          return false;
+        }
+        if (!matches) {
+          errors.add("\"" + propName + "\" was expected to be of type " +
+              typeToString(typeNode) + ", instead was " +
+              getLiteralTypeName(valueNode));
+        }
+      }
+    }
+    // Keys that are not props are allowed (as they are by the validator's
+    // record type), since there's no prop type to check them against.
+
+    if (!errors.isEmpty()) {
+      compiler.report(JSError.make(
+          propsNode, PROP_TYPES_VALIDATION_MISMATCH, typeName,
+          "  " + Joiner.on("\n  ").join(errors)));
+    }
+    return true;
+  }
+
+  /**
+   * Whether the value of the node is of the type, or null if that can't be
+   * determined without the type checker.
+   */
+  private static Boolean literalMatchesType(Node valueNode, Node typeNode) {
+    if (valueNode.isCast()) {
+      valueNode = valueNode.getFirstChild();
+    }
+    if (ReactCompilerPass.isReactCreateElement(valueNode)) {
+      return elementMatchesType(typeNode);
+    }
+    String literalTypeName = getLiteralTypeName(valueNode);
+    if (literalTypeName == null) {
+      return null;
+    }
+    return literalTypeMatchesType(literalTypeName, typeNode);
+  }
+
+  private static Boolean literalTypeMatchesType(
+      String literalTypeName, Node typeNode) {
+    switch (typeNode.getToken()) {
+      case STAR:
+        return true;
+      case BANG:
+        if (literalTypeName.equals("null")) {
+          return false;
+        }
+        return literalTypeMatchesType(
+            literalTypeName, typeNode.getFirstChild());
+      case QMARK:
+        if (!typeNode.hasChildren() || literalTypeName.equals("null")) {
+          return true;
+        }
+        return literalTypeMatchesType(
+            literalTypeName, typeNode.getFirstChild());
+      case PIPE:
+        Boolean result = false;
+        for (Node child : typeNode.children()) {
+          Boolean childResult = literalTypeMatchesType(literalTypeName, child);
+          if (childResult == null) {
+            result = null;
+          } else if (childResult) {
+            return true;
+          }
+        }
+        return result;
+      case STRING:
+        String typeName = typeNode.getString();
+        if (typeName.equals("void")) {
+          typeName = "undefined";
+        }
+        if (!typeNode.hasChildren() && typeName.equals("ReactChild")) {
+          return true;
+        }
+        if (typeNode.hasChildren() || !LITERAL_TYPE_NAMES.contains(typeName)) {
+          // Other types may be typedefs, enums, etc.
+          return null;
+        }
+        return typeName.equals(literalTypeName);
+      default:
+        return null;
+    }
+  }
+
+  /**
+   * Whether a React element is of the type, or null if that can't be
+   * determined without the type checker.
+   */
+  private static Boolean elementMatchesType(Node typeNode) {
+    switch (typeNode.getToken()) {
+      case STAR:
+        return true;
+      case BANG:
+      case QMARK:
+        return typeNode.hasChildren() ?
+            elementMatchesType(typeNode.getFirstChild()) : true;
+      case PIPE:
+        for (Node child : typeNode.children()) {
+          if (Boolean.TRUE.equals(elementMatchesType(child))) {
+            return true;
+          }
+        }
+        return null;
+      case STRING:
+        String typeName = typeNode.getString();
+        if (!typeNode.hasChildren() && (typeName.equals("ReactElement") ||
+            typeName.equals("ReactChild"))) {
+          return true;
+        }
+        return null;
+      default:
+        return null;
+    }
+  }
+
+  private static final Set<String> LITERAL_TYPE_NAMES =
+      Sets.newHashSet("number", "string", "boolean", "null", "undefined");
+
+  private static String getLiteralTypeName(Node valueNode) {
+    switch (valueNode.getToken()) {
+      case NUMBER:
+        return "number";
+      case NEG:
+        return valueNode.getFirstChild().isNumber() ? "number" : null;
+      case STRING:
+        return "string";
+      case TRUE:
+      case FALSE:
+        return "boolean";
+      case NULL:
+        return "null";
+      default:
+        return null;
+    }
+  }
+
+  private String typeToString(Node typeNode) {
+    JSDocInfoBuilder jsDocBuilder = new JSDocInfoBuilder(true);
+    jsDocBuilder.recordType(new JSTypeExpression(
+        typeNode.cloneTree(), sourceFileName));
+    String jsDoc = new JSDocInfoPrinter(false).print(jsDocBuilder.build());
+    return jsDoc.substring(
+        jsDoc.indexOf("{") + 1, jsDoc.lastIndexOf("}")).trim();
+  }
+
   JSError generatePropTypesError(Node paramNode) {
     JSType paramType = paramNode.getJSType();
     if (paramType == null) {
@@ -1,6 +1,10 @@
 package info.persistent.react.jscomp;
 
 import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.io.Resources;
 import com.google.javascript.rhino.JSDocInfo;
 import com.google.javascript.rhino.JSDocInfoBuilder;
@@ -9,6 +13,7 @@ import com.google.javascript.rhino.Node;
 
 import java.io.IOException;
 import java.net.URL;
+import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
 
@@ -46,25 +51,145 @@ public class React {
     "beforeInput", "compositionEnd", "compositionStart", "compositionUpdate"
   };
 
-  private static String typesJs = null;
+  /**
+   * React API surfaces that the injected externs can describe. types.js
+   * describes React 15, each later version is described by the changes
+   * (removed declarations, additional types and event names) relative to the
+   * previous one.
+   */
+  public enum ApiVersion {
+    REACT_15(
+        null,
+        ImmutableSet.of(),
+        ImmutableList.of(),
+        ImmutableList.of()),
+    REACT_16(
+        "info/persistent/react/jscomp/types-react16.js",
+        // createClass, PropTypes and the addons moved to separate packages.
+        ImmutableSet.of(
+            "ReactModule.prototype.createClass",
+            "ReactModule.prototype.createMixin",
+            "ReactModule.prototype.PropTypes",
+            "ReactModule.prototype.addons",
+            "ReactModule.prototype.initializeTouchEvents",
+            "ReactModule.prototype.__spread",
+            "ReactComponent.prototype.replaceState",
+            "ReactComponent.prototype.isMounted",
+            "ReactModule.prototype.Component.prototype.replaceState",
+            "ReactModule.prototype.Component.prototype.isMounted",
+            "ReactAddons",
+            "ReactAddonsPerf",
+            "ReactCSSTransitionGroup",
+            "ReactTransitionGroup"),
+        // PointerEventPlugin and the auxclick/toggle events were added,
+        // TapEventPlugin was removed.
+        ImmutableList.of(
+            "auxClick", "gotPointerCapture", "lostPointerCapture",
+            "pointerCancel", "pointerDown", "pointerEnter", "pointerLeave",
+            "pointerMove", "pointerOut", "pointerOver", "pointerUp", "toggle"),
+        ImmutableList.of("touchTap")),
+    // React 17 did not change the API that the externs describe (only how
+    // events are delegated and pooled).
+    REACT_17(
+        null,
+        ImmutableSet.of(),
+        ImmutableList.of(),
+        ImmutableList.of()),
+    REACT_18(
+        "info/persistent/react/jscomp/types-react18.js",
+        ImmutableSet.of(
+            "ReactDOMModule.prototype.unstable_renderSubtreeIntoContainer"),
+        ImmutableList.of(),
+        ImmutableList.of());
 
-  public static synchronized String getTypesJs() {
+    private final String typesResourcePath;
+    private final ImmutableSet<String> removedDeclarations;
+    private final ImmutableList<String> addedEventNames;
+    private final ImmutableList<String> removedEventNames;
+
+    ApiVersion(
+        String typesResourcePath,
+        ImmutableSet<String> removedDeclarations,
+        ImmutableList<String> addedEventNames,
+        ImmutableList<String> removedEventNames) {
+      this.typesResourcePath = typesResourcePath;
+      this.removedDeclarations = removedDeclarations;
+      this.addedEventNames = addedEventNames;
+      this.removedEventNames = removedEventNames;
+    }
+
+    /**
+     * Whether the types.js declaration with the given qualified name (or
+     * one of the names that qualify it) is not part of this version's API.
+     */
+    public boolean isRemoved(String qualifiedName) {
+      for (ApiVersion version : values()) {
+        if (version.compareTo(this) > 0) {
+          break;
+        }
+        for (String removed : version.removedDeclarations) {
+          if (qualifiedName.equals(removed) ||
+              qualifiedName.startsWith(removed + ".")) {
+            return true;
+          }
+        }
+      }
+      return false;
+    }
+
+    public boolean hasCreateClass() {
+      return !isRemoved("ReactModule.prototype.createClass");
+    }
+
+    public boolean hasPropTypes() {
+      return !isRemoved("ReactModule.prototype.PropTypes");
+    }
+
+    List<String> getEventNames() {
+      List<String> eventNames = Lists.newArrayList(REACT_EVENT_NAMES);
+      for (ApiVersion version : values()) {
+        if (version.compareTo(this) > 0) {
+          break;
+        }
+        eventNames.removeAll(version.removedEventNames);
+        eventNames.addAll(version.addedEventNames);
+      }
+      return eventNames;
+    }
+  }
+
+  private static final Map<ApiVersion, String> typesJsByVersion =
+      new EnumMap<>(ApiVersion.class);
+
+  public static String getTypesJs() {
+    return getTypesJs(ApiVersion.REACT_15);
+  }
+
+  /**
+   * Returns the types.js contents for the given version. Declarations that
+   * were removed in that version are still present, see
+   * {@link ApiVersion#isRemoved}.
+   */
+  public static synchronized String getTypesJs(ApiVersion apiVersion) {
+    String typesJs = typesJsByVersion.get(apiVersion);
     if (typesJs != null) {
       return typesJs;
     }
 
-    StringBuilder typesJsBuilder;
-    URL typesUrl = Resources.getResource(TYPES_JS_RESOURCE_PATH);
-    try {
-      typesJsBuilder = new StringBuilder(
-        Resources.toString(typesUrl, Charsets.UTF_8));
-    } catch (IOException e) {
-      throw new RuntimeException(e); // Should never happen
+    StringBuilder typesJsBuilder = new StringBuilder(
+        readResource(TYPES_JS_RESOURCE_PATH));
+    for (ApiVersion version : ApiVersion.values()) {
+      if (version.compareTo(apiVersion) > 0) {
+        break;
+      }
+      if (version.typesResourcePath != null) {
+        typesJsBuilder.append(readResource(version.typesResourcePath));
+      }
     }
 
     // Inject ReactDOMProps properties for each event name, for both the
     // regular form and the capture one.
-    for (String eventName : REACT_EVENT_NAMES) {
+    for (String eventName : apiVersion.getEventNames()) {
       String onEventName = "on" + eventName.substring(0, 1).toUpperCase() +
           eventName.substring(1);
       typesJsBuilder.append(
@@ -80,38 +205,58 @@ public class React {
     }
 
     typesJs = typesJsBuilder.toString();
+    typesJsByVersion.put(apiVersion, typesJs);
     return typesJs;
   }
 
+  private static String readResource(String resourcePath) {
+    URL url = Resources.getResource(resourcePath);
+    try {
+      return Resources.toString(url, Charsets.UTF_8);
+    } catch (IOException e) {
+      throw new RuntimeException(e); // Should never happen
+    }
+  }
+
+  /**
+   * Replaces the types of the parameters of the component methods' JSDoc that
+   * are keys in the replacements map (e.g. ReactProps with the component's
+   * props type). Methods without such parameters keep their JSDoc.
+   */
   public static void replaceComponentMethodParameterTypes(
       List<Node> componentMethodKeys,
-      Map<JSTypeExpression, JSTypeExpression> replacements) {
+      Map<TypeExpressionKey, JSTypeExpression> replacements) {
     for (Node key : componentMethodKeys) {
-      boolean changedParameterType = false;
       JSDocInfo existing = key.getJSDocInfo();
       if (existing == null) {
         continue;
       }
-      // Unfortunately we can't override the type of already-declared
-      // parameters, so we need to recreate the entire JSDocInfo with the new
-      // type.
-      JSDocInfoBuilder jsDocBuilder = new JSDocInfoBuilder(true);
+      Map<String, JSTypeExpression> replacedParameterTypes = null;
       for (String parameterName : existing.getParameterNames()) {
-        JSTypeExpression parameterType = existing.getParameterType(parameterName);
-        // JSTypeExpression does not implement hashCode correctly, therefore we
-        // can't get() to find in the map.
-        for (Map.Entry<JSTypeExpression, JSTypeExpression> entry: replacements.entrySet()) {
-          if (entry.getKey().equals(parameterType)) {
-            parameterType = entry.getValue();
-            changedParameterType = true;
-            break;
+        JSTypeExpression replacementType = replacements.get(
+            TypeExpressionKey.of(existing.getParameterType(parameterName)));
+        if (replacementType != null) {
+          if (replacedParameterTypes == null) {
+            replacedParameterTypes = Maps.newHashMap();
           }
+          replacedParameterTypes.put(parameterName, replacementType);
         }
-        jsDocBuilder.recordParameter(parameterName, parameterType);
       }
-      if (!changedParameterType) {
+      if (replacedParameterTypes == null) {
         continue;
       }
+      // Unfortunately we can't override the type of already-declared
+      // parameters, so we need to recreate the entire JSDocInfo with the new
+      // type.
+      JSDocInfoBuilder jsDocBuilder = new JSDocInfoBuilder(true);
+      for (String parameterName : existing.getParameterNames()) {
+        JSTypeExpression parameterType =
+            replacedParameterTypes.get(parameterName);
+        jsDocBuilder.recordParameter(
+            parameterName,
+            parameterType != null ?
+                parameterType : existing.getParameterType(parameterName));
+      }
       if (existing.hasReturnType()) {
         jsDocBuilder.recordReturnType(existing.getReturnType());
       }
@@ -1,22 +1,89 @@
 package info.persistent.react.jscomp;
 
+import com.google.common.base.Joiner;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 import com.google.javascript.jscomp.CommandLineRunner;
 import com.google.javascript.jscomp.Compiler;
 import com.google.javascript.jscomp.CompilerOptions;
 import com.google.javascript.jscomp.CustomPassExecutionTime;
+import com.google.javascript.jscomp.JSModule;
+import com.google.javascript.jscomp.Result;
+import com.google.javascript.jscomp.SourceFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 public class ReactCommandLineRunner extends CommandLineRunner {
+    private static final String WATCH_FLAG = "--watch";
+    private static final String CHECKS_ONLY_FLAG = "--checks_only";
+    private static final String BUILD_CACHE_DIR_FLAG = "--build_cache_dir=";
+    private static final String BUILD_CACHE_MAX_SIZE_FLAG =
+        "--build_cache_max_size_mb=";
+    private static final long DEFAULT_BUILD_CACHE_MAX_SIZE_MB = 512;
+    // Editors often save a file with several writes (or write a temporary
+    // file and rename it), wait for them to settle before rechecking.
+    private static final long WATCH_SETTLE_MILLIS = 100;
+
+    private final ParsedInputCache parsedInputs;
+
     ReactCommandLineRunner(String[] args) {
         super(args);
+        this.parsedInputs = null;
+    }
+
+    ReactCommandLineRunner(String[] args, PrintStream out, PrintStream err) {
+        this(args, out, err, null);
+    }
+
+    ReactCommandLineRunner(String[] args, PrintStream out, PrintStream err,
+            ParsedInputCache parsedInputs) {
+        super(args, out, err);
+        this.parsedInputs = parsedInputs;
+    }
+
+    ReactCommandLineRunner(String[] args, InputStream in, PrintStream out,
+            PrintStream err) {
+        super(args, in, out, err);
+        this.parsedInputs = null;
+    }
+
+    @Override
+    protected Compiler createCompiler() {
+        if (parsedInputs == null) {
+            return super.createCompiler();
+        }
+        return new Compiler(getErrorPrintStream()) {
+            @Override
+            public <T extends SourceFile> void initModules(
+                    List<T> externs, List<JSModule> modules,
+                    CompilerOptions options) {
+                parsedInputs.useFor(modules);
+                super.initModules(externs, modules, options);
+            }
+        };
     }
 
     @Override
     protected CompilerOptions createOptions() {
         Compiler compiler = this.getCompiler();
 
-        ReactCompilerPass.Options passOptions = new ReactCompilerPass.Options();
-        passOptions.propTypesTypeChecking = true;
-        ReactCompilerPass compilerPass = new ReactCompilerPass(compiler, passOptions);
+        ReactCompilerPass compilerPass =
+            new ReactCompilerPass(compiler, createPassOptions());
 
         CompilerOptions options = super.createOptions();
         options.addCustomPass(CustomPassExecutionTime.BEFORE_CHECKS, compilerPass);
@@ -25,7 +92,184 @@ public class ReactCommandLineRunner extends CommandLineRunner {
         return options;
     }
 
+    static ReactCompilerPass.Options createPassOptions() {
+        ReactCompilerPass.Options passOptions = new ReactCompilerPass.Options();
+        passOptions.propTypesTypeChecking = true;
+        passOptions.pruneUnusedTypes = true;
+        return passOptions;
+    }
+
+    /**
+     * Repeated checks of the program given by the command line flags, in the
+     * same (warmed up) JVM. Only checks are run (as with --checks_only), and
+     * only the inputs whose contents changed since the previous check are
+     * parsed again.
+     *
+     * Closure's own incremental recompilation (Compiler.replaceScript) does not
+     * re-run custom passes like ReactCompilerPass, and type checking needs to
+     * see the whole program anyway, so each check is a full checks-only
+     * compilation.
+     */
+    static class CheckSession {
+        private final String[] args;
+        private final PrintStream out;
+        private final PrintStream err;
+        private final ParsedInputCache parsedInputs = new ParsedInputCache();
+
+        CheckSession(String[] args, PrintStream out, PrintStream err) {
+            List<String> checkArgs = Lists.newArrayList(args);
+            if (!checkArgs.contains(CHECKS_ONLY_FLAG)) {
+                checkArgs.add(0, CHECKS_ONLY_FLAG);
+            }
+            this.args = checkArgs.toArray(new String[checkArgs.size()]);
+            this.out = out;
+            this.err = err;
+        }
+
+        /**
+         * Sets the contents to use for inputs (by name) instead of reading
+         * them, e.g. for files with unsaved changes in an editor.
+         */
+        void setUnsavedCode(Map<String, String> unsavedCodeByName) {
+            parsedInputs.setUnsavedCode(unsavedCodeByName);
+        }
+
+        /**
+         * Checks the program once, returning the result (null if the flags
+         * were invalid, and the compiler was not run).
+         */
+        Result check() {
+            ReactCommandLineRunner runner =
+                new ReactCommandLineRunner(args, out, err, parsedInputs);
+            runner.setExitCodeReceiver(code -> null);
+            if (!runner.shouldRunCompiler()) {
+                return null;
+            }
+            runner.run();
+            return runner.getCompiler().getResult();
+        }
+
+        /**
+         * The inputs of the last check.
+         */
+        Set<String> getInputNames() {
+            return parsedInputs.getInputNames();
+        }
+    }
+
+    /**
+     * Checks the program and then rechecks it whenever one of its inputs (or a
+     * .js file next to them, in case it's matched by a glob) changes, printing
+     * the diagnostics of each check.
+     */
+    static class WatchSession {
+        private final CheckSession checkSession;
+        private final PrintStream err;
+
+        WatchSession(String[] args, PrintStream out, PrintStream err) {
+            this.checkSession = new CheckSession(args, out, err);
+            this.err = err;
+        }
+
+        /**
+         * Checks the program, then rechecks it after every change (until
+         * interrupted).
+         */
+        void run() throws IOException, InterruptedException {
+            checkSession.check();
+            try (WatchService watchService =
+                    FileSystems.getDefault().newWatchService()) {
+                while (true) {
+                    Set<Path> watchedInputs = Sets.newHashSet();
+                    for (String inputName : checkSession.getInputNames()) {
+                        Path input = Paths.get(inputName).toAbsolutePath();
+                        watchedInputs.add(input);
+                        if (input.getParent() != null) {
+                            input.getParent().register(watchService,
+                                StandardWatchEventKinds.ENTRY_CREATE,
+                                StandardWatchEventKinds.ENTRY_MODIFY,
+                                StandardWatchEventKinds.ENTRY_DELETE);
+                        }
+                    }
+                    err.println("Watching " + watchedInputs.size() +
+                        " input(s) for changes...");
+                    Set<Path> changedPaths =
+                        waitForChanges(watchService, watchedInputs);
+                    err.println("Rechecking after changes to " +
+                        Joiner.on(", ").join(changedPaths));
+                    checkSession.check();
+                }
+            }
+        }
+
+        private static Set<Path> waitForChanges(
+                WatchService watchService, Set<Path> watchedInputs)
+                throws InterruptedException {
+            Set<Path> changedPaths = Sets.newTreeSet();
+            WatchKey key = watchService.take();
+            while (key != null) {
+                Path dir = (Path) key.watchable();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        changedPaths.add(dir);
+                        continue;
+                    }
+                    Path path = dir.resolve((Path) event.context());
+                    if (watchedInputs.contains(path) ||
+                            path.toString().endsWith(".js")) {
+                        changedPaths.add(path);
+                    }
+                }
+                key.reset();
+                key = changedPaths.isEmpty() ? watchService.take() :
+                    watchService.poll(WATCH_SETTLE_MILLIS, TimeUnit.MILLISECONDS);
+            }
+            return changedPaths;
+        }
+    }
+
     public static void main(String[] args) {
+        List<String> argList = Lists.newArrayList(args);
+        File buildCacheDir = null;
+        long buildCacheMaxSizeMb = DEFAULT_BUILD_CACHE_MAX_SIZE_MB;
+        for (Iterator<String> it = argList.iterator(); it.hasNext();) {
+            String arg = it.next();
+            if (arg.startsWith(BUILD_CACHE_DIR_FLAG)) {
+                buildCacheDir =
+                    new File(arg.substring(BUILD_CACHE_DIR_FLAG.length()));
+                it.remove();
+            } else if (arg.startsWith(BUILD_CACHE_MAX_SIZE_FLAG)) {
+                buildCacheMaxSizeMb = Long.parseLong(
+                    arg.substring(BUILD_CACHE_MAX_SIZE_FLAG.length()));
+                it.remove();
+            }
+        }
+        args = argList.toArray(new String[argList.size()]);
+        if (argList.remove(WATCH_FLAG)) {
+            try {
+                new WatchSession(
+                    argList.toArray(new String[argList.size()]),
+                    System.out, System.err).run();
+            } catch (IOException e) {
+                System.err.println("Could not watch inputs: " + e);
+                System.exit(-1);
+            } catch (InterruptedException e) {
+                // Done watching.
+            }
+            return;
+        }
+        if (buildCacheDir != null) {
+            BuildCache buildCache = new BuildCache(
+                buildCacheDir, buildCacheMaxSizeMb * 1024 * 1024);
+            int exitCode;
+            try {
+                exitCode = buildCache.run(args, System.out, System.err);
+            } catch (IOException e) {
+                System.err.println("Could not use the build cache: " + e);
+                exitCode = -1;
+            }
+            System.exit(exitCode);
+        }
         ReactCommandLineRunner runner = new ReactCommandLineRunner(args);
         if (runner.shouldRunCompiler()) {
             runner.run();
@@ -34,4 +278,4 @@ public class ReactCommandLineRunner extends CommandLineRunner {
             System.exit(-1);
         }
     }
-}
\ No newline at end of file
+}
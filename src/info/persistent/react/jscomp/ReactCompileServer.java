@@ -0,0 +1,297 @@
+package info.persistent.react.jscomp;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Files;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.javascript.jscomp.CommandLineRunner;
+import com.google.javascript.jscomp.CompilationLevel;
+import com.google.javascript.jscomp.Compiler;
+import com.google.javascript.jscomp.CompilerOptions;
+import com.google.javascript.jscomp.CustomPassExecutionTime;
+import com.google.javascript.jscomp.Result;
+import com.google.javascript.jscomp.SourceFile;
+import com.google.javascript.jscomp.WarningLevel;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+/**
+ * A local server that compiles or checks programs on request, so that tools
+ * that run many small compilations (e.g. a check per package of a monorepo,
+ * or per edited file) can share one warmed up JVM instead of starting one
+ * per compilation.
+ *
+ * Requests are JSON POSTs to /compile or /check:
+ *
+ *   {
+ *     "compilationLevel": "ADVANCED",
+ *     "externs": [{"path": "externs/app.js"}],
+ *     "sources": [
+ *       {"path": "src/app.js"},
+ *       {"path": "src/edited.js", "code": "..."}
+ *     ]
+ *   }
+ *
+ * Paths are relative to the server's base directory (and may not point
+ * outside of it), and files that have a "code" are not read (e.g. for unsaved
+ * editor buffers). The response is:
+ *
+ *   {
+ *     "success": true,
+ *     "errorCount": 0,
+ *     "warningCount": 1,
+ *     "diagnostics": "...",
+ *     "output": "..."
+ *   }
+ *
+ * where the output is only included for /compile requests (/check requests
+ * only run checks, like --checks_only).
+ *
+ * Each request is compiled with its own Compiler and ReactCompilerPass.
+ * The builtin externs are read once, and React's types are parsed once per
+ * API version (by ReactCompilerPass). Requests are handled concurrently, but
+ * at most the given number of compilations run at a time (the others wait).
+ * The server only listens on the loopback interface.
+ */
+public class ReactCompileServer {
+  static class Request {
+    String compilationLevel = "ADVANCED";
+    List<Input> externs = Lists.newArrayList();
+    List<Input> sources = Lists.newArrayList();
+  }
+
+  static class Input {
+    String path;
+    String code;
+  }
+
+  static class Response {
+    boolean success;
+    int errorCount;
+    int warningCount;
+    String diagnostics;
+    String output;
+  }
+
+  private static class BadRequestException extends Exception {
+    BadRequestException(String message) {
+      super(message);
+    }
+  }
+
+  private final File baseDir;
+  private final Semaphore compilePermits;
+  // Code of the builtin externs by name. SourceFiles cache state (e.g. line
+  // offsets) as they're used, so each request gets its own.
+  private final Map<String, String> builtinExternsCode;
+  private HttpServer httpServer;
+  private ExecutorService executor;
+
+  ReactCompileServer(File baseDir, int maxConcurrentCompiles)
+      throws IOException {
+    if (maxConcurrentCompiles < 1) {
+      // No request would ever get a permit.
+      throw new IllegalArgumentException(
+          "At least one concurrent compile is needed, got " +
+              maxConcurrentCompiles);
+    }
+    this.baseDir = baseDir.getCanonicalFile();
+    this.compilePermits = new Semaphore(maxConcurrentCompiles, true);
+    ImmutableMap.Builder<String, String> builtinExternsCode =
+        ImmutableMap.builder();
+    for (SourceFile builtinExtern : CommandLineRunner.getBuiltinExterns(
+        CompilerOptions.Environment.BROWSER)) {
+      builtinExternsCode.put(builtinExtern.getName(), builtinExtern.getCode());
+    }
+    this.builtinExternsCode = builtinExternsCode.build();
+  }
+
+  /**
+   * Starts listening on the given port (0 to pick any free one), and returns
+   * the port.
+   */
+  int start(int port) throws IOException {
+    httpServer = HttpServer.create(
+        new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+    httpServer.createContext("/compile", exchange -> handle(exchange, false));
+    httpServer.createContext("/check", exchange -> handle(exchange, true));
+    // Waiting for a compile permit blocks the handling thread, so the pool
+    // is not bounded.
+    executor = Executors.newCachedThreadPool();
+    httpServer.setExecutor(executor);
+    httpServer.start();
+    return httpServer.getAddress().getPort();
+  }
+
+  void stop() {
+    httpServer.stop(0);
+    executor.shutdownNow();
+  }
+
+  private void handle(HttpExchange exchange, boolean checksOnly)
+      throws IOException {
+    int status;
+    String responseBody;
+    try {
+      if (!exchange.getRequestMethod().equals("POST")) {
+        throw new BadRequestException("Only POST requests are supported");
+      }
+      Request request;
+      try {
+        request = new Gson().fromJson(
+            new String(
+                ByteStreams.toByteArray(exchange.getRequestBody()),
+                Charsets.UTF_8),
+            Request.class);
+      } catch (JsonParseException e) {
+        throw new BadRequestException("Invalid request: " + e.getMessage());
+      }
+      if (request == null) {
+        throw new BadRequestException("Empty request");
+      }
+      compilePermits.acquire();
+      Response response;
+      try {
+        response = compile(request, checksOnly);
+      } finally {
+        compilePermits.release();
+      }
+      status = 200;
+      responseBody = new Gson().toJson(response);
+    } catch (BadRequestException e) {
+      status = 400;
+      responseBody = e.getMessage();
+    } catch (InterruptedException e) {
+      status = 503;
+      responseBody = "Server is shutting down";
+    } catch (Throwable e) {
+      // Anything else (including errors such as running out of memory) is
+      // still reported, so that the client is not left waiting.
+      status = 500;
+      responseBody = "Compilation failed: " + e;
+    }
+    byte[] responseBytes = responseBody.getBytes(Charsets.UTF_8);
+    exchange.getResponseHeaders().set("Content-Type",
+        (status == 200 ? "application/json" : "text/plain") +
+            "; charset=utf-8");
+    exchange.sendResponseHeaders(status, responseBytes.length);
+    try (OutputStream out = exchange.getResponseBody()) {
+      out.write(responseBytes);
+    }
+  }
+
+  private Response compile(Request request, boolean checksOnly)
+      throws BadRequestException {
+    List<SourceFile> externs = Lists.newArrayList();
+    for (Map.Entry<String, String> entry : builtinExternsCode.entrySet()) {
+      externs.add(SourceFile.fromCode(entry.getKey(), entry.getValue()));
+    }
+    for (Input input : request.externs) {
+      externs.add(readSourceFile(input));
+    }
+    List<SourceFile> sources = Lists.newArrayList();
+    for (Input input : request.sources) {
+      sources.add(readSourceFile(input));
+    }
+
+    ByteArrayOutputStream diagnostics = new ByteArrayOutputStream();
+    Compiler compiler = new Compiler(new PrintStream(diagnostics, true));
+    CompilerOptions options = createOptions(request, checksOnly);
+    ReactCompilerPass.Options passOptions = new ReactCompilerPass.Options();
+    passOptions.propTypesTypeChecking = true;
+    ReactCompilerPass compilerPass = new ReactCompilerPass(compiler, passOptions);
+    options.addCustomPass(CustomPassExecutionTime.BEFORE_CHECKS, compilerPass);
+    options.addWarningsGuard(new ReactWarningsGuard(compiler, compilerPass));
+
+    Result result = compiler.compile(externs, sources, options);
+
+    Response response = new Response();
+    response.success = result.success;
+    response.errorCount = result.errors.size();
+    response.warningCount = result.warnings.size();
+    response.diagnostics = diagnostics.toString();
+    if (result.success && !checksOnly) {
+      response.output = compiler.toSource();
+    }
+    return response;
+  }
+
+  private static CompilerOptions createOptions(
+      Request request, boolean checksOnly) throws BadRequestException {
+    CompilerOptions options = new CompilerOptions();
+    CompilationLevel level =
+        CompilationLevel.fromString(request.compilationLevel);
+    if (level == null) {
+      throw new BadRequestException(
+          "Unknown compilation level: " + request.compilationLevel);
+    }
+    level.setOptionsForCompilationLevel(options);
+    level.setTypeBasedOptimizationOptions(options);
+    WarningLevel.DEFAULT.setOptionsForWarningLevel(options);
+    options.setChecksOnly(checksOnly);
+    return options;
+  }
+
+  private SourceFile readSourceFile(Input input) throws BadRequestException {
+    if (input.path == null) {
+      throw new BadRequestException("Missing path");
+    }
+    if (input.code != null) {
+      return SourceFile.fromCode(input.path, input.code);
+    }
+    try {
+      File file = new File(baseDir, input.path).getCanonicalFile();
+      if (!file.toPath().startsWith(baseDir.toPath())) {
+        throw new BadRequestException(
+            input.path + " is outside of the base directory");
+      }
+      return SourceFile.fromCode(
+          input.path, Files.asCharSource(file, Charsets.UTF_8).read());
+    } catch (IOException e) {
+      throw new BadRequestException("Could not read " + input.path);
+    }
+  }
+
+  public static void main(String[] args) throws Exception {
+    int port = -1;
+    int maxConcurrentCompiles = Runtime.getRuntime().availableProcessors();
+    File baseDir = new File(".");
+    for (int i = 0; i < args.length; i++) {
+      if (args[i].equals("--port") && i + 1 < args.length) {
+        port = Integer.parseInt(args[++i]);
+      } else if (args[i].equals("--threads") && i + 1 < args.length) {
+        maxConcurrentCompiles = Integer.parseInt(args[++i]);
+      } else if (args[i].equals("--base_dir") && i + 1 < args.length) {
+        baseDir = new File(args[++i]);
+      } else {
+        port = -1;
+        break;
+      }
+    }
+    if (port < 0 || maxConcurrentCompiles < 1) {
+      System.err.println(
+          "Usage: ReactCompileServer --port N [--threads N] [--base_dir DIR]");
+      System.exit(-1);
+    }
+    ReactCompileServer server =
+        new ReactCompileServer(baseDir, maxConcurrentCompiles);
+    port = server.start(port);
+    System.err.println("Listening on http://localhost:" + port + "/");
+  }
+}
@@ -4,13 +4,13 @@ import info.persistent.jscomp.Ast;
 import info.persistent.jscomp.Debug;
 
 import com.google.common.base.Joiner;
-import com.google.common.collect.ArrayListMultimap;
-import com.google.common.collect.ListMultimap;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import com.google.javascript.jscomp.AbstractCompiler;
 import com.google.javascript.jscomp.Compiler;
+import com.google.javascript.jscomp.ChangeVerifier;
 import com.google.javascript.jscomp.CompilerAccessor;
 import com.google.javascript.jscomp.CompilerInput;
 import com.google.javascript.jscomp.DiagnosticGroup;
@@ -34,8 +34,11 @@ import com.google.javascript.rhino.Node.SideEffectFlags;
 import com.google.javascript.rhino.Token;
 import com.google.javascript.rhino.JSDocInfo.Visibility;
 
+import java.io.IOException;
+import java.io.PrintStream;
 import java.util.function.BiConsumer;
 import java.util.Collections;
+import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -56,6 +59,9 @@ public class ReactCompilerPass implements NodeTraversal.Callback,
   static final DiagnosticType COULD_NOT_DETERMINE_TYPE_NAME = DiagnosticType.error(
       "REACT_COULD_NOT_DETERMINE_TYPE_NAME",
       "Could not determine the type name from a {0}(...) call.");
+  static final DiagnosticType CREATE_TYPE_NOT_AVAILABLE = DiagnosticType.error(
+      "REACT_CREATE_TYPE_NOT_AVAILABLE",
+      "{0} is not part of the {1} API.");
   static final DiagnosticType UNSUPPORTED_REACT_CLASS = DiagnosticType.error(
       "UNSUPPORTED_REACT_CLASS",
       "Unsupported React class: {0}.");
@@ -103,38 +109,65 @@ public class ReactCompilerPass implements NodeTraversal.Callback,
   static final DiagnosticType INVALID_TEMPLATE_PARAM_ON_OPTIONAL_ABSTRACT_METHOD = DiagnosticType.error(
     "INVALID_TEMPLATE_PARAM_ON_OPTIONAL_ABSTRACT_METHOD",
     "Cannot use template parameters on abstract optional methods in mixin.");
+  static final DiagnosticType MIXIN_ABSTRACT_METHOD_OUTSIDE_OF_SCRIPT = DiagnosticType.error(
+    "REACT_MIXIN_ABSTRACT_METHOD_OUTSIDE_OF_SCRIPT",
+    "Abstract method {0} must be declared in the same script as mixin {1}.");
 
   public static final DiagnosticGroup MALFORMED_MIXINS = new DiagnosticGroup(
         MIXINS_UNEXPECTED_TYPE, MIXIN_EXPECTED_NAME, MIXIN_UNKNOWN);
 
-  private static final String REACT_PURE_RENDER_MIXIN_NAME =
+  static final String REACT_PURE_RENDER_MIXIN_NAME =
       "React.addons.PureRenderMixin";
   private static final String CREATE_ELEMENT_ALIAS_NAME = "React$createElement";
   private static final String CREATE_CLASS_ALIAS_NAME = "React$createClass";
   private static final String COMPONENT_ALIAS_NAME = "React$Component";
   private static final String PURE_COMPONENT_ALIAS_NAME = "React$PureComponent";
   static final String PROP_TYPES_ALIAS_NAME = "React$PropTypes";
+  // Static methods that React calls on component classes.
+  private static final ImmutableSet<String> STATIC_LIFECYCLE_METHOD_NAMES =
+      ImmutableSet.of("getDerivedStateFromProps", "getDerivedStateFromError");
 
   private final Compiler compiler;
   private final Options options;
   private Node externsRoot;
-  private final SymbolTable<Node> reactClassesByName = new SymbolTable<>();
+  private final ModuleExportIndex moduleExportIndex = new ModuleExportIndex();
+  private final SymbolTable<Node> reactClassesByName =
+      new SymbolTable<>(moduleExportIndex);
   private final SymbolTable<List<Node>> reactClassMethodsByName =
-      new SymbolTable<>();
-  private final SymbolTable<Node> reactClassInterfacePrototypeObjectLiteralByName =
-      new SymbolTable<>();
-  private final SymbolTable<MixinRef> reactMixinsByName = new SymbolTable<>();
+      new SymbolTable<>(moduleExportIndex);
+  private final SymbolTable<InterfacePrototype>
+      reactClassInterfacePrototypesByName =
+          new SymbolTable<>(moduleExportIndex);
+  // Mixins from scripts that have already been traversed.
+  private final SymbolTable<MixinSummary> reactMixinsByName =
+      new SymbolTable<>(moduleExportIndex);
+  // Mixins defined in the script that is being traversed.
+  private final SymbolTable<PendingMixin> pendingMixinsByName =
+      new SymbolTable<>(moduleExportIndex);
+  // Summaries of the mixins in pendingMixinsByName, computed when they're
+  // first included and invalidated whenever the mixins' methods change.
+  private final Map<String, MixinSummary> pendingMixinSummariesByName =
+      Maps.newHashMap();
+  // Flattened versions of the mixins in reactMixinsByName, computed when
+  // they're first included.
+  private final Map<String, FlattenedMixin> flattenedMixinsByName =
+      Maps.newHashMap();
   private final SymbolTable<List<Node>> reactMixinMethodsByName =
-      new SymbolTable<>();
-  private final SymbolTable<Node> reactMixinInterfacePrototypeObjectLiteralByName =
-      new SymbolTable<>();
+      new SymbolTable<>(moduleExportIndex);
+  private final SymbolTable<InterfacePrototype>
+      reactMixinInterfacePrototypesByName =
+          new SymbolTable<>(moduleExportIndex);
   // Mixin name -> method name -> JSDoc
   private final SymbolTable<Map<String, JSDocInfo>>
-      mixinAbstractMethodJsDocsByName = new SymbolTable<>();
+      mixinAbstractMethodJsDocsByName = new SymbolTable<>(moduleExportIndex);
   private final SymbolTable<PropTypesExtractor> propTypesExtractorsByName =
-      new SymbolTable<>();
+      new SymbolTable<>(moduleExportIndex);
+  // Block that the types were inserted into -> props shape key -> extractor
+  // that first generated types for that shape there.
+  private final Map<Node, Map<String, PropTypesExtractor>>
+      propTypesExtractorsByShape = Maps.newHashMap();
   private final SymbolTable<ClassOutOfBoundsData> classOutOfBoundsMap =
-      new SymbolTable<>();
+      new SymbolTable<>(moduleExportIndex);
   private final List<NodeAndScope> reactCreateElementNodes = Lists.newArrayList();
 
   // Make debugging test failures easier by allowing the processed output to
@@ -148,6 +181,43 @@ public class ReactCompilerPass implements NodeTraversal.Callback,
     // If running with a minified build of React additional size optimizations
     // are applied to the generated code too.
     public boolean optimizeForSize = false;
+    // Rewrite React.createClass components into React.Component subclasses
+    // (where possible), binding only the methods that are used as callbacks
+    // instead of autobinding all of them.
+    public boolean convertCreateClassToClasses = false;
+    // Only add the types.js declarations that the program references to the
+    // externs. Only safe for whole-program compilations, scripts that are
+    // hot-swapped in later may use more of the React API.
+    public boolean pruneUnusedTypes = false;
+    // The React API that the injected externs describe.
+    public React.ApiVersion apiVersion = React.ApiVersion.REACT_15;
+    // If set, the subtrees of the program that the pass inserted, replaced,
+    // moved or detached are printed to it (with their types and source
+    // positions). Unlike saveLastOutputForTests, unchanged code is not
+    // printed, so this is cheap enough to use on production builds.
+    public PrintStream dumpChangesTo = null;
+    // Check that every change to the program was reported to the compiler
+    // (and that only changed scopes were), so that later passes that skip
+    // unchanged functions don't miss any. Throws if it wasn't.
+    public boolean verifyChangeReports = false;
+    // Only add the ReactElement casts around React.createElement calls whose
+    // result may be used where its precise type matters (assigned, returned,
+    // passed to ReactDOM.render, etc.). Elements that are only used as the
+    // children of other elements are left as is, which makes for less work
+    // for the type checker with deeply nested JSX. Props are still checked.
+    public boolean castElementsOnlyAtTypedSinks = false;
+    // Check props that are object literals of literal values (and literal
+    // children) in the pass, instead of inserting validator calls for the type
+    // checker to check them (and for the optimizer to inline away). Mismatches
+    // are reported as REACT_PROP_TYPES_VALIDATION_MISMATCH directly. Props
+    // that need type inference (or come from mixins) still get validators.
+    public boolean checkLiteralPropsInPass = false;
+    // Only add the props validators of a component (and the record types that
+    // they use) once an element of it is created, so that components that are
+    // defined but never instantiated (e.g. most of a component library) only
+    // add their props type for the type checker to check. Mixins and type
+    // summaries always get theirs, since other code depends on them.
+    public boolean insertValidatorsOnDemand = false;
   }
 
   /**
@@ -217,18 +287,56 @@ public class ReactCompilerPass implements NodeTraversal.Callback,
   public void process(Node externs, Node root) {
     reactClassesByName.clear();
     reactClassMethodsByName.clear();
-    reactClassInterfacePrototypeObjectLiteralByName.clear();
+    reactClassInterfacePrototypesByName.clear();
     reactMixinsByName.clear();
+    flattenedMixinsByName.clear();
+    pendingMixinsByName.clear();
+    pendingMixinSummariesByName.clear();
     reactMixinMethodsByName.clear();
-    reactMixinInterfacePrototypeObjectLiteralByName.clear();
+    reactMixinInterfacePrototypesByName.clear();
     mixinAbstractMethodJsDocsByName.clear();
     propTypesExtractorsByName.clear();
+    propTypesExtractorsByShape.clear();
     classOutOfBoundsMap.clear();
-    addExterns();
+    moduleExportIndex.clear();
+    CompilerInput externsInput =
+        CompilerAccessor.getSynthesizedExternsInputAtEnd(compiler);
+    externsRoot = externsInput.getAstRoot(compiler);
+    Debug.AstSnapshot snapshot =
+        options.dumpChangesTo != null ? Debug.snapshot(root) : null;
+    ChangeVerifier changeVerifier = options.verifyChangeReports ?
+        CompilerAccessor.snapshotForChangeVerification(compiler, root.getParent())
+        : null;
+    Node typesNode = createTypesNode();
     if (options.optimizeForSize) {
       addReactApiAliases(root);
     }
+    processTypeSummaries(externs);
     hotSwapScript(root, null);
+    if (options.pruneUnusedTypes) {
+      TypesSlicer typesSlicer = new TypesSlicer();
+      typesSlicer.addSourceUsages(root);
+      for (Node script : externs.children()) {
+        // Type summaries use the React API the same way as regular inputs.
+        if (NodeUtil.isFromTypeSummary(script)) {
+          typesSlicer.addSourceUsages(script);
+        }
+      }
+      typesSlicer.addExternsUsages(externs);
+      typesSlicer.slice(typesNode);
+    }
+    addExterns(typesNode);
+    if (changeVerifier != null) {
+      CompilerAccessor.checkRecordedChanges(
+          changeVerifier, "ReactCompilerPass", root.getParent());
+    }
+    if (snapshot != null) {
+      try {
+        snapshot.dumpChanges(compiler, options.dumpChangesTo);
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    }
     if (saveLastOutputForTests) {
       lastOutputForTests = Debug.toTypeAnnotatedSource(compiler, root);
     } else {
@@ -236,20 +344,62 @@ public class ReactCompilerPass implements NodeTraversal.Callback,
     }
   }
 
+  /**
+   * Type summaries (see ReactTypeSummaryGenerator) end up with the externs, but
+   * their components and mixins are processed like those from regular inputs,
+   * so that the generated types are available to the code that uses them.
+   * Props validators are the exception, since they are called from that code,
+   * so they are moved to a script of their own.
+   */
+  private void processTypeSummaries(Node externs) {
+    for (Node script : externs.children()) {
+      if (NodeUtil.isFromTypeSummary(script)) {
+        NodeTraversal.traverse(compiler, script, this);
+        // Generated nodes need to be marked as externs too.
+        script.useSourceInfoIfMissingFromForTree(script);
+      }
+    }
+    List<Node> validatorNodes = Lists.newArrayList();
+    for (PropTypesExtractor extractor : propTypesExtractorsByName.values()) {
+      validatorNodes.addAll(extractor.getValidatorNodes());
+    }
+    if (validatorNodes.isEmpty()) {
+      return;
+    }
+    // Same as for the API aliases, the script is inserted at the front, so
+    // that the validators are defined before any code uses them.
+    JsAst validatorsAst = new JsAst(
+        SourceFile.fromCode("react-type-summary-validators.js", ""));
+    CompilerAccessor.addNewSourceAst(compiler, validatorsAst);
+    Node validatorsScript = validatorsAst.getAstRoot(compiler);
+    Node validatorsParent = validatorsScript.getParent();
+    validatorsScript.detach();
+    validatorsParent.addChildToFront(validatorsScript);
+    for (Node validatorNode : validatorNodes) {
+      Node summaryScript = NodeUtil.getEnclosingScript(validatorNode);
+      validatorNode.detach();
+      validatorNode.useSourceInfoFromForTree(validatorsScript);
+      validatorsScript.addChildToBack(validatorNode);
+      ChangeReports.reportChange(compiler, summaryScript);
+    }
+    ChangeReports.reportNewCode(compiler, validatorsScript);
+  }
+
   /**
    * The compiler isn't aware of the React* symbols that are exported from
-   * React, inform it via an extern.
+   * React, inform it via an extern. Added after the traversal (but in front of
+   * the synthesized exports) so that only the used types need to be included.
    */
-  private void addExterns() {
-    CompilerInput externsInput =
-        CompilerAccessor.getSynthesizedExternsInputAtEnd(compiler);
-    externsRoot = externsInput.getAstRoot(compiler);
-    Node typesNode = createTypesNode();
+  private void addExterns(Node typesNode) {
     typesNode.useSourceInfoFromForTree(externsRoot);
-    Node typesChildren = typesNode.getFirstChild();
-    typesNode.removeChildren();
-    externsRoot.addChildrenToBack(typesChildren);
-    compiler.reportChangeToEnclosingScope(externsRoot);
+    Node typesChildren = typesNode.removeChildren();
+    if (typesChildren != null) {
+      Node firstExtern = externsRoot.getFirstChild();
+      externsRoot.addChildrenToFront(typesChildren);
+      for (Node n = typesChildren; n != firstExtern; n = n.getNext()) {
+        ChangeReports.reportNewCode(compiler, n);
+      }
+    }
   }
 
   private void addReactApiAliases(Node root) {
@@ -293,29 +443,33 @@ public class ReactCompilerPass implements NodeTraversal.Callback,
 
     // Same thing for React.createClass, which is not as frequent, but shows up
     // often enough that shortening it is worthwhile.
-    Node createClassAliasNode = IR.var(
-        IR.name(CREATE_CLASS_ALIAS_NAME),
-        IR.getprop(
-            IR.name("React"),
-            IR.string("createClass")));
-    jsDocBuilder = new JSDocInfoBuilder(true);
-    jsDocBuilder.recordType(new JSTypeExpression(
-        IR.string("Function"), insertionPoint.getSourceFileName()));
-    createClassAliasNode.setJSDocInfo(jsDocBuilder.build());
-    insertionPoint.addChildToBack(createClassAliasNode);
+    if (options.apiVersion.hasCreateClass()) {
+      Node createClassAliasNode = IR.var(
+          IR.name(CREATE_CLASS_ALIAS_NAME),
+          IR.getprop(
+              IR.name("React"),
+              IR.string("createClass")));
+      jsDocBuilder = new JSDocInfoBuilder(true);
+      jsDocBuilder.recordType(new JSTypeExpression(
+          IR.string("Function"), insertionPoint.getSourceFileName()));
+      createClassAliasNode.setJSDocInfo(jsDocBuilder.build());
+      insertionPoint.addChildToBack(createClassAliasNode);
+    }
     // Also add an alias for React.PropTypes, which may still be present if we're
     // preserving propTypes via @struct.
-    Node propTypesAliasNode = IR.var(
-        IR.name(PROP_TYPES_ALIAS_NAME),
-        IR.getprop(
-            IR.name("React"),
-            IR.string("PropTypes")));
-    jsDocBuilder = new JSDocInfoBuilder(true);
-    jsDocBuilder.recordType(new JSTypeExpression(
-        IR.string("ReactPropTypes"), insertionPoint.getSourceFileName()));
-    jsDocBuilder.recordNoInline();
-    propTypesAliasNode.setJSDocInfo(jsDocBuilder.build());
-    insertionPoint.addChildToBack(propTypesAliasNode);
+    if (options.apiVersion.hasPropTypes()) {
+      Node propTypesAliasNode = IR.var(
+          IR.name(PROP_TYPES_ALIAS_NAME),
+          IR.getprop(
+              IR.name("React"),
+              IR.string("PropTypes")));
+      jsDocBuilder = new JSDocInfoBuilder(true);
+      jsDocBuilder.recordType(new JSTypeExpression(
+          IR.string("ReactPropTypes"), insertionPoint.getSourceFileName()));
+      jsDocBuilder.recordNoInline();
+      propTypesAliasNode.setJSDocInfo(jsDocBuilder.build());
+      insertionPoint.addChildToBack(propTypesAliasNode);
+    }
 
     // And for React.Component
     Node componentAliasNode = IR.var(
@@ -343,84 +497,104 @@ public class ReactCompilerPass implements NodeTraversal.Callback,
     pureComponentAliasNode.setJSDocInfo(jsDocBuilder.build());
     insertionPoint.addChildToBack(pureComponentAliasNode);
 
-    compiler.reportChangeToEnclosingScope(insertionPoint);
+    ChangeReports.reportNewCode(compiler, insertionPoint);
   }
 
   /**
-   * Cache parsed types AST across invocations.
+   * Cache parsed types AST (per API version) across invocations.
    */
-  private static Node templateTypesNode = null;
+  private static final Map<React.ApiVersion, Node> templateTypesNodes =
+      new EnumMap<>(React.ApiVersion.class);
 
   /**
-   * Parameter and return types for built-in component methods, so that
-   * implementations may be annotated automatically.
+   * Parameter and return types for built-in component methods (per API
+   * version), so that implementations may be annotated automatically.
    */
-  private static Map<String, JSDocInfo> componentMethodJsDocs =
-      Maps.newHashMap();
+  private static final Map<React.ApiVersion, Map<String, MethodJsDocTemplate>>
+      componentMethodJsDocsByVersion = new EnumMap<>(React.ApiVersion.class);
+
+  private Map<String, MethodJsDocTemplate> componentMethodJsDocs =
+      Collections.emptyMap();
 
   private Node createTypesNode() {
-    if (templateTypesNode == null) {
-      String typesJs = React.getTypesJs();
-      Result previousResult = compiler.getResult();
-      templateTypesNode =
-        compiler.parse(SourceFile.fromCode(React.TYPES_JS_RESOURCE_PATH, typesJs));
-      Result result = compiler.getResult();
-      if ((result.success != previousResult.success && previousResult.success) ||
-          result.errors.size() > previousResult.errors.size() ||
-          result.warnings.size() > previousResult.warnings.size()) {
-        String message = "Could not parse " + React.TYPES_JS_RESOURCE_PATH + ".";
-        if (result.errors.size() > 0) {
-          message += "\nErrors: " + Joiner.on(",").join(result.errors);
-        }
-        if (result.warnings.size() > 0) {
-          message += "\nWarnings: " + Joiner.on(",").join(result.warnings);
-        }
-        throw new RuntimeException(message);
+    React.ApiVersion apiVersion = options.apiVersion;
+    synchronized (templateTypesNodes) {
+      Node templateTypesNode = templateTypesNodes.get(apiVersion);
+      if (templateTypesNode == null) {
+        templateTypesNode = parseTypesNode(apiVersion);
+        templateTypesNodes.put(apiVersion, templateTypesNode);
       }
-      // Gather ReactComponent prototype methods.
-      NodeTraversal.traverse(
-          compiler,
-          templateTypesNode,
-          new NodeTraversal.AbstractPostOrderCallback() {
-            @Override public void visit(NodeTraversal t, Node n, Node parent) {
-              if (!n.isAssign() || !n.getFirstChild().isQualifiedName() ||
-                  !n.getFirstChild().getQualifiedName().startsWith(
-                      "ReactComponent.prototype.") ||
-                  !n.getLastChild().isFunction()) {
-                  return;
-              }
-              componentMethodJsDocs.put(
-                  n.getFirstChild().getLastChild().getString(),
-                  n.getJSDocInfo());
-            }
-          });
+      componentMethodJsDocs = componentMethodJsDocsByVersion.get(apiVersion);
+      return templateTypesNode.cloneTree();
     }
-    return templateTypesNode.cloneTree();
+  }
+
+  private Node parseTypesNode(React.ApiVersion apiVersion) {
+    String typesJs = React.getTypesJs(apiVersion);
+    Result previousResult = compiler.getResult();
+    Node templateTypesNode =
+      compiler.parse(SourceFile.fromCode(React.TYPES_JS_RESOURCE_PATH, typesJs));
+    Result result = compiler.getResult();
+    if ((result.success != previousResult.success && previousResult.success) ||
+        result.errors.size() > previousResult.errors.size() ||
+        result.warnings.size() > previousResult.warnings.size()) {
+      String message = "Could not parse " + React.TYPES_JS_RESOURCE_PATH + ".";
+      if (result.errors.size() > 0) {
+        message += "\nErrors: " + Joiner.on(",").join(result.errors);
+      }
+      if (result.warnings.size() > 0) {
+        message += "\nWarnings: " + Joiner.on(",").join(result.warnings);
+      }
+      throw new RuntimeException(message);
+    }
+    // Remove the declarations that are not part of this version's API.
+    for (Node statement : Lists.newArrayList(templateTypesNode.children())) {
+      String declaredName = TypesSlicer.getDeclaredName(statement);
+      if (declaredName != null && apiVersion.isRemoved(declaredName)) {
+        statement.detach();
+      }
+    }
+    // Gather ReactComponent prototype methods.
+    Map<String, MethodJsDocTemplate> componentMethodJsDocs = Maps.newHashMap();
+    componentMethodJsDocsByVersion.put(apiVersion, componentMethodJsDocs);
+    NodeTraversal.traverse(
+        compiler,
+        templateTypesNode,
+        new NodeTraversal.AbstractPostOrderCallback() {
+          @Override public void visit(NodeTraversal t, Node n, Node parent) {
+            if (!n.isAssign() || !n.getFirstChild().isQualifiedName() ||
+                !n.getFirstChild().getQualifiedName().startsWith(
+                    "ReactComponent.prototype.") ||
+                !n.getLastChild().isFunction()) {
+                return;
+            }
+            componentMethodJsDocs.put(
+                n.getFirstChild().getLastChild().getString(),
+                MethodJsDocTemplate.of(n.getJSDocInfo()));
+          }
+        });
+    return templateTypesNode;
   }
 
   @Override
   public void hotSwapScript(Node scriptRoot, Node originalRoot) {
-    NodeTraversal.traverse(compiler, scriptRoot, this);
-    // Inline React.createMixin calls, since they're just decorators.
-    for (MixinRef mixinRef : reactMixinsByName.values()) {
-      Node mixinSpecNode = mixinRef.node;
-      Node mixinSpecParentNode = mixinSpecNode.getParent();
-      if (mixinSpecParentNode.isCall() &&
-          mixinSpecParentNode.hasMoreThanOneChild() &&
-          mixinSpecParentNode.getFirstChild().getQualifiedName().equals(
-            "React.createMixin")) {
-        mixinSpecNode.detachFromParent();
-        mixinSpecParentNode.getParent().replaceChild(
-          mixinSpecParentNode,
-          mixinSpecNode);
-        compiler.reportChangeToEnclosingScope(mixinSpecNode.getParent());
-      }
+    moduleExportIndex.update(compiler, scriptRoot);
+    if (options.convertCreateClassToClasses) {
+      new CreateClassConverter(compiler, componentMethodJsDocs.keySet())
+          .convert(scriptRoot);
     }
-    if (options.optimizeForSize) {
+    NodeTraversal.traverse(compiler, scriptRoot, this);
+    if (options.optimizeForSize && options.apiVersion.hasCreateClass()) {
       for (Node classSpecNode : reactClassesByName.values()) {
+        if (classSpecNode.isFromExterns()) {
+          // Classes from type summaries are not part of the output.
+          continue;
+        }
         Node functionNameNode = classSpecNode.getPrevious();
         if (functionNameNode.getToken() == Token.GETPROP) {
-          functionNameNode.replaceWith(IR.name(CREATE_CLASS_ALIAS_NAME));
+          Node aliasNameNode = IR.name(CREATE_CLASS_ALIAS_NAME);
+          functionNameNode.replaceWith(aliasNameNode);
+          ChangeReports.reportChange(compiler, aliasNameNode);
         }
       }
     }
@@ -434,8 +608,17 @@ public class ReactCompilerPass implements NodeTraversal.Callback,
 
   @Override
   public void visit(NodeTraversal t, Node n, Node parent) {
-    Scope scope = t.getScope();
-    if (isReactCreateClass(n)) {
+    Scope scope = getLookupScope(t);
+    if ((isReactCreateClass(n) || isReactCreateMixin(n)) &&
+        !options.apiVersion.hasCreateClass()) {
+      // The spec is not processed, the types that it would be checked
+      // against are not declared either.
+      compiler.report(JSError.make(
+          n,
+          CREATE_TYPE_NOT_AVAILABLE,
+          n.getFirstChild().getQualifiedName(),
+          options.apiVersion.name()));
+    } else if (isReactCreateClass(n)) {
       visitReactCreateClass(t, n);
     } else if (isReactCreateMixin(n)) {
       visitReactCreateMixin(t, n);
@@ -458,6 +641,9 @@ public class ReactCompilerPass implements NodeTraversal.Callback,
       visitStaticContextTypes(scope, n);
     } else if (isStaticChildContextTypes(scope, n)) {
       visitStaticChildContextTypes(scope, n);
+    } else if (isStaticContextType(scope, n)) {
+      // React reads it from the class.
+      addNoCollapse(n.getFirstChild().getLastChild());
     } else if (isReactSupportDeclareMixin(n)) {
       visitReactSupportDeclareMixin(t, n);
     } else if (isReactSupportMixin(n)) {
@@ -467,12 +653,29 @@ public class ReactCompilerPass implements NodeTraversal.Callback,
     }
   }
 
+  /**
+   * The scope to resolve references to React classes and mixins in (see
+   * SymbolTable). That only needs the scope for module scopes, elsewhere
+   * null is returned, so that visiting a node doesn't make the traversal
+   * create the scope of every function and block it enters.
+   */
+  private static Scope getLookupScope(NodeTraversal t) {
+    return isModuleScope(t) ? t.getScope() : null;
+  }
+
+  /**
+   * Equivalent to t.getScope().isModuleScope(), without creating the scope.
+   */
+  private static boolean isModuleScope(NodeTraversal t) {
+    return t.getScopeRoot().isModuleBody();
+  }
+
   private void handleOutOfBoundsData(NodeTraversal t, Node n) {
     // When using class syntax things like propTypes, defaultProps, contextType
     // are added after the class body since ES did not get class properties
     // until ES2021(?) (still in stage 3 at the time of this writing and not yet
     // supported by Closure Compiler.)
-    CompilerInput moduleExportInput = t.getScope().isModuleScope() ? t.getInput() : null;
+    CompilerInput moduleExportInput = isModuleScope(t) ? t.getInput() : null;
 
     // We need to keep mixins around for other modules but we can clear the non
     // mixin classes when we leave a module.
@@ -498,6 +701,189 @@ public class ReactCompilerPass implements NodeTraversal.Callback,
     for (ClassOutOfBoundsData data : dataToRemove) {
       classOutOfBoundsMap.remove(data.scope, data.nameNode);
     }
+
+    summarizePendingMixins();
+  }
+
+  /**
+   * Replaces the mixins defined in the script that was just traversed with
+   * their summaries, so that their nodes and scopes are not retained for the
+   * rest of the traversal.
+   */
+  private void summarizePendingMixins() {
+    if (!pendingMixinsByName.names().isEmpty()) {
+      // The new mixins may be included by (or replace) those that were
+      // flattened already.
+      flattenedMixinsByName.clear();
+    }
+    for (String name : pendingMixinsByName.names()) {
+      PendingMixin pendingMixin = pendingMixinsByName.getByName(name);
+      reactMixinsByName.putByName(name, summarizeMixin(name, pendingMixin));
+      reactMixinMethodsByName.removeByName(name);
+      reactMixinInterfacePrototypesByName.removeByName(name);
+      mixinAbstractMethodJsDocsByName.removeByName(name);
+      if (pendingMixin.classData != null) {
+        classOutOfBoundsMap.remove(
+            pendingMixin.scope, pendingMixin.classData.nameNode);
+      }
+      if (pendingMixin.specNode != null) {
+        inlineCreateMixinCall(pendingMixin.specNode);
+      }
+    }
+    pendingMixinsByName.clear();
+    pendingMixinSummariesByName.clear();
+  }
+
+  /**
+   * Inline React.createMixin calls, since they're just decorators.
+   */
+  private void inlineCreateMixinCall(Node mixinSpecNode) {
+    Node mixinSpecParentNode = mixinSpecNode.getParent();
+    if (mixinSpecParentNode.isCall() &&
+        mixinSpecParentNode.hasMoreThanOneChild() &&
+        mixinSpecParentNode.getFirstChild().getQualifiedName().equals(
+          "React.createMixin")) {
+      mixinSpecNode.detachFromParent();
+      mixinSpecParentNode.getParent().replaceChild(
+        mixinSpecParentNode,
+        mixinSpecNode);
+      ChangeReports.reportChange(compiler, mixinSpecNode);
+    }
+  }
+
+  private MixinSummary summarizeMixin(String name, PendingMixin pendingMixin) {
+    List<MixinSummary.Method> specMethods = Lists.newArrayList();
+    int includedMixinsIndex = -1;
+    List<MixinSummary.IncludedMixin> includedMixins = Lists.newArrayList();
+    Map<String, JSDocInfo> staticsJsDocs = Maps.newHashMap();
+    List<MixinSummary.Method> staticMethods = Lists.newArrayList();
+    if (pendingMixin.specNode != null) {
+      // Errors in the spec have already been reported when visiting it, so
+      // anything invalid is just skipped.
+      for (Node key : pendingMixin.specNode.children()) {
+        String keyName = key.getString();
+        JSDocInfo keyJsDoc = key.getJSDocInfo();
+        if (keyName.equals("mixins")) {
+          includedMixinsIndex = specMethods.size();
+          if (key.hasOneChild() && key.getFirstChild().isArrayLit()) {
+            for (Node mixinNameNode : key.getFirstChild().children()) {
+              if (mixinNameNode.isQualifiedName()) {
+                includedMixins.add(new MixinSummary.IncludedMixin(
+                    mixinNameNode.cloneTree(),
+                    moduleExportIndex.getName(pendingMixin.scope, mixinNameNode)));
+              }
+            }
+          }
+        } else if (keyName.equals("statics")) {
+          if (key.hasOneChild() && key.getFirstChild().isObjectLit()) {
+            for (Node staticKeyNode : key.getFirstChild().children()) {
+              if (staticKeyNode.getJSDocInfo() != null) {
+                staticsJsDocs.put(
+                    staticKeyNode.getString(),
+                    staticKeyNode.getJSDocInfo().clone());
+              }
+            }
+          }
+        } else if ((keyJsDoc == null ||
+            keyJsDoc.getVisibility() != JSDocInfo.Visibility.PRIVATE) &&
+            key.hasOneChild() && key.getFirstChild().isFunction()) {
+          specMethods.add(new MixinSummary.Method(
+              keyName,
+              keyJsDoc != null ? keyJsDoc.clone() : null,
+              key.getSourceFileName(),
+              createMethodStub(key.getFirstChild())));
+        }
+      }
+    }
+    if (pendingMixin.classData != null) {
+      for (Node staticMethod : pendingMixin.classData.staticMethods) {
+        staticMethods.add(summarizeMethod(staticMethod));
+      }
+      for (Node mixinNameNode : pendingMixin.classData.mixins) {
+        includedMixins.add(new MixinSummary.IncludedMixin(
+            mixinNameNode.cloneTree(),
+            moduleExportIndex.getName(pendingMixin.scope, mixinNameNode)));
+      }
+    }
+    List<MixinSummary.Method> interfaceMethods = Lists.newArrayList();
+    List<Node> interfacePrototypeProps =
+        reactMixinMethodsByName.getByName(name);
+    if (interfacePrototypeProps != null) {
+      for (Node prop : interfacePrototypeProps) {
+        interfaceMethods.add(summarizeMethod(prop));
+      }
+    }
+    Map<String, JSDocInfo> abstractMethodJsDocs =
+        mixinAbstractMethodJsDocsByName.getByName(name);
+    return new MixinSummary(
+        pendingMixin.classData != null,
+        specMethods,
+        includedMixinsIndex,
+        includedMixins,
+        staticsJsDocs,
+        interfaceMethods,
+        staticMethods,
+        abstractMethodJsDocs != null ?
+            abstractMethodJsDocs : Collections.emptyMap());
+  }
+
+  private static MixinSummary.Method summarizeMethod(Node key) {
+    JSDocInfo jsDocInfo = key.getJSDocInfo();
+    return new MixinSummary.Method(
+        key.getString(),
+        jsDocInfo != null ? jsDocInfo.clone() : null,
+        key.getSourceFileName(),
+        null);
+  }
+
+  /**
+   * Returns the mixin that the name refers to, summarizing it first if it is
+   * defined in the script that is being traversed (the summary is reused
+   * until the mixin's methods change).
+   */
+  private MixinSummary getMixinSummary(String name) {
+    PendingMixin pendingMixin = pendingMixinsByName.getByName(name);
+    if (pendingMixin != null) {
+      MixinSummary summary = pendingMixinSummariesByName.get(name);
+      if (summary == null) {
+        summary = summarizeMixin(name, pendingMixin);
+        pendingMixinSummariesByName.put(name, summary);
+      }
+      return summary;
+    }
+    return reactMixinsByName.getByName(name);
+  }
+
+  private MixinSummary getMixinSummary(Scope scope, Node mixinNameNode) {
+    return getMixinSummary(moduleExportIndex.getName(scope, mixinNameNode));
+  }
+
+  /**
+   * Returns the mixin that the name refers to, with the mixins that it
+   * includes. This is memoized once the mixin (and the ones it includes) are
+   * summarized.
+   */
+  private FlattenedMixin getFlattenedMixin(String name) {
+    FlattenedMixin flattenedMixin = flattenedMixinsByName.get(name);
+    if (flattenedMixin != null) {
+      return flattenedMixin;
+    }
+    MixinSummary mixin = getMixinSummary(name);
+    if (mixin == null) {
+      return null;
+    }
+    flattenedMixin = new FlattenedMixin(
+        mixin,
+        !pendingMixinsByName.names().contains(name),
+        this::getFlattenedMixin);
+    if (flattenedMixin.isFinal()) {
+      flattenedMixinsByName.put(name, flattenedMixin);
+    }
+    return flattenedMixin;
+  }
+
+  private FlattenedMixin getFlattenedMixin(Scope scope, Node mixinNameNode) {
+    return getFlattenedMixin(moduleExportIndex.getName(scope, mixinNameNode));
   }
 
   private boolean isStaticDefaultProps(Scope scope, Node n) {
@@ -516,6 +902,18 @@ public class ReactCompilerPass implements NodeTraversal.Callback,
     return isStaticProperty(scope, n, "childContextTypes");
   }  
 
+  private boolean isStaticContextType(Scope scope, Node n) {
+    // Unlike the other static properties, the value is not an object literal
+    // but a context (from React.createContext).
+    if (!n.isExprResult() || !n.getFirstChild().isAssign()) {
+      return false;
+    }
+    Node lhs = n.getFirstChild().getFirstChild();
+    return lhs.isGetProp() &&
+        lhs.getLastChild().getString().equals("contextType") &&
+        reactClassesByName.containsName(scope, lhs.getFirstChild());
+  }
+
   private boolean isStaticProperty(Scope scope, Node n, String propName) {
     if (!n.isExprResult()) {
       return false;
@@ -549,7 +947,9 @@ public class ReactCompilerPass implements NodeTraversal.Callback,
     visitStaticProperty(scope, exprResult, (ClassOutOfBoundsData data, Node rhs) -> {
       data.propTypesNode = rhs;
       if (options.optimizeForSize) {
-        exprResult.detachFromParent();
+        Node exprResultParent = exprResult.getParent();
+        exprResult.detach();
+        ChangeReports.reportRemoval(compiler, exprResult, exprResultParent);
       }
     });
   }
@@ -602,9 +1002,11 @@ public class ReactCompilerPass implements NodeTraversal.Callback,
 
     data.isMixin = true;
     CompilerInput moduleExportInput = scope.isModuleScope() ? t.getInput() : null;
-    reactMixinsByName.put(nameNode, new MixinRef(data.classNode, data.scope), moduleExportInput);
+    pendingMixinsByName.put(nameNode, new PendingMixin(data), moduleExportInput);
+    pendingMixinSummariesByName.clear();
     reactMixinMethodsByName.put(nameNode, Lists.newArrayList(), moduleExportInput);
-    reactMixinInterfacePrototypeObjectLiteralByName.put(nameNode, IR.objectlit(), moduleExportInput);
+    reactMixinInterfacePrototypesByName.put(
+        nameNode, new InterfacePrototype(), moduleExportInput);
   }
 
   private boolean isReactSupportMixin(Node n) {
@@ -633,8 +1035,8 @@ public class ReactCompilerPass implements NodeTraversal.Callback,
     for (int i = 2; i < callNode.getChildCount(); i++) {
       Node mixinNameNode = callNode.getChildAtIndex(i);
       maybeImportMixinInterface(scope, mixinNameNode, data.insertionPoint);
-      ClassOutOfBoundsData mixinData = classOutOfBoundsMap.get(scope, mixinNameNode);
-      if (mixinData == null || !mixinData.isMixin) {
+      MixinSummary mixin = getMixinSummary(scope, mixinNameNode);
+      if (mixin == null || !mixin.isClassMixin()) {
         compiler.report(JSError.make(callNode, MIXIN_PARAM_IS_NOT_MIXIN, mixinNameNode.getQualifiedName()));
         return;
       }
@@ -642,6 +1044,7 @@ public class ReactCompilerPass implements NodeTraversal.Callback,
     }
 
     data.mixins = mixinNameNodes;
+    pendingMixinSummariesByName.clear();
   }
 
   /**
@@ -659,7 +1062,7 @@ public class ReactCompilerPass implements NodeTraversal.Callback,
    *   import {Mixin as Other, MixinInterface as OtherInterface} from "...";
    * */
   private void maybeImportMixinInterface(Scope scope, Node mixinNameNode, Node insertionPoint) {
-    if (!scope.isModuleScope()) {
+    if (scope == null || !scope.isModuleScope()) {
       return;
     }
 
@@ -704,6 +1107,7 @@ public class ReactCompilerPass implements NodeTraversal.Callback,
       Node importMixinInterfaceSpec = new Node(
           Token.IMPORT_SPEC, IR.name(remoteName), IR.name(localName));
       importSpec.getParent().addChildAfter(importMixinInterfaceSpec, importSpec);
+      ChangeReports.reportChange(compiler, importMixinInterfaceSpec);
     }
   }
 
@@ -757,7 +1161,10 @@ public class ReactCompilerPass implements NodeTraversal.Callback,
             mixedInPropTypes, compiler);
         extractor.extract();
         if (!options.optimizeForSize) {
-          extractor.insert(insertionNode);
+          insertPropTypes(
+              extractor,
+              insertionNode,
+              canDeferValidators(insertionNode, data.isMixin));
         }
         extractor.addToComponentMethods(data.componentMethodKeys);
         propTypesExtractorsByName.put(classNameNode, extractor, moduleExportInput);
@@ -774,6 +1181,49 @@ public class ReactCompilerPass implements NodeTraversal.Callback,
     }
   }
 
+  /**
+   * Inserts the props types of a component, reusing those of an earlier
+   * component with the same props in the same block (components often share
+   * their propTypes, and this means fewer types for the compiler to check).
+   */
+  private void insertPropTypes(
+      PropTypesExtractor extractor,
+      Node insertionPoint,
+      boolean deferValidators) {
+    if (deferValidators) {
+      extractor.deferValidators();
+    }
+    String shapeKey = extractor.getShapeKey();
+    if (shapeKey == null) {
+      extractor.insert(insertionPoint);
+      return;
+    }
+    Map<String, PropTypesExtractor> extractorsByShape =
+        propTypesExtractorsByShape.computeIfAbsent(
+            insertionPoint.getParent(), block -> Maps.newHashMap());
+    PropTypesExtractor sharedShape = extractorsByShape.get(shapeKey);
+    // Components whose types are inserted later (e.g. classes are processed
+    // when exiting the script) may come first in the block.
+    if (sharedShape != null && sharedShape.isInsertedBefore(insertionPoint)) {
+      extractor.shareShapeWith(sharedShape);
+    }
+    extractor.insert(insertionPoint);
+    extractorsByShape.putIfAbsent(shapeKey, extractor);
+  }
+
+  /**
+   * Whether the validators of a component can wait until an element of it is
+   * created (see Options.insertValidatorsOnDemand). Those of mixins can't,
+   * since the record types of the components that include them extend the
+   * mixins' ones, nor can those of type summaries, since their validators are
+   * moved out before the code that uses them is processed.
+   */
+  private boolean canDeferValidators(Node insertionPoint, boolean isMixin) {
+    return options.insertValidatorsOnDemand &&
+        !isMixin &&
+        !insertionPoint.isFromExterns();
+  }
+
   private void maybeAddNoCollapse(Node node) {
     if (!options.optimizeForSize) {
       addNoCollapse(node);
@@ -804,7 +1254,7 @@ public class ReactCompilerPass implements NodeTraversal.Callback,
         "React.createClass",
         reactClassesByName,
         reactClassMethodsByName,
-        reactClassInterfacePrototypeObjectLiteralByName);
+        reactClassInterfacePrototypesByName);
   }
 
   private static boolean isReactCreateMixin(Node value) {
@@ -815,17 +1265,17 @@ public class ReactCompilerPass implements NodeTraversal.Callback,
   }
 
   private void visitReactCreateMixin(NodeTraversal t, Node callNode) {
-    SymbolTable<Node> tempTable = new SymbolTable<>();
+    SymbolTable<Node> tempTable = new SymbolTable<>(moduleExportIndex);
     visitReactCreateType(
         t,
         callNode,
         "React.createMixin",
         tempTable,
         reactMixinMethodsByName,
-        reactMixinInterfacePrototypeObjectLiteralByName);
+        reactMixinInterfacePrototypesByName);
     tempTable.mapValuesInto(
-        mixinNode -> new MixinRef(mixinNode, t.getScope()),
-        reactMixinsByName);
+        mixinNode -> new PendingMixin(mixinNode, t.getScope()),
+        pendingMixinsByName);
   }
 
   private void visitReactCreateType(
@@ -834,7 +1284,7 @@ public class ReactCompilerPass implements NodeTraversal.Callback,
         String createFuncName,
         SymbolTable<Node> typeSpecNodesByName,
         SymbolTable<List<Node>> interfacePrototypePropsByName,
-        SymbolTable<Node> interfacePrototypeObjectLiteralByName) {
+        SymbolTable<InterfacePrototype> interfacePrototypesByName) {
     if (!validateCreateTypeUsage(callNode)) {
       compiler.report(JSError.make(
           callNode, CREATE_TYPE_TARGET_INVALID, createFuncName));
@@ -909,7 +1359,7 @@ public class ReactCompilerPass implements NodeTraversal.Callback,
     }
     String typeName = typeNameNode.getQualifiedName();
     CompilerInput moduleExportInput =
-        t.getScope().isModuleScope() ? t.getInput() : null;
+        isModuleScope(t) ? t.getInput() : null;
     String interfaceTypeName = generateInterfaceTypeName(moduleExportInput, typeNameNode);
 
     // Check to see if the type has an ES6 module export. We assume this is
@@ -938,6 +1388,7 @@ public class ReactCompilerPass implements NodeTraversal.Callback,
       Node declarationNode = nameNode.getParent();
       declarationNode.detachFromParent();
       exportNode.replaceWith(declarationNode);
+      ChangeReports.reportChange(compiler, declarationNode);
       Ast.addModuleExport(typeName, declarationNode);
       break;
     }
@@ -948,7 +1399,7 @@ public class ReactCompilerPass implements NodeTraversal.Callback,
     boolean isExportedType = jsDocInfo != null && jsDocInfo.isExport();
     // "Clear" the @export bit, otherwise the compiler will complain about its
     // presence on module-scoped variables.
-    if (isExportedType && t.getScope().isModuleScope()) {
+    if (isExportedType && isModuleScope(t)) {
       JSDocInfoAccessor.setJSDocExport(jsDocInfo, false);
     }
 
@@ -980,6 +1431,7 @@ public class ReactCompilerPass implements NodeTraversal.Callback,
     } else {
       callNodeParent.addChildToFront(castNode);
     }
+    ChangeReports.reportChange(compiler, castNode);
 
     // Record the type so that we can later look it up in React.createElement
     // calls.
@@ -987,11 +1439,11 @@ public class ReactCompilerPass implements NodeTraversal.Callback,
 
     // Gather methods for the interface definition.
     List<Node> interfacePrototypeProps = Lists.newArrayList();
-    Node interfacePrototypeObjectLiteral = IR.objectlit();
+    InterfacePrototype interfacePrototype = new InterfacePrototype();
     interfacePrototypePropsByName.put(
       typeNameNode, interfacePrototypeProps, moduleExportInput);
-    interfacePrototypeObjectLiteralByName.put(
-        typeNameNode, interfacePrototypeObjectLiteral, moduleExportInput);
+    interfacePrototypesByName.put(
+        typeNameNode, interfacePrototype, moduleExportInput);
     Map<String, JSDocInfo> abstractMethodJsDocsByName = Maps.newHashMap();
     Node propTypesNode = null;
     Node defaultPropsNode = null;
@@ -1018,7 +1470,7 @@ public class ReactCompilerPass implements NodeTraversal.Callback,
             typeName,
             key,
             interfacePrototypeProps,
-            interfacePrototypeObjectLiteral,
+            interfacePrototype,
             staticsJsDocs);
         usesPureRenderMixin = mixinNameNodes.stream().anyMatch(
               node -> node.getQualifiedName().equals(REACT_PURE_RENDER_MIXIN_NAME));
@@ -1054,7 +1506,8 @@ public class ReactCompilerPass implements NodeTraversal.Callback,
       // from the ReactComponent interface method, so that it gets type checking
       // (without an explicit @override annotation, which doesn't appear to work
       // for interface extending interfaces in any case).
-      JSDocInfo componentMethodJsDoc = componentMethodJsDocs.get(keyName);
+      MethodJsDocTemplate componentMethodJsDoc =
+          componentMethodJsDocs.get(keyName);
       if (componentMethodJsDoc != null) {
         componentMethodKeys.add(key);
         mergeInJsDoc(key, func, componentMethodJsDoc);
@@ -1065,7 +1518,8 @@ public class ReactCompilerPass implements NodeTraversal.Callback,
         // Treat mixin methods as component ones too, as far as making the type
         // used for props more specific.
         componentMethodKeys.add(key);
-        mergeInJsDoc(key, func, abstractMethodJsDoc);
+        mergeInJsDoc(
+            key, func, MethodJsDocTemplate.of(abstractMethodJsDoc));
       }
 
       // Require an explicit @public annotation (we can't use @export since
@@ -1080,7 +1534,7 @@ public class ReactCompilerPass implements NodeTraversal.Callback,
       // Gather method signatures so that we can declare them where the compiler
       // can see them.
       addFuncToInterface(
-            keyName, func, interfacePrototypeProps, interfacePrototypeObjectLiteral, key.getJSDocInfo());
+            keyName, func, interfacePrototypeProps, interfacePrototype, key.getJSDocInfo());
 
       // Add a @this {<type name>} annotation to all methods in the spec, to
       // avoid the compiler complaining dangerous use of "this" in a global
@@ -1109,7 +1563,11 @@ public class ReactCompilerPass implements NodeTraversal.Callback,
     if (propTypesNode != null && options.optimizeForSize) {
       JSDocInfo jsdoc = NodeUtil.getBestJSDocInfo(propTypesNode);
       if (jsdoc == null || !jsdoc.makesStructs()) {
-        propTypesNode.getParent().detachFromParent();
+        Node propTypesKeyNode = propTypesNode.getParent();
+        Node propTypesKeyParentNode = propTypesKeyNode.getParent();
+        propTypesKeyNode.detach();
+        ChangeReports.reportRemoval(
+            compiler, propTypesKeyNode, propTypesKeyParentNode);
       }
     }
 
@@ -1129,12 +1587,11 @@ public class ReactCompilerPass implements NodeTraversal.Callback,
         staticExprNode.useSourceInfoFromForTree(staticsInsertionPoint);
         staticsInsertionPoint.getParent().addChildAfter(
             staticExprNode, staticsInsertionPoint);
+        ChangeReports.reportNewCode(compiler, staticExprNode);
         staticsInsertionPoint = staticExprNode;
       }
     }
 
-    trimDuplicateProperties(interfacePrototypeObjectLiteral);
-
     // Generate the interface definition.
     Node interfaceTypeFunctionNode =
       IR.function(IR.name(""), IR.paramList(), IR.block());
@@ -1154,20 +1611,22 @@ public class ReactCompilerPass implements NodeTraversal.Callback,
     interfaceTypeFunctionNode.setJSDocInfo(jsDocBuilder.build());
     typesInsertionPoint.getParent().addChildBefore(
         interfaceTypeNode, typesInsertionPoint);
+    ChangeReports.reportNewCode(compiler, interfaceTypeNode);
     // Always export inner interface names, assuming that their parents are
     // exported too. We may end up exporting too much, but it's too annoying to
     // figure out if the enclosing type is exported.
-    if (addModuleExports || (t.getScope().isModuleScope() &&
+    if (addModuleExports || (isModuleScope(t) &&
         interfaceTypeName.contains("_"))) {
       Ast.addModuleExport(interfaceTypeName, interfaceTypeNode);
     }
+    Node interfacePrototypeNode = NodeUtil.newQNameDeclaration(
+        compiler,
+        interfaceTypeName + ".prototype",
+        interfacePrototype.buildObjectLiteral(),
+        null);
     typesInsertionPoint.getParent().addChildAfter(
-        NodeUtil.newQNameDeclaration(
-            compiler,
-            interfaceTypeName + ".prototype",
-            interfacePrototypeObjectLiteral,
-            null),
-        interfaceTypeNode);
+        interfacePrototypeNode, interfaceTypeNode);
+    ChangeReports.reportNewCode(compiler, interfacePrototypeNode);
 
     // Ensure that we trigger propTypes checking even if we don't have our
     // propTypes (if they're provided by mixins).
@@ -1206,7 +1665,12 @@ public class ReactCompilerPass implements NodeTraversal.Callback,
             mixedInPropTypes, compiler);
         extractor.extract();
         if (!options.optimizeForSize) {
-          extractor.insert(typesInsertionPoint);
+          insertPropTypes(
+              extractor,
+              typesInsertionPoint,
+              canDeferValidators(
+                  typesInsertionPoint,
+                  createFuncName.equals("React.createMixin")));
         }
         if (createFuncName.equals("React.createClass")) {
           extractor.addToComponentMethods(componentMethodKeys);
@@ -1254,6 +1718,7 @@ public class ReactCompilerPass implements NodeTraversal.Callback,
               typesInsertionPoint.getParent().addChildAfter(
                   prototypeFieldNode,
                   typesInsertionPoint);
+              ChangeReports.reportNewCode(compiler, prototypeFieldNode);
             }
           });
     }
@@ -1265,9 +1730,9 @@ public class ReactCompilerPass implements NodeTraversal.Callback,
       Map<String, JSDocInfo> abstractMethodJsDocsByName,
       Map<Node, PropTypesExtractor> mixedInPropTypes, List<Node> mixinNameNodes) {
     for (Node mixinNameNode : mixinNameNodes) {
-      if (mixinAbstractMethodJsDocsByName.containsName(scope, mixinNameNode)) {
-        abstractMethodJsDocsByName.putAll(
-          mixinAbstractMethodJsDocsByName.get(scope, mixinNameNode));
+      MixinSummary mixin = getMixinSummary(scope, mixinNameNode);
+      if (mixin != null) {
+        abstractMethodJsDocsByName.putAll(mixin.getAbstractMethodJsDocs());
       }
       if (options.propTypesTypeChecking) {
         PropTypesExtractor mixinPropTypesExtractor =
@@ -1295,6 +1760,7 @@ public class ReactCompilerPass implements NodeTraversal.Callback,
           exportedNamesObjectLitNode,
           null);
       externsRoot.addChildToBack(exportedNamesNode);
+      ChangeReports.reportNewCode(compiler, exportedNamesNode);
     }
   }
 
@@ -1323,8 +1789,17 @@ public class ReactCompilerPass implements NodeTraversal.Callback,
       return false;
     }
     Node mixinNameNode = getPropNode.getFirstChild();
-    MixinRef mixinRef = reactMixinsByName.get(t.getScope(), mixinNameNode);
-    if (mixinRef == null) {
+    Scope scope = getLookupScope(t);
+    if (!pendingMixinsByName.containsName(scope, mixinNameNode)) {
+      if (reactMixinsByName.containsName(scope, mixinNameNode)) {
+        // The mixin's interface has already been summarized (and its
+        // script may no longer be part of the traversal).
+        compiler.report(JSError.make(
+            value,
+            MIXIN_ABSTRACT_METHOD_OUTSIDE_OF_SCRIPT,
+            getPropNode.getLastChild().getString(),
+            mixinNameNode.getQualifiedName()));
+      }
       return false;
     }
     String methodName = getPropNode.getLastChild().getString();
@@ -1336,11 +1811,11 @@ public class ReactCompilerPass implements NodeTraversal.Callback,
         abstractFuncParamList.addChildToBack(IR.name(parameterName));
       }
       Map<String, JSDocInfo> jsDocsByName =
-          mixinAbstractMethodJsDocsByName.get(t.getScope(), mixinNameNode);
+          mixinAbstractMethodJsDocsByName.get(scope, mixinNameNode);
       if (jsDocsByName == null) {
         jsDocsByName = Maps.newHashMap();
         CompilerInput moduleExportInput =
-            t.getScope().isModuleScope() ? t.getInput() : null;
+            isModuleScope(t) ? t.getInput() : null;
         mixinAbstractMethodJsDocsByName.put(
             mixinNameNode, jsDocsByName, moduleExportInput);
       }
@@ -1354,24 +1829,24 @@ public class ReactCompilerPass implements NodeTraversal.Callback,
     }
     abstractFuncNode.setStaticSourceFile(value.getStaticSourceFile());
     List<Node> interfacePrototypeProps =
-        reactMixinMethodsByName.get(
-            t.getScope(), mixinNameNode);
-    Node prototypeObjectLiteral =
-        reactMixinInterfacePrototypeObjectLiteralByName.get(
-            t.getScope(), mixinNameNode);
+        reactMixinMethodsByName.get(scope, mixinNameNode);
+    InterfacePrototype interfacePrototype =
+        reactMixinInterfacePrototypesByName.get(scope, mixinNameNode);
     addFuncToInterface(
         methodName,
         abstractFuncNode,
         interfacePrototypeProps,
-        prototypeObjectLiteral,
+        interfacePrototype,
         getPropNode.getJSDocInfo());
 
-    ClassOutOfBoundsData data = classOutOfBoundsMap.get(t.getScope(), mixinNameNode);
+    ClassOutOfBoundsData data = classOutOfBoundsMap.get(scope, mixinNameNode);
     if (data != null) {
       data.optionalAbstractMethodNames.add(methodName);
     }
 
-    value.detachFromParent();
+    Node valueParent = value.getParent();
+    value.detach();
+    ChangeReports.reportRemoval(compiler, value, valueParent);
 
     return true;
   }
@@ -1381,21 +1856,41 @@ public class ReactCompilerPass implements NodeTraversal.Callback,
       String typeName,
       Node mixinsNode,
       List<Node> interfacePrototypeProps,
-      Node prototypeObjectLiteralNode,
+      InterfacePrototype interfacePrototype,
       Map<String, JSDocInfo> staticsJsDocs) {
-    Set<String> mixinNames = Sets.newHashSet();
-    List<Node> mixinNameNodes = Lists.newArrayList();
     if (!mixinsNode.hasOneChild() ||
           !mixinsNode.getFirstChild().isArrayLit()) {
       compiler.report(JSError.make(mixinsNode, MIXINS_UNEXPECTED_TYPE));
-      return mixinNameNodes;
+      return Lists.newArrayList();
     }
-    Node thisTypeNode = new Node(Token.BANG, IR.string(typeName));
+    List<MixinSummary.IncludedMixin> includedMixins = Lists.newArrayList();
     for (Node mixinNameNode : mixinsNode.getFirstChild().children()) {
       if (!mixinNameNode.isQualifiedName()) {
         compiler.report(JSError.make(mixinNameNode, MIXIN_EXPECTED_NAME));
         continue;
       }
+      includedMixins.add(new MixinSummary.IncludedMixin(
+          mixinNameNode, moduleExportIndex.getName(scope, mixinNameNode)));
+    }
+    return addMixinsToType(
+        typeName,
+        includedMixins,
+        interfacePrototypeProps,
+        interfacePrototype,
+        staticsJsDocs);
+  }
+
+  private List<Node> addMixinsToType(
+      String typeName,
+      List<MixinSummary.IncludedMixin> includedMixins,
+      List<Node> interfacePrototypeProps,
+      InterfacePrototype interfacePrototype,
+      Map<String, JSDocInfo> staticsJsDocs) {
+    Set<String> mixinNames = Sets.newHashSet();
+    List<Node> mixinNameNodes = Lists.newArrayList();
+    Node thisTypeNode = new Node(Token.BANG, IR.string(typeName));
+    for (MixinSummary.IncludedMixin includedMixin : includedMixins) {
+      Node mixinNameNode = includedMixin.nameNode;
       String mixinName = mixinNameNode.getQualifiedName();
       if (mixinNames.contains(mixinName)) {
         continue;
@@ -1406,68 +1901,80 @@ public class ReactCompilerPass implements NodeTraversal.Callback,
         // Built-in mixin, there's nothing more that we need to do.
         continue;
       }
-      MixinRef mixinRef = reactMixinsByName.get(scope, mixinNameNode);
-      if (mixinRef == null) {
+      FlattenedMixin mixin = getFlattenedMixin(includedMixin.symbolName);
+      if (mixin == null) {
         compiler.report(JSError.make(mixinNameNode, MIXIN_UNKNOWN, mixinName));
         continue;
       }
-      Node mixinSpecNode = mixinRef.node;
-      for (Node mixinSpecKey : mixinSpecNode.children()) {
-        String keyName = mixinSpecKey.getString();
-        if (keyName.equals("mixins")) {
-          mixinNameNodes.addAll(addMixinsToType(
-              mixinRef.scope,
-              typeName,
-              mixinSpecKey,
-              interfacePrototypeProps,
-              prototypeObjectLiteralNode,
-              staticsJsDocs));
-          continue;
-        }
-        if (keyName.equals("statics")) {
-          gatherStaticsJsDocs(mixinSpecKey, staticsJsDocs);
-          continue;
-        }
-        JSDocInfo mixinSpecKeyJsDoc = mixinSpecKey.getJSDocInfo();
-        // Private methods should not be exposed.
-        if (mixinSpecKeyJsDoc != null &&
-            mixinSpecKeyJsDoc.getVisibility() == JSDocInfo.Visibility.PRIVATE) {
-          continue;
-        }
-        if (mixinSpecKey.hasOneChild() &&
-            mixinSpecKey.getFirstChild().isFunction()) {
-          // Ensure that the @this type inside mixin functions refers to the
-          // type we're copying into, not the mixin type.
-          if (mixinSpecKeyJsDoc != null) {
-              // We can't use JSDocInfoBuilder because it will not override the
-              // "this" type if it's already set.
-              mixinSpecKeyJsDoc = mixinSpecKeyJsDoc.clone();
-              JSDocInfoAccessor.setJSDocInfoThisType(
-                  mixinSpecKeyJsDoc,
-                  new JSTypeExpression(
-                      thisTypeNode, mixinSpecKey.getSourceFileName()));
-          }
-          Node keyNode = addFuncToInterface(
-              keyName,
-              mixinSpecKey.getFirstChild(),
-              interfacePrototypeProps,
-              prototypeObjectLiteralNode,
-              mixinSpecKeyJsDoc);
-          // Since mixins are effectively copied into the type, their source
-          // file is the type's (allow private methods from mixins to be
-          // called).
-          keyNode.setStaticSourceFile(mixinsNode.getStaticSourceFile());
+      for (Node unknownMixinNameNode : mixin.getUnknownSpecMixins()) {
+        compiler.report(JSError.make(unknownMixinNameNode, MIXIN_UNKNOWN,
+            unknownMixinNameNode.getQualifiedName()));
+      }
+      mixinNameNodes.addAll(mixin.getIncludedMixinNameNodes());
+      for (FlattenedMixin.Member specMethod : mixin.getSpecMethods()) {
+        // Ensure that the @this type inside mixin functions refers to the
+        // type we're copying into, not the mixin type.
+        JSDocInfo mixinSpecKeyJsDoc = specMethod.method.jsDocInfo;
+        if (mixinSpecKeyJsDoc != null) {
+            // We can't use JSDocInfoBuilder because it will not override the
+            // "this" type if it's already set.
+            mixinSpecKeyJsDoc = mixinSpecKeyJsDoc.clone();
+            JSDocInfoAccessor.setJSDocInfoThisType(
+                mixinSpecKeyJsDoc,
+                new JSTypeExpression(
+                    thisTypeNode, specMethod.method.sourceFileName));
         }
+        Node keyNode = addFuncToInterface(
+            specMethod.method.name,
+            specMethod.method.stub,
+            interfacePrototypeProps,
+            interfacePrototype,
+            mixinSpecKeyJsDoc);
+        // Since mixins are effectively copied into the type, their source
+        // file is the type's (allow private methods from mixins to be
+        // called).
+        Node methodMixinNameNode = specMethod.mixinNameNode != null ?
+            specMethod.mixinNameNode : mixinNameNode;
+        keyNode.setStaticSourceFile(methodMixinNameNode.getStaticSourceFile());
+      }
+      for (Map.Entry<String, JSDocInfo> entry :
+          mixin.getStaticsJsDocs().entrySet()) {
+        staticsJsDocs.put(entry.getKey(), entry.getValue().clone());
       }
     }
     return mixinNameNodes;
   }
 
-  private static Node addFuncToInterface(
+  private Node addFuncToInterface(
       String name, Node funcNode,
       List<Node> interfacePrototypeProps,
-      Node prototypeObjectLiteralNode,
+      InterfacePrototype interfacePrototype,
       JSDocInfo jsDocInfo) {
+    Node methodNode = createMethodStub(funcNode);
+    Node keyNode = IR.stringKey(name, methodNode);
+    keyNode.useSourceInfoFrom(funcNode);
+    keyNode.setStaticSourceFile(funcNode.getStaticSourceFile());
+    if (jsDocInfo != null) {
+      keyNode.setJSDocInfo(jsDocInfo.clone());
+    }
+    interfacePrototypeProps.add(keyNode);
+    // Pending mixin summaries include the interface methods.
+    pendingMixinSummariesByName.clear();
+    Node replacedKeyNode = interfacePrototype.put(keyNode);
+    // Otherwise it's reported when the interface is inserted.
+    Node prototypeObjectLiteralNode = interfacePrototype.getObjectLiteral();
+    if (prototypeObjectLiteralNode != null &&
+        NodeUtil.getEnclosingScript(prototypeObjectLiteralNode) != null) {
+      ChangeReports.reportNewCode(compiler, keyNode);
+      if (replacedKeyNode != null) {
+        ChangeReports.reportRemoval(
+            compiler, replacedKeyNode, prototypeObjectLiteralNode);
+      }
+    }
+    return keyNode;
+  }
+
+  private static Node createMethodStub(Node funcNode) {
     // Semi-shallow copy (just parameters) so that we don't copy the function
     // implementation.
     Node methodNode = funcNode.cloneNode();
@@ -1490,15 +1997,7 @@ public class ReactCompilerPass implements NodeTraversal.Callback,
           methodNode.addChildToBack(funcChild.cloneNode());
         }
     }
-    Node keyNode = IR.stringKey(name, methodNode);
-    keyNode.useSourceInfoFrom(funcNode);
-    keyNode.setStaticSourceFile(funcNode.getStaticSourceFile());
-    if (jsDocInfo != null) {
-      keyNode.setJSDocInfo(jsDocInfo.clone());
-    }
-    interfacePrototypeProps.add(keyNode);
-    prototypeObjectLiteralNode.addChildToBack(keyNode);
-    return keyNode;
+    return methodNode;
   }
 
   private void gatherStaticsJsDocs(
@@ -1524,7 +2023,8 @@ public class ReactCompilerPass implements NodeTraversal.Callback,
     }
   }
 
-  private static void mergeInJsDoc(Node key, Node func, JSDocInfo jsDoc) {
+  private static void mergeInJsDoc(
+      Node key, Node func, MethodJsDocTemplate jsDoc) {
     JSDocInfo existingJsDoc = key.getJSDocInfo();
     List<String> funcParamNames = Lists.newArrayList();
     for (Node param : NodeUtil.getFunctionParameters(func).children()) {
@@ -1534,17 +2034,16 @@ public class ReactCompilerPass implements NodeTraversal.Callback,
     }
     JSDocInfoBuilder jsDocBuilder = newJsDocInfoBuilderForNode(key);
     if (!funcParamNames.isEmpty()) {
-      for (String parameterName : jsDoc.getParameterNames()) {
-        JSTypeExpression parameterType = jsDoc.getParameterType(parameterName);
+      for (JSTypeExpression parameterType : jsDoc.getParameterTypes()) {
         // Use the parameter names in the implementation, not the original
-        parameterName = funcParamNames.remove(0);
+        String parameterName = funcParamNames.remove(0);
         jsDocBuilder.recordParameter(parameterName, parameterType);
         if (funcParamNames.isEmpty()) {
           break;
         }
       }
     }
-    if (jsDoc.hasReturnType() && (existingJsDoc == null ||
+    if (jsDoc.getReturnType() != null && (existingJsDoc == null ||
         !existingJsDoc.hasReturnType())) {
       jsDocBuilder.recordReturnType(jsDoc.getReturnType());
     }
@@ -1590,7 +2089,8 @@ public class ReactCompilerPass implements NodeTraversal.Callback,
     if (callParamCount >= 2) {
       Node propsParamNode = callNode.getChildAtIndex(2);
       if (propsParamNode.isObjectLit() && Props.hasSpread(propsParamNode)) {
-        Props.transformSpreadObjectToObjectAssign(propsParamNode);
+        ChangeReports.reportChange(compiler,
+            Props.transformSpreadObjectToObjectAssign(propsParamNode));
       }
     }
 
@@ -1598,7 +2098,9 @@ public class ReactCompilerPass implements NodeTraversal.Callback,
       // There's no need for extra type checks for optimized builds.
       Node functionNameNode = callNode.getFirstChild();
       if (functionNameNode.getToken() == Token.GETPROP) {
-        functionNameNode.replaceWith(IR.name(CREATE_ELEMENT_ALIAS_NAME));
+        Node aliasNameNode = IR.name(CREATE_ELEMENT_ALIAS_NAME);
+        functionNameNode.replaceWith(aliasNameNode);
+        ChangeReports.reportChange(compiler, aliasNameNode);
       }
       return;
     }
@@ -1631,10 +2133,16 @@ public class ReactCompilerPass implements NodeTraversal.Callback,
       PropTypesExtractor propTypesExtractor =
           propTypesExtractorsByName.get(scope, typeNode);
       if (propTypesExtractor != null) {
-        propTypesExtractor.visitReactCreateElement(callNode);
+        propTypesExtractor.visitReactCreateElement(
+            callNode, options.checkLiteralPropsInPass);
       }
     }
 
+    if (options.castElementsOnlyAtTypedSinks &&
+        !reachesTypedSink(callNode)) {
+      return;
+    }
+
     JSDocInfoBuilder jsDocBuilder = new JSDocInfoBuilder(true);
     jsDocBuilder.recordType(new JSTypeExpression(
         new Node(Token.BANG, elementTypeExpressionNode),
@@ -1650,9 +2158,56 @@ public class ReactCompilerPass implements NodeTraversal.Callback,
     } else {
       callNodeParent.addChildToFront(castNode);
     }
+    ChangeReports.reportChange(compiler, castNode);
   }
 
-  private static boolean isReactCreateElement(Node value) {
+  /**
+   * Whether the value of the React.createElement call may end up somewhere
+   * where its ReactElement type is used (as opposed to e.g. being the child
+   * of another element).
+   */
+  private static boolean reachesTypedSink(Node callNode) {
+    Node n = callNode;
+    Node parent = n.getParent();
+    while (true) {
+      switch (parent.getToken()) {
+        case HOOK:
+          if (n == parent.getFirstChild()) {
+            return false;
+          }
+          break;
+        case AND:
+        case OR:
+          break;
+        case COMMA:
+          if (n != parent.getLastChild()) {
+            return false;
+          }
+          break;
+        case RETURN:
+          return true;
+        case ASSIGN:
+          return n == parent.getLastChild();
+        case NAME:
+          // Variable declarations.
+          return true;
+        case FUNCTION:
+          // Arrow function expression bodies.
+          return n == parent.getLastChild();
+        case CALL:
+          Node calleeNode = parent.getFirstChild();
+          return n != calleeNode &&
+              (calleeNode.matchesQualifiedName("ReactDOM.render") ||
+                  calleeNode.matchesQualifiedName("React.render"));
+        default:
+          return false;
+      }
+      n = parent;
+      parent = n.getParent();
+    }
+  }
+
+  static boolean isReactCreateElement(Node value) {
     if (value != null && value.isCall()) {
       return value.getFirstChild().matchesQualifiedName("React.createElement");
     }
@@ -1660,8 +2215,10 @@ public class ReactCompilerPass implements NodeTraversal.Callback,
   }
 
   private void visitReactPropTypes(Node propTypesNode) {
-    if (options.optimizeForSize) {
-      propTypesNode.getFirstChild().replaceWith(IR.name(PROP_TYPES_ALIAS_NAME));
+    if (options.optimizeForSize && options.apiVersion.hasPropTypes()) {
+      Node aliasNameNode = IR.name(PROP_TYPES_ALIAS_NAME);
+      propTypesNode.getFirstChild().replaceWith(aliasNameNode);
+      ChangeReports.reportChange(compiler, aliasNameNode);
     }
   }
 
@@ -1859,6 +2416,7 @@ public class ReactCompilerPass implements NodeTraversal.Callback,
       Node exportNode = insertionPointTemp.getParent();
       insertionPointTemp.detach();
       exportNode.replaceWith(insertionPointTemp);
+      ChangeReports.reportChange(compiler, insertionPointTemp);
       Ast.addModuleExport(typeName, insertionPointTemp);
     }
 
@@ -1920,10 +2478,13 @@ public class ReactCompilerPass implements NodeTraversal.Callback,
 
       if (key.isStaticMember()) {
         outOfBoundsData.staticMethods.add(key);
+        pendingMixinSummariesByName.clear();
 
-        if (outOfBoundsData.isMixin) {
+        if (outOfBoundsData.isMixin ||
+            STATIC_LIFECYCLE_METHOD_NAMES.contains(key.getString())) {
           // Make sure we keep the static methods as properties on the class
-          // because the runtime library for mixins iterates over the properties.
+          // because the runtime library for mixins iterates over the properties
+          // (and React calls the static lifecycle methods on the class).
           addNoCollapse(key);
         }
 
@@ -1945,7 +2506,8 @@ public class ReactCompilerPass implements NodeTraversal.Callback,
       // (like shouldComponentUpdate), then copy the parameter and return type
       // from the ReactComponent interface method, so that it gets type checking
       // Also add an explicit @override.
-      JSDocInfo componentMethodJsDoc = componentMethodJsDocs.get(keyName);
+      MethodJsDocTemplate componentMethodJsDoc =
+          componentMethodJsDocs.get(keyName);
       if (componentMethodJsDoc != null) {
         outOfBoundsData.componentMethodKeys.add(key);
         mergeInJsDoc(key, func, componentMethodJsDoc);
@@ -1958,7 +2520,7 @@ public class ReactCompilerPass implements NodeTraversal.Callback,
         JSDocInfo mixinMethodJSDoc = abstractMethodJsDocsByName.get(keyName);
         if (mixinMethodJSDoc != null) {
           outOfBoundsData.componentMethodKeys.add(key);
-          mergeInJsDoc(key, func, mixinMethodJSDoc);
+          mergeInJsDoc(key, func, MethodJsDocTemplate.of(mixinMethodJSDoc));
         }
       }
 
@@ -2049,33 +2611,32 @@ public class ReactCompilerPass implements NodeTraversal.Callback,
       interfaceTypeFunctionNode.setJSDocInfo(jsDocBuilder.build());
       insertionPoint.getParent().addChildBefore(
           interfaceTypeNode, insertionPoint);
+      ChangeReports.reportNewCode(compiler, interfaceTypeNode);
       // Export interface name if mixin class is exported.
       if (addModuleExports) {
         Ast.addModuleExport(interfaceTypeName, interfaceTypeNode);
       }
 
-      Node interfacePrototypeObjectLiteral =
-          reactMixinInterfacePrototypeObjectLiteralByName.get(scope, nameNode);
-      for (Node prop : interfacePrototypeObjectLiteral.children()) {
-        if (outOfBoundsData.optionalAbstractMethodNames.contains(prop.getString())) {
-          prop.detachFromParent();
-        }
+      InterfacePrototype interfacePrototype =
+          reactMixinInterfacePrototypesByName.get(scope, nameNode);
+      for (String name : outOfBoundsData.optionalAbstractMethodNames) {
+        interfacePrototype.remove(name);
       }
-      trimDuplicateProperties(interfacePrototypeObjectLiteral);
 
+      Node interfacePrototypeNode = NodeUtil.newQNameDeclaration(
+          compiler,
+          interfaceTypeName + ".prototype",
+          interfacePrototype.buildObjectLiteral(),
+          null);
       insertionPoint.getParent().addChildAfter(
-          NodeUtil.newQNameDeclaration(
-              compiler,
-              interfaceTypeName + ".prototype",
-              interfacePrototypeObjectLiteral,
-              null),
-          interfaceTypeNode);
+          interfacePrototypeNode, interfaceTypeNode);
+      ChangeReports.reportNewCode(compiler, interfacePrototypeNode);
     }
 
     if (!outOfBoundsData.mixins.isEmpty()) {
       for (Node mixinNameNode : outOfBoundsData.mixins) {
-        List<Node> mixinInterfacePrototypeNode = reactMixinMethodsByName.get(scope, mixinNameNode);
-        if (mixinInterfacePrototypeNode == null) {
+        FlattenedMixin mixin = getFlattenedMixin(scope, mixinNameNode);
+        if (mixin == null) {
           compiler.report(JSError.make(mixinNameNode, MIXIN_UNKNOWN,
               mixinNameNode.getQualifiedName()));
           return;
@@ -2099,7 +2660,7 @@ public class ReactCompilerPass implements NodeTraversal.Callback,
         builder.recordImplementedInterface(implementsType);
         outOfBoundsData.classNode.setJSDocInfo(builder.build());
 
-        defineMethodsMixedInFromMixin(outOfBoundsData, mixinNameNode, scope, abstractMethodJsDocsByName);
+        defineMethodsMixedInFromMixin(outOfBoundsData, mixinNameNode, mixin, abstractMethodJsDocsByName);
       }
     }
 
@@ -2108,13 +2669,15 @@ public class ReactCompilerPass implements NodeTraversal.Callback,
       Node extendsNode = classNode.getSecondChild();
       String replaceName = extendsNode.getQualifiedName().equals("React.Component") ?
           COMPONENT_ALIAS_NAME : PURE_COMPONENT_ALIAS_NAME;
-      extendsNode.replaceWith(IR.name(replaceName));
+      Node aliasNameNode = IR.name(replaceName);
+      extendsNode.replaceWith(aliasNameNode);
+      ChangeReports.reportChange(compiler, aliasNameNode);
     }
   }
 
   private void defineMethodsMixedInFromMixin(ClassOutOfBoundsData dst,
       Node mixinNameNode,
-      Scope scope,
+      FlattenedMixin mixin,
       Map<String, JSDocInfo> abstractMethodJsDocsByName) {
     // For class based component we define the methods from the mixins as
     //
@@ -2122,69 +2685,65 @@ public class ReactCompilerPass implements NodeTraversal.Callback,
     //   class Comp extends React.Component {}
     //   /** @override */ Comp.prototype.chainedMixinMethod;
     //   /** @override */ Comp.prototype.mixinMethod;
-
+    //
+    // The flattened mixin also includes the methods (and statics) that mixins
+    // got from other mixins.
+    for (Node unknownMixinNameNode : mixin.getUnknownClassMixins()) {
+      compiler.report(JSError.make(unknownMixinNameNode, MIXIN_UNKNOWN,
+          unknownMixinNameNode.getQualifiedName()));
+    }
     Node insertionPoint = dst.insertionPoint;
     String typeName = dst.typeName;
-    List<Node> mixinInterfacePrototypeProps = reactMixinMethodsByName.get(scope, mixinNameNode);
-    if (mixinInterfacePrototypeProps == null) {
-      compiler.report(JSError.make(mixinNameNode, MIXIN_UNKNOWN, mixinNameNode.getQualifiedName()));
-      return;
-    }
-
-    for (Node prop : mixinInterfacePrototypeProps) {
-      String keyName = prop.getString();
-      JSDocInfo jsdocInfo = prop.getJSDocInfo();
-      if (jsdocInfo == null) {
-        // We need a JSDocInfo to get Closure Compiler to treat this as a
-        // method.
-        JSDocInfoBuilder builder = new JSDocInfoBuilder(true);
-        builder.recordOverride();
-        jsdocInfo = builder.build();
-      } else {
-        jsdocInfo = jsdocInfo.clone();
-      }
-      boolean isAbstract = abstractMethodJsDocsByName.containsKey(keyName);
-      if (isAbstract) {
-        // Use /** @type {typeof MixinInterface.prototype.optionalAbstract} */
-        JSDocInfoBuilder builder = new JSDocInfoBuilder(true);
-        Node type = IR.typeof(IR.string(
-          mixinNameNode.getQualifiedName() + "Interface.prototype." + prop.getString()));
-        builder.recordType(new JSTypeExpression(type, prop.getSourceFileName()));
-        jsdocInfo = builder.build();
-      }
-      insertionPoint.getParent().addChildAfter(
-        NodeUtil.newQNameDeclaration(
-            compiler,
-            typeName + ".prototype." + keyName,
-            null,
-            jsdocInfo),
-        insertionPoint);
-    }
-
-    // Make sure we are also adding methods that mixins got from other mixins.
-    ClassOutOfBoundsData mixinData = classOutOfBoundsMap.get(scope, mixinNameNode);
-    if (mixinData != null) {
-      // Add statics from mixins
-      for (Node staticMethod : mixinData.staticMethods) {
-        JSDocInfo info = staticMethod.getJSDocInfo();
+    for (FlattenedMixin.Member member : mixin.getClassMembers()) {
+      MixinSummary.Method method = member.method;
+      Node statement;
+      if (member.isStatic) {
+        // Add statics from mixins
+        JSDocInfo info = method.jsDocInfo;
         if (info == null) {
           JSDocInfoBuilder builder = new JSDocInfoBuilder(true);
           builder.recordType(
             new JSTypeExpression(
               new Node(Token.BANG, IR.string("Function")),
-              staticMethod.getSourceFileName()));
+              method.sourceFileName));
           info = builder.build();
         } else {
           info = info.clone();
         }
-
-        Node statement = NodeUtil.newQNameDeclaration(compiler, dst.typeName + "." + staticMethod.getString(), null, info);
-        dst.insertionPoint.getParent().addChildAfter(statement, dst.insertionPoint);
-      }
-
-      for (Node innerMixinNamNode : mixinData.mixins) {
-        defineMethodsMixedInFromMixin(dst, innerMixinNamNode, mixinData.scope, abstractMethodJsDocsByName);
+        statement = NodeUtil.newQNameDeclaration(
+            compiler, typeName + "." + method.name, null, info);
+      } else {
+        String keyName = method.name;
+        JSDocInfo jsdocInfo = method.jsDocInfo;
+        if (jsdocInfo == null) {
+          // We need a JSDocInfo to get Closure Compiler to treat this as a
+          // method.
+          JSDocInfoBuilder builder = new JSDocInfoBuilder(true);
+          builder.recordOverride();
+          jsdocInfo = builder.build();
+        } else {
+          jsdocInfo = jsdocInfo.clone();
+        }
+        boolean isAbstract = abstractMethodJsDocsByName.containsKey(keyName);
+        if (isAbstract) {
+          // Use /** @type {typeof MixinInterface.prototype.optionalAbstract} */
+          Node methodMixinNameNode = member.mixinNameNode != null ?
+              member.mixinNameNode : mixinNameNode;
+          JSDocInfoBuilder builder = new JSDocInfoBuilder(true);
+          Node type = IR.typeof(IR.string(
+            methodMixinNameNode.getQualifiedName() + "Interface.prototype." +
+                keyName));
+          builder.recordType(new JSTypeExpression(type, method.sourceFileName));
+          jsdocInfo = builder.build();
+        }
+        statement = NodeUtil.newQNameDeclaration(
+            compiler,
+            typeName + ".prototype." + keyName,
+            null,
+            jsdocInfo);
       }
+      insertionPoint.getParent().addChildAfter(statement, insertionPoint);
+      ChangeReports.reportNewCode(compiler, statement);
     }
   }
 
@@ -2228,6 +2787,7 @@ public class ReactCompilerPass implements NodeTraversal.Callback,
         decl = IR.export(decl);
       }
       insertNode.getParent().addChildAfter(decl, insertNode);
+      ChangeReports.reportNewCode(compiler, decl);
 
       // Mixin.prototype.foo
       addPrototypeDeclForType(nameNode, insertNode, classNode, entry, baseName, decl, "");
@@ -2248,28 +2808,7 @@ public class ReactCompilerPass implements NodeTraversal.Callback,
     Node prototypeMethodDecl = NodeUtil.newQNameDeclaration(compiler,
       nameNode.getQualifiedName() + interfaceString + ".prototype." + entry.getKey(), null, builder.build());
     insertNode.getParent().addChildAfter(prototypeMethodDecl, decl);
-  }
-
-  /**
-   * Trim duplicated properties that have accumulated (due to mixins defining a
-   * method and then classes overriding it). Keep the last one since it's from the
-   * class and thus most specific.
-   */
-  private void trimDuplicateProperties(Node interfacePrototypeProps) {
-    ListMultimap<String, Node> interfaceKeyNodes = ArrayListMultimap.create();
-    for (Node interfaceKeyNode = interfacePrototypeProps.getFirstChild();
-          interfaceKeyNode != null;
-          interfaceKeyNode = interfaceKeyNode.getNext()) {
-      interfaceKeyNodes.put(interfaceKeyNode.getString(), interfaceKeyNode);
-    }
-    for (String key : interfaceKeyNodes.keySet()) {
-      List<Node> keyNodes = interfaceKeyNodes.get(key);
-      if (keyNodes.size() > 1) {
-        for (Node keyNode : keyNodes.subList(0, keyNodes.size() - 1)) {
-          keyNode.detachFromParent();
-        }
-      }
-    }
+    ChangeReports.reportNewCode(compiler, prototypeMethodDecl);
   }
 
   /**
@@ -2293,6 +2832,7 @@ public class ReactCompilerPass implements NodeTraversal.Callback,
     elementTypedefNode.useSourceInfoFromForTree(classParentNode);
     typesInsertionPoint.getParent().addChildAfter(
         elementTypedefNode, typesInsertionPoint);
+    ChangeReports.reportNewCode(compiler, elementTypedefNode);
     if (addModuleExports) {
       Ast.addModuleExport(elementTypeName, elementTypedefNode);
     }
@@ -2369,13 +2909,27 @@ public class ReactCompilerPass implements NodeTraversal.Callback,
     return typeNamePrefix + "Interface";
   }
 
-  private static class MixinRef {
-    public final Node node;
-    public final Scope scope;
+  /**
+   * A mixin defined in the script that is being traversed. It may still gain
+   * abstract methods, so it is only summarized once the script is done.
+   */
+  private static class PendingMixin {
+    final Scope scope;
+    // For React.createMixin mixins.
+    final Node specNode;
+    // For ReactSupport.declareMixin mixins.
+    final ClassOutOfBoundsData classData;
 
-    public MixinRef(Node node, Scope scope) {
-      this.node = node;
+    PendingMixin(Node specNode, Scope scope) {
       this.scope = scope;
+      this.specNode = specNode;
+      this.classData = null;
+    }
+
+    PendingMixin(ClassOutOfBoundsData classData) {
+      this.scope = classData.scope;
+      this.specNode = null;
+      this.classData = classData;
     }
   }
 }
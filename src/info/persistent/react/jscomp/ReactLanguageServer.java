@@ -0,0 +1,429 @@
+package info.persistent.react.jscomp;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.io.ByteStreams;
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonWriter;
+import com.google.javascript.jscomp.JSError;
+import com.google.javascript.jscomp.Result;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.StringWriter;
+import java.net.URI;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A Language Server Protocol server (over stdin/stdout) that publishes the
+ * compiler's diagnostics, including the React-specific ones, for the files of
+ * a program as they are edited.
+ *
+ * The program is given by ReactCommandLineRunner flags, passed as the "args"
+ * initialization option, e.g.:
+ *
+ *   "initializationOptions": {
+ *     "args": ["--compilation_level=ADVANCED", "--js", "src/**.js"]
+ *   }
+ *
+ * Relative paths are resolved against the server's working directory (which
+ * should be the workspace root).
+ *
+ * The program is kept resident in a ReactCommandLineRunner.CheckSession, with
+ * the unsaved contents of open documents used instead of the files'. After
+ * each edit (once edits pause for a bit) the program is checked again, which
+ * only needs to parse the changed files. Checks run one at a time; edits made
+ * during a check schedule another one.
+ */
+public class ReactLanguageServer {
+  // Wait for a pause in typing before checking, since every check is of the
+  // whole program.
+  private static final long CHECK_DELAY_MILLIS = 150;
+  private static final String DIAGNOSTICS_SOURCE = "react-closure-compiler";
+
+  private static final int METHOD_NOT_FOUND = -32601;
+  private static final int INVALID_PARAMS = -32602;
+
+  private final InputStream in;
+  private final OutputStream out;
+  private final Gson gson = new Gson();
+  private final ScheduledExecutorService checkExecutor =
+      Executors.newSingleThreadScheduledExecutor();
+  private final Map<String, String> unsavedCodeByUri = new ConcurrentHashMap<>();
+  private ReactCommandLineRunner.CheckSession checkSession;
+  private ScheduledFuture<?> pendingCheck;
+  // Accessed by the check thread only.
+  private Set<String> urisWithDiagnostics = Sets.newHashSet();
+  private boolean shutdownRequested = false;
+
+  ReactLanguageServer(InputStream in, OutputStream out) {
+    this.in = in;
+    this.out = out;
+  }
+
+  /**
+   * Handles messages until the client sends an exit notification (or closes
+   * the input), and returns the exit code.
+   */
+  int run() throws IOException {
+    try {
+      while (true) {
+        JsonObject message;
+        try {
+          message = readMessage();
+        } catch (EOFException e) {
+          return 1;
+        }
+        if (message == null) {
+          continue;
+        }
+        JsonElement id = message.get("id");
+        try {
+          String method = message.has("method") ?
+              message.get("method").getAsString() : null;
+          if ("exit".equals(method)) {
+            return shutdownRequested ? 0 : 1;
+          }
+          handleMessage(method, message);
+        } catch (RuntimeException e) {
+          // Malformed params (missing or mistyped members) fail only the
+          // message, the server keeps handling the following ones.
+          if (id != null) {
+            sendError(id, INVALID_PARAMS, "Invalid params: " + e);
+          } else {
+            System.err.println("Ignoring malformed notification: " + e);
+          }
+        }
+      }
+    } finally {
+      checkExecutor.shutdownNow();
+    }
+  }
+
+  /**
+   * Throws a RuntimeException (e.g. ClassCastException, NullPointerException)
+   * if the message's params are not of the expected shape.
+   */
+  private void handleMessage(String method, JsonObject message)
+      throws IOException {
+    JsonElement id = message.get("id");
+    JsonObject params = message.has("params") &&
+        message.get("params").isJsonObject() ?
+            message.getAsJsonObject("params") : new JsonObject();
+    if (method == null) {
+      // A response to a request of ours (we don't send any).
+      return;
+    }
+    switch (method) {
+      case "initialize":
+        initialize(id, params);
+        return;
+      case "initialized":
+        scheduleCheck();
+        return;
+      case "shutdown":
+        shutdownRequested = true;
+        checkExecutor.shutdownNow();
+        sendResult(id, JsonNull.INSTANCE);
+        return;
+      case "textDocument/didOpen":
+        unsavedCodeByUri.put(
+            getDocumentUri(params),
+            params.getAsJsonObject("textDocument").get("text").getAsString());
+        scheduleCheck();
+        return;
+      case "textDocument/didChange": {
+        // Only full document sync is supported, the last change has the
+        // current contents.
+        JsonArray changes = params.getAsJsonArray("contentChanges");
+        if (changes.size() > 0) {
+          unsavedCodeByUri.put(
+              getDocumentUri(params),
+              changes.get(changes.size() - 1).getAsJsonObject()
+                  .get("text").getAsString());
+        }
+        scheduleCheck();
+        return;
+      }
+      case "textDocument/didClose":
+        unsavedCodeByUri.remove(getDocumentUri(params));
+        scheduleCheck();
+        return;
+      case "textDocument/didSave":
+      case "workspace/didChangeWatchedFiles":
+        scheduleCheck();
+        return;
+      default:
+        if (id != null) {
+          sendError(id, METHOD_NOT_FOUND, "Unsupported method: " + method);
+        }
+    }
+  }
+
+  private void initialize(JsonElement id, JsonObject params)
+      throws IOException {
+    JsonElement initializationOptions = params.get("initializationOptions");
+    if (initializationOptions == null ||
+        !initializationOptions.isJsonObject() ||
+        !initializationOptions.getAsJsonObject().has("args")) {
+      sendError(id, INVALID_PARAMS,
+          "The \"args\" initialization option is required");
+      return;
+    }
+    String[] args = gson.fromJson(
+        initializationOptions.getAsJsonObject().get("args"), String[].class);
+    PrintStream nullStream =
+        new PrintStream(ByteStreams.nullOutputStream());
+    checkSession =
+        new ReactCommandLineRunner.CheckSession(args, nullStream, nullStream);
+
+    JsonObject textDocumentSync = new JsonObject();
+    textDocumentSync.addProperty("openClose", true);
+    textDocumentSync.addProperty("change", 1); // Full
+    textDocumentSync.addProperty("save", true);
+    JsonObject capabilities = new JsonObject();
+    capabilities.add("textDocumentSync", textDocumentSync);
+    JsonObject result = new JsonObject();
+    result.add("capabilities", capabilities);
+    sendResult(id, result);
+  }
+
+  private synchronized void scheduleCheck() {
+    if (checkSession == null || shutdownRequested) {
+      return;
+    }
+    if (pendingCheck != null) {
+      // Does not interrupt a check that is already running, it'll be
+      // followed by the newly scheduled one.
+      pendingCheck.cancel(false);
+    }
+    pendingCheck = checkExecutor.schedule(
+        this::check, CHECK_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+  }
+
+  private void check() {
+    // Which inputs the open documents are is only known after the first
+    // check (and may change if they are matched by globs), so check again if
+    // their unsaved contents were not all used.
+    Result result;
+    Map<String, String> unsavedCodeByName;
+    do {
+      unsavedCodeByName = getUnsavedCodeByInputName();
+      checkSession.setUnsavedCode(unsavedCodeByName);
+      result = checkSession.check();
+    } while (result != null && !unsavedCodeByName.keySet().equals(
+        getUnsavedCodeByInputName().keySet()));
+    if (result == null) {
+      return;
+    }
+
+    Map<String, JsonArray> diagnosticsByUri = Maps.newLinkedHashMap();
+    addDiagnostics(result.errors, 1, diagnosticsByUri);
+    addDiagnostics(result.warnings, 2, diagnosticsByUri);
+    // Clear the diagnostics of files that no longer have any.
+    for (String uri : urisWithDiagnostics) {
+      if (!diagnosticsByUri.containsKey(uri)) {
+        diagnosticsByUri.put(uri, new JsonArray());
+      }
+    }
+    try {
+      for (Map.Entry<String, JsonArray> entry : diagnosticsByUri.entrySet()) {
+        JsonObject params = new JsonObject();
+        params.addProperty("uri", entry.getKey());
+        params.add("diagnostics", entry.getValue());
+        sendNotification("textDocument/publishDiagnostics", params);
+      }
+    } catch (IOException e) {
+      // The client is gone, run() will see it too.
+    }
+    urisWithDiagnostics = Sets.newHashSet();
+    for (Map.Entry<String, JsonArray> entry : diagnosticsByUri.entrySet()) {
+      if (entry.getValue().size() > 0) {
+        urisWithDiagnostics.add(entry.getKey());
+      }
+    }
+  }
+
+  private Map<String, String> getUnsavedCodeByInputName() {
+    Map<String, String> unsavedCodeByName = Maps.newHashMap();
+    for (String name : checkSession.getInputNames()) {
+      String unsavedCode = unsavedCodeByUri.get(toUri(name));
+      if (unsavedCode != null) {
+        unsavedCodeByName.put(name, unsavedCode);
+      }
+    }
+    return unsavedCodeByName;
+  }
+
+  private static void addDiagnostics(
+      List<JSError> errors, int severity,
+      Map<String, JsonArray> diagnosticsByUri) {
+    for (JSError error : errors) {
+      if (error.sourceName == null) {
+        // Not attributable to a file (e.g. invalid options).
+        continue;
+      }
+      // Lines are 1-based in JSError, 0-based in LSP (unknown is -1 and 0).
+      int line = Math.max(error.getLineNumber() - 1, 0);
+      int character = Math.max(error.getCharno(), 0);
+      JsonObject position = new JsonObject();
+      position.addProperty("line", line);
+      position.addProperty("character", character);
+      JsonObject range = new JsonObject();
+      range.add("start", position);
+      range.add("end", position);
+      JsonObject diagnostic = new JsonObject();
+      diagnostic.add("range", range);
+      diagnostic.addProperty("severity", severity);
+      diagnostic.addProperty("code", error.getType().key);
+      diagnostic.addProperty("source", DIAGNOSTICS_SOURCE);
+      diagnostic.addProperty("message", error.description);
+      String uri = toUri(error.sourceName);
+      JsonArray diagnostics = diagnosticsByUri.get(uri);
+      if (diagnostics == null) {
+        diagnostics = new JsonArray();
+        diagnosticsByUri.put(uri, diagnostics);
+      }
+      diagnostics.add(diagnostic);
+    }
+  }
+
+  private static String getDocumentUri(JsonObject params) {
+    return normalizeUri(
+        params.getAsJsonObject("textDocument").get("uri").getAsString());
+  }
+
+  private static String toUri(String inputName) {
+    return Paths.get(inputName).toAbsolutePath().normalize().toUri().toString();
+  }
+
+  /**
+   * Clients may encode file URIs differently (e.g. "file:///" vs "file:/"),
+   * so they're compared in the form that Path.toUri produces.
+   */
+  private static String normalizeUri(String uri) {
+    try {
+      Path path = Paths.get(URI.create(uri));
+      return path.toAbsolutePath().normalize().toUri().toString();
+    } catch (IllegalArgumentException e) {
+      return uri;
+    }
+  }
+
+  /**
+   * Reads the next message, returns null if it's not a JSON object.
+   */
+  private JsonObject readMessage() throws IOException {
+    int contentLength = -1;
+    while (true) {
+      String header = readHeaderLine();
+      if (header.isEmpty()) {
+        break;
+      }
+      int colon = header.indexOf(':');
+      if (colon != -1 && header.substring(0, colon).trim()
+          .equalsIgnoreCase("Content-Length")) {
+        contentLength = Integer.parseInt(header.substring(colon + 1).trim());
+      }
+    }
+    if (contentLength < 0) {
+      return null;
+    }
+    byte[] content = new byte[contentLength];
+    ByteStreams.readFully(in, content);
+    try {
+      JsonElement message = gson.fromJson(
+          new String(content, Charsets.UTF_8), JsonElement.class);
+      return message != null && message.isJsonObject() ?
+          message.getAsJsonObject() : null;
+    } catch (JsonParseException e) {
+      return null;
+    }
+  }
+
+  private String readHeaderLine() throws IOException {
+    ByteArrayOutputStream line = new ByteArrayOutputStream();
+    while (true) {
+      int c = in.read();
+      if (c == -1) {
+        throw new EOFException();
+      }
+      if (c == '\n') {
+        break;
+      }
+      if (c != '\r') {
+        line.write(c);
+      }
+    }
+    return new String(line.toByteArray(), Charsets.US_ASCII);
+  }
+
+  private void sendResult(JsonElement id, JsonElement result)
+      throws IOException {
+    JsonObject message = new JsonObject();
+    message.add("id", id);
+    message.add("result", result);
+    send(message);
+  }
+
+  private void sendError(JsonElement id, int code, String errorMessage)
+      throws IOException {
+    JsonObject error = new JsonObject();
+    error.addProperty("code", code);
+    error.addProperty("message", errorMessage);
+    JsonObject message = new JsonObject();
+    message.add("id", id);
+    message.add("error", error);
+    send(message);
+  }
+
+  private void sendNotification(String method, JsonObject params)
+      throws IOException {
+    JsonObject message = new JsonObject();
+    message.addProperty("method", method);
+    message.add("params", params);
+    send(message);
+  }
+
+  private synchronized void send(JsonObject message) throws IOException {
+    message.addProperty("jsonrpc", "2.0");
+    // Responses must have a result member, even if it's null (which Gson
+    // omits by default).
+    StringWriter json = new StringWriter();
+    JsonWriter jsonWriter = new JsonWriter(json);
+    jsonWriter.setSerializeNulls(true);
+    gson.getAdapter(JsonElement.class).write(jsonWriter, message);
+    byte[] content = json.toString().getBytes(Charsets.UTF_8);
+    out.write(("Content-Length: " + content.length + "\r\n\r\n")
+        .getBytes(Charsets.US_ASCII));
+    out.write(content);
+    out.flush();
+  }
+
+  public static void main(String[] args) throws IOException {
+    // Anything printed to stdout would corrupt the protocol stream.
+    PrintStream stdout = System.out;
+    System.setOut(System.err);
+    int exitCode = new ReactLanguageServer(System.in, stdout).run();
+    System.exit(exitCode);
+  }
+}
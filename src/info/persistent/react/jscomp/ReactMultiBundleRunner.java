@@ -0,0 +1,425 @@
+package info.persistent.react.jscomp;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Files;
+import com.google.gson.Gson;
+import com.google.javascript.jscomp.AbstractCompiler;
+import com.google.javascript.jscomp.CommandLineRunner;
+import com.google.javascript.jscomp.CompilationLevel;
+import com.google.javascript.jscomp.Compiler;
+import com.google.javascript.jscomp.CompilerInput;
+import com.google.javascript.jscomp.CompilerOptions;
+import com.google.javascript.jscomp.CustomPassExecutionTime;
+import com.google.javascript.jscomp.DependencyOptions;
+import com.google.javascript.jscomp.JSModule;
+import com.google.javascript.jscomp.JsAst;
+import com.google.javascript.jscomp.ModuleIdentifier;
+import com.google.javascript.jscomp.Result;
+import com.google.javascript.jscomp.SourceAst;
+import com.google.javascript.jscomp.SourceFile;
+import com.google.javascript.jscomp.WarningLevel;
+import com.google.javascript.rhino.InputId;
+import com.google.javascript.rhino.Node;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Compiles several bundles from a shared set of sources in a single JVM.
+ *
+ * The bundles are described by a JSON manifest:
+ *
+ *   {
+ *     "compilationLevel": "ADVANCED",
+ *     "externs": ["externs/app.js"],
+ *     "sources": ["src/common.js", "src/home.js", "src/settings.js"],
+ *     "bundles": [
+ *       {"output": "out/home.js", "entryPoints": ["goog:app.home"]},
+ *       {"output": "out/settings.js", "entryPoints": ["src/settings.js"]}
+ *     ]
+ *   }
+ *
+ * Paths are relative to the manifest's directory. Entry points use the same
+ * syntax as the --entry_point flag, and each bundle only includes the sources
+ * that its entry points depend on.
+ *
+ * Bundles may also be built in several variants, e.g. a type checked one
+ * (that only reports diagnostics) and one that is optimized for size (for
+ * use with the minified React build):
+ *
+ *   "variants": [
+ *     {"name": "checks", "checksOnly": true},
+ *     {
+ *       "name": "prod",
+ *       "propTypesTypeChecking": false,
+ *       "optimizeForSize": true,
+ *       "outputSuffix": ".min"
+ *     }
+ *   ]
+ *
+ * where the output suffix is inserted before the output's .js extension. By
+ * default each bundle is built once, with props type checking. Variants that
+ * write output must not write to the same paths (e.g. by having the same
+ * suffix).
+ *
+ * Externs and sources are read once and sources are parsed once; each
+ * variant of each bundle is then compiled (with its own Compiler and
+ * ReactCompilerPass, working on a copy of the parsed sources) on a bounded
+ * thread pool. Externs are still parsed by each compiler, since Closure only
+ * accepts them as source files.
+ */
+public class ReactMultiBundleRunner {
+  static class Manifest {
+    String compilationLevel = "ADVANCED";
+    boolean checksOnly = false;
+    List<String> externs = Lists.newArrayList();
+    List<String> sources = Lists.newArrayList();
+    List<Bundle> bundles = Lists.newArrayList();
+    List<Variant> variants = Lists.newArrayList();
+  }
+
+  static class Bundle {
+    String output;
+    List<String> entryPoints = Lists.newArrayList();
+  }
+
+  static class Variant {
+    String name;
+    boolean propTypesTypeChecking = true;
+    boolean optimizeForSize = false;
+    boolean checksOnly = false;
+    String outputSuffix = "";
+  }
+
+  private final Manifest manifest;
+  private final File baseDir;
+  private final int threadCount;
+  private final PrintStream err;
+
+  ReactMultiBundleRunner(
+      Manifest manifest, File baseDir, int threadCount, PrintStream err) {
+    this.manifest = manifest;
+    this.baseDir = baseDir;
+    this.threadCount = threadCount;
+    this.err = err;
+  }
+
+  static Manifest readManifest(File manifestFile) throws IOException {
+    return new Gson().fromJson(
+        Files.asCharSource(manifestFile, Charsets.UTF_8).read(),
+        Manifest.class);
+  }
+
+  /**
+   * Compiles all of the bundles in the manifest, and returns true if none of
+   * them had errors. Diagnostics are reported per bundle, in manifest order.
+   */
+  boolean run() throws IOException, InterruptedException {
+    List<Variant> variants = manifest.variants.isEmpty()
+        ? ImmutableList.of(new Variant()) : manifest.variants;
+    checkOutputsAreUnique(variants);
+
+    List<SourceFile> externs = Lists.newArrayList();
+    for (SourceFile builtinExtern : CommandLineRunner.getBuiltinExterns(
+        CompilerOptions.Environment.BROWSER)) {
+      // Loads the code now, so that the copies made by each compiler's thread
+      // only read it.
+      externs.add(copySourceFile(builtinExtern));
+    }
+    for (String path : manifest.externs) {
+      externs.add(readSourceFile(path));
+    }
+    List<SourceFile> sourceFiles = Lists.newArrayList();
+    for (String path : manifest.sources) {
+      sourceFiles.add(readSourceFile(path));
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+    try {
+      List<Future<SourceAst>> parseFutures = Lists.newArrayList();
+      for (SourceFile sourceFile : sourceFiles) {
+        parseFutures.add(executor.submit(() -> parse(sourceFile)));
+      }
+      List<SourceAst> sources = Lists.newArrayList();
+      for (Future<SourceAst> parseFuture : parseFutures) {
+        sources.add(getUnchecked(parseFuture));
+      }
+
+      List<Future<BundleResult>> bundleFutures = Lists.newArrayList();
+      for (Bundle bundle : manifest.bundles) {
+        for (Variant variant : variants) {
+          bundleFutures.add(executor.submit(
+              () -> compileBundle(bundle, variant, externs, sources)));
+        }
+      }
+      boolean success = true;
+      for (Future<BundleResult> bundleFuture : bundleFutures) {
+        BundleResult bundleResult = getUnchecked(bundleFuture);
+        err.print(bundleResult.diagnostics);
+        success &= bundleResult.success;
+      }
+      return success;
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Throws if the variants of the bundles that write output would overwrite
+   * each other's.
+   */
+  private void checkOutputsAreUnique(List<Variant> variants) {
+    Map<Path, String> labelsByOutputPath = Maps.newHashMap();
+    for (Bundle bundle : manifest.bundles) {
+      for (Variant variant : variants) {
+        if (manifest.checksOnly || variant.checksOnly) {
+          continue;
+        }
+        String output = getOutput(bundle, variant);
+        Path outputPath =
+            new File(baseDir, output).toPath().toAbsolutePath().normalize();
+        String label = getLabel(output, variant);
+        String otherLabel = labelsByOutputPath.put(outputPath, label);
+        if (otherLabel != null) {
+          throw new IllegalArgumentException(
+              otherLabel + " and " + label + " have the same output: " +
+                  outputPath);
+        }
+      }
+    }
+  }
+
+  private static class BundleResult {
+    boolean success;
+    String diagnostics;
+  }
+
+  private BundleResult compileBundle(
+      Bundle bundle,
+      Variant variant,
+      List<SourceFile> externs,
+      List<SourceAst> sources) throws IOException {
+    ByteArrayOutputStream diagnostics = new ByteArrayOutputStream();
+    Compiler compiler = new Compiler(new PrintStream(diagnostics, true));
+
+    CompilerOptions options = createOptions();
+    boolean checksOnly = manifest.checksOnly || variant.checksOnly;
+    options.setChecksOnly(checksOnly);
+    List<ModuleIdentifier> entryPoints = Lists.newArrayList();
+    for (String entryPoint : bundle.entryPoints) {
+      entryPoints.add(ModuleIdentifier.forFlagValue(entryPoint));
+    }
+    options.setDependencyOptions(
+        DependencyOptions.pruneForEntryPoints(entryPoints));
+    ReactCompilerPass.Options passOptions = new ReactCompilerPass.Options();
+    passOptions.propTypesTypeChecking = variant.propTypesTypeChecking;
+    passOptions.optimizeForSize = variant.optimizeForSize;
+    passOptions.pruneUnusedTypes = true;
+    ReactCompilerPass compilerPass = new ReactCompilerPass(compiler, passOptions);
+    options.addCustomPass(CustomPassExecutionTime.BEFORE_CHECKS, compilerPass);
+    options.addWarningsGuard(new ReactWarningsGuard(compiler, compilerPass));
+
+    // SourceFiles cache state (e.g. line offsets) as they're used, so each
+    // compiler gets its own.
+    List<SourceFile> externCopies = Lists.newArrayList();
+    for (SourceFile extern : externs) {
+      externCopies.add(copySourceFile(extern));
+    }
+    JSModule module = new JSModule(JSModule.STRONG_MODULE_NAME);
+    for (SourceAst source : sources) {
+      SourceFile sourceFile = copySourceFile(source.getSourceFile());
+      module.add(new CompilerInput(source instanceof ParsedAst
+          ? ((ParsedAst) source).copy(sourceFile) : new JsAst(sourceFile)));
+    }
+    Result result = compiler.compileModules(
+        externCopies, ImmutableList.of(module), options);
+
+    String output = getOutput(bundle, variant);
+    if (result.success && !checksOnly) {
+      File outputFile = new File(baseDir, output);
+      Files.createParentDirs(outputFile);
+      Files.asCharSink(outputFile, Charsets.UTF_8).write(compiler.toSource());
+    }
+    BundleResult bundleResult = new BundleResult();
+    bundleResult.success = result.success;
+    bundleResult.diagnostics = diagnostics.size() > 0
+        ? getLabel(output, variant) + ":\n" + diagnostics.toString() : "";
+    return bundleResult;
+  }
+
+  private static String getOutput(Bundle bundle, Variant variant) {
+    // The suffix is null if the manifest has "outputSuffix": null.
+    String outputSuffix = Strings.nullToEmpty(variant.outputSuffix);
+    if (bundle.output.endsWith(".js")) {
+      return bundle.output.substring(0, bundle.output.length() - 3) +
+          outputSuffix + ".js";
+    }
+    return bundle.output + outputSuffix;
+  }
+
+  private static String getLabel(String output, Variant variant) {
+    return variant.name == null ? output : output + " (" + variant.name + ")";
+  }
+
+  private CompilerOptions createOptions() {
+    CompilerOptions options = new CompilerOptions();
+    CompilationLevel level =
+        CompilationLevel.fromString(manifest.compilationLevel);
+    if (level == null) {
+      throw new IllegalArgumentException(
+          "Unknown compilation level: " + manifest.compilationLevel);
+    }
+    level.setOptionsForCompilationLevel(options);
+    level.setTypeBasedOptimizationOptions(options);
+    WarningLevel.DEFAULT.setOptionsForWarningLevel(options);
+    options.setChecksOnly(manifest.checksOnly);
+    return options;
+  }
+
+  private static SourceFile copySourceFile(SourceFile sourceFile)
+      throws IOException {
+    return SourceFile.fromCode(sourceFile.getName(), sourceFile.getCode());
+  }
+
+  private SourceFile readSourceFile(String path) throws IOException {
+    File file = new File(baseDir, path);
+    return SourceFile.fromCode(
+        path, Files.asCharSource(file, Charsets.UTF_8).read());
+  }
+
+  /**
+   * Parses a source up front. Sources that do not parse cleanly are left to
+   * each bundle's compiler, so that the errors are reported with the bundle.
+   */
+  private SourceAst parse(SourceFile sourceFile) {
+    Compiler compiler = new Compiler(
+        new PrintStream(ByteStreams.nullOutputStream()));
+    compiler.initOptions(createOptions());
+    JsAst ast = new JsAst(sourceFile);
+    Node root = ast.getAstRoot(compiler);
+    if (compiler.getErrorCount() > 0 || compiler.getWarningCount() > 0) {
+      return new JsAst(sourceFile);
+    }
+    return new ParsedAst(ast.getInputId(), sourceFile, root);
+  }
+
+  /**
+   * A source that has already been parsed. Compilation modifies the AST, so
+   * each compiler gets its own copy (cloned on first use, by the compiler's
+   * thread).
+   */
+  private static class ParsedAst implements SourceAst {
+    private final InputId inputId;
+    private SourceFile sourceFile;
+    private final Node parsedRoot;
+    private Node root;
+
+    ParsedAst(InputId inputId, SourceFile sourceFile, Node parsedRoot) {
+      this.inputId = inputId;
+      this.sourceFile = sourceFile;
+      this.parsedRoot = parsedRoot;
+    }
+
+    /**
+     * Returns a new instance sharing the parsed AST, for use by another
+     * compiler with its own copy of the source file.
+     */
+    ParsedAst copy(SourceFile sourceFile) {
+      return new ParsedAst(inputId, sourceFile, parsedRoot);
+    }
+
+    @Override public Node getAstRoot(AbstractCompiler compiler) {
+      if (root == null) {
+        // Copies are used from several threads at once, and Node is not
+        // documented as safe to read concurrently (e.g. by cloneTree).
+        synchronized (parsedRoot) {
+          root = parsedRoot.cloneTree(true);
+        }
+        setStaticSourceFile(root, sourceFile);
+      }
+      return root;
+    }
+
+    private static void setStaticSourceFile(Node n, SourceFile sourceFile) {
+      if (n.getStaticSourceFile() != null) {
+        n.setStaticSourceFile(sourceFile);
+      }
+      for (Node child = n.getFirstChild(); child != null;
+           child = child.getNext()) {
+        setStaticSourceFile(child, sourceFile);
+      }
+    }
+
+    @Override public void clearAst() {
+      root = null;
+    }
+
+    @Override public InputId getInputId() {
+      return inputId;
+    }
+
+    @Override public SourceFile getSourceFile() {
+      return sourceFile;
+    }
+
+    @Override public void setSourceFile(SourceFile sourceFile) {
+      this.sourceFile = sourceFile;
+    }
+  }
+
+  private static <T> T getUnchecked(Future<T> future)
+      throws IOException, InterruptedException {
+    try {
+      return future.get();
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new RuntimeException(e.getCause());
+    }
+  }
+
+  public static void main(String[] args) throws Exception {
+    String manifestPath = null;
+    int threadCount = Runtime.getRuntime().availableProcessors();
+    for (int i = 0; i < args.length; i++) {
+      if (args[i].equals("--threads") && i + 1 < args.length) {
+        threadCount = Integer.parseInt(args[++i]);
+      } else if (manifestPath == null) {
+        manifestPath = args[i];
+      } else {
+        manifestPath = null;
+        break;
+      }
+    }
+    if (manifestPath == null) {
+      System.err.println(
+          "Usage: ReactMultiBundleRunner [--threads N] manifest.json");
+      System.exit(-1);
+    }
+    File manifestFile = new File(manifestPath);
+    ReactMultiBundleRunner runner = new ReactMultiBundleRunner(
+        readManifest(manifestFile), manifestFile.getAbsoluteFile().getParentFile(),
+        threadCount, System.err);
+    if (!runner.run()) {
+      System.exit(-1);
+    }
+  }
+}
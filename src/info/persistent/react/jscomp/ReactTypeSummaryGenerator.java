@@ -0,0 +1,315 @@
+package info.persistent.react.jscomp;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+import com.google.javascript.jscomp.CodePrinter;
+import com.google.javascript.jscomp.Compiler;
+import com.google.javascript.jscomp.CompilerOptions;
+import com.google.javascript.jscomp.DiagnosticType;
+import com.google.javascript.jscomp.JSError;
+import com.google.javascript.jscomp.NodeUtil;
+import com.google.javascript.jscomp.SourceFile;
+import com.google.javascript.jscomp.ijs.ConvertToTypedInterface;
+import com.google.javascript.rhino.IR;
+import com.google.javascript.rhino.JSDocInfo;
+import com.google.javascript.rhino.JSDocInfoBuilder;
+import com.google.javascript.rhino.JSTypeExpression;
+import com.google.javascript.rhino.Node;
+import com.google.javascript.rhino.Token;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.List;
+
+/**
+ * Generates a type summary of a library that uses React, so that it can be
+ * compiled separately from the apps that use it.
+ *
+ * The summary has the same format as the .i.js files that the compiler
+ * generates (tagged with @typeSummary, declarations only, no function bodies),
+ * and apps include it as a regular input instead of the library's sources.
+ * Closure's own summary generation only keeps declarations, which would drop
+ * the React.createClass and React.createMixin calls, so those (and the
+ * ReactSupport mixin calls and propTypes of ES6 class components) are kept,
+ * with their method bodies stubbed out. ReactCompilerPass processes summaries
+ * like the sources they came from, so apps still get the generated Interface
+ * and Element typedefs, the Props and State records, the props validation and
+ * the methods of mixins from the library.
+ *
+ * Only scripts are supported (Closure and ES6 modules are not).
+ */
+public class ReactTypeSummaryGenerator {
+  static final DiagnosticType MODULES_NOT_SUPPORTED = DiagnosticType.error(
+      "REACT_TYPE_SUMMARY_MODULES_NOT_SUPPORTED",
+      "Type summaries can only be generated for scripts, not modules.");
+
+  private static final ImmutableSet<String> STATIC_PROPERTY_NAMES =
+      ImmutableSet.of(
+          "propTypes", "defaultProps", "contextTypes", "childContextTypes");
+
+  private static final String PLACEHOLDER_PREFIX = "React$typeSummary$";
+
+  private final PrintStream err;
+
+  public ReactTypeSummaryGenerator(PrintStream err) {
+    this.err = err;
+  }
+
+  /**
+   * Returns the type summary of the given library sources, or null if they
+   * had errors (which are reported to the error stream).
+   */
+  public String generate(List<SourceFile> sources) {
+    Compiler compiler = new Compiler(err);
+    CompilerOptions options = new CompilerOptions();
+    options.setPreserveTypeAnnotations(true);
+    options.setPrettyPrint(true);
+    compiler.init(ImmutableList.<SourceFile>of(), sources, options);
+    String summary = generate(compiler, options);
+    compiler.getErrorManager().generateReport();
+    return summary;
+  }
+
+  private static String generate(Compiler compiler, CompilerOptions options) {
+    compiler.parse();
+    if (compiler.hasErrors()) {
+      return null;
+    }
+    Node externsAndJsRoot = compiler.getRoot();
+    Node root = externsAndJsRoot.getLastChild();
+
+    // The statements that are kept as is are temporarily swapped out for
+    // typedef placeholders (which ConvertToTypedInterface preserves), so that
+    // they end up in the same order relative to the rest of the declarations.
+    List<Node> preservedStatements = Lists.newArrayList();
+    for (Node script : root.children()) {
+      if (script.hasChildren() && script.getFirstChild().isModuleBody()) {
+        compiler.report(JSError.make(script, MODULES_NOT_SUPPORTED));
+        continue;
+      }
+      for (Node statement : Lists.newArrayList(script.children())) {
+        if (!isPreservedStatement(statement)) {
+          continue;
+        }
+        stubStatement(statement);
+        Node placeholder = IR.var(
+            IR.name(PLACEHOLDER_PREFIX + preservedStatements.size()));
+        placeholder.setJSDocInfo(createTypedefJsDoc(statement));
+        placeholder.useSourceInfoFromForTree(statement);
+        statement.replaceWith(placeholder);
+        preservedStatements.add(statement);
+      }
+    }
+    if (compiler.hasErrors()) {
+      return null;
+    }
+
+    new ConvertToTypedInterface(compiler).process(
+        externsAndJsRoot.getFirstChild(), root);
+
+    for (Node script : root.children()) {
+      for (Node statement : Lists.newArrayList(script.children())) {
+        if (!statement.isVar()) {
+          continue;
+        }
+        String name = statement.getFirstChild().getString();
+        if (name.startsWith(PLACEHOLDER_PREFIX)) {
+          int index = Integer.parseInt(
+              name.substring(PLACEHOLDER_PREFIX.length()));
+          statement.replaceWith(preservedStatements.get(index));
+        }
+      }
+    }
+    if (compiler.hasErrors()) {
+      return null;
+    }
+
+    StringBuilder summary = new StringBuilder();
+    for (Node script : root.children()) {
+      // Only the first script needs the @typeSummary tag, summaries of the
+      // scripts of a library are concatenated.
+      summary.append(new CodePrinter.Builder(script)
+          .setCompilerOptions(options)
+          .setPrettyPrint(true)
+          .setTagAsTypeSummary(summary.length() == 0)
+          .build());
+    }
+    return summary.toString();
+  }
+
+  /**
+   * Whether a top-level statement needs to be kept for ReactCompilerPass,
+   * that is if it's of the form:
+   * var Comp = React.createClass({...});
+   * ns.Mixin = React.createMixin({...});
+   * ReactSupport.declareMixin(Mixin);
+   * ReactSupport.mixin(Comp, Mixin);
+   * Comp.propTypes = {...};
+   */
+  private static boolean isPreservedStatement(Node statement) {
+    Node value;
+    if (NodeUtil.isNameDeclaration(statement)) {
+      value = statement.getFirstChild().getFirstChild();
+    } else if (statement.isExprResult()) {
+      value = statement.getFirstChild();
+      if (value.isAssign()) {
+        Node target = value.getFirstChild();
+        if (target.isGetProp() &&
+            STATIC_PROPERTY_NAMES.contains(target.getLastChild().getString())) {
+          return true;
+        }
+        value = value.getLastChild();
+      }
+    } else {
+      return false;
+    }
+    return value != null && value.isCall() && (
+        value.getFirstChild().matchesQualifiedName("React.createClass") ||
+        value.getFirstChild().matchesQualifiedName("React.createMixin") ||
+        value.getFirstChild().matchesQualifiedName("ReactSupport.declareMixin") ||
+        value.getFirstChild().matchesQualifiedName("ReactSupport.mixin"));
+  }
+
+  private static void stubStatement(Node statement) {
+    Node value = statement.isExprResult() ?
+        statement.getFirstChild() : statement.getFirstChild().getFirstChild();
+    if (value.isAssign()) {
+      Node target = value.getFirstChild();
+      value = value.getLastChild();
+      if (target.isGetProp() &&
+          target.getLastChild().getString().equals("defaultProps")) {
+        // Only the names of props with default values are needed.
+        stubObjectLitValues(value);
+        return;
+      }
+    }
+    if (!value.isCall()) {
+      return;
+    }
+    Node specNode = value.getLastChild();
+    if (!specNode.isObjectLit()) {
+      return;
+    }
+    for (Node key : specNode.children()) {
+      if (!key.hasOneChild()) {
+        continue;
+      }
+      String keyName = key.getString();
+      Node keyValue = key.getFirstChild();
+      if (keyName.equals("statics") && keyValue.isObjectLit()) {
+        for (Node staticKey : keyValue.children()) {
+          if (staticKey.hasOneChild() && staticKey.getFirstChild().isFunction()) {
+            stubFunction(staticKey.getFirstChild());
+          } else if (staticKey.hasOneChild()) {
+            staticKey.getFirstChild().replaceWith(createStubValue());
+          }
+        }
+      } else if (keyName.equals("getDefaultProps") && keyValue.isFunction()) {
+        Node defaultPropsNode =
+            PropTypesExtractor.extractDefaultPropsObjectLiteralNode(key);
+        stubFunction(keyValue);
+        if (defaultPropsNode != null) {
+          stubObjectLitValues(defaultPropsNode);
+          keyValue.getLastChild().addChildToBack(
+              IR.returnNode(defaultPropsNode.detach()));
+        }
+      } else if (keyName.equals("getInitialState") && keyValue.isFunction()) {
+        stubGetInitialState(keyValue);
+      } else if (keyValue.isFunction()) {
+        stubFunction(keyValue);
+      }
+    }
+  }
+
+  /**
+   * Fields that are declared in getInitialState are kept (without their
+   * values), since they're added to the component's interface.
+   */
+  private static void stubGetInitialState(Node funcNode) {
+    List<Node> fieldDeclarations = Lists.newArrayList();
+    for (Node statement : funcNode.getLastChild().children()) {
+      if (!statement.isExprResult() || !statement.getFirstChild().isAssign()) {
+        continue;
+      }
+      Node assign = statement.getFirstChild();
+      Node target = assign.getFirstChild();
+      JSDocInfo jsDocInfo = assign.getJSDocInfo();
+      if (jsDocInfo == null || !target.isGetProp() ||
+          !target.getFirstChild().isThis()) {
+        continue;
+      }
+      target.detach();
+      target.setJSDocInfo(jsDocInfo);
+      fieldDeclarations.add(IR.exprResult(target));
+    }
+    stubFunction(funcNode);
+    for (Node fieldDeclaration : fieldDeclarations) {
+      funcNode.getLastChild().addChildToBack(fieldDeclaration);
+    }
+  }
+
+  private static void stubFunction(Node funcNode) {
+    Node body = funcNode.getLastChild();
+    Node stubBody = IR.block();
+    stubBody.useSourceInfoFrom(body);
+    body.replaceWith(stubBody);
+  }
+
+  private static void stubObjectLitValues(Node objectLitNode) {
+    if (!objectLitNode.isObjectLit()) {
+      return;
+    }
+    for (Node key : objectLitNode.children()) {
+      if (key.hasOneChild()) {
+        key.getFirstChild().replaceWith(createStubValue());
+      }
+    }
+  }
+
+  /**
+   * A value of the form /** @type {?} *\/ (0) that replaces values whose
+   * types are declared elsewhere (or that are not needed).
+   */
+  private static Node createStubValue() {
+    JSDocInfoBuilder jsDocBuilder = new JSDocInfoBuilder(true);
+    jsDocBuilder.recordType(
+        new JSTypeExpression(new Node(Token.QMARK), "<ReactTypeSummary>"));
+    return IR.cast(IR.number(0), jsDocBuilder.build());
+  }
+
+  private static JSDocInfo createTypedefJsDoc(Node statement) {
+    JSDocInfoBuilder jsDocBuilder = new JSDocInfoBuilder(true);
+    jsDocBuilder.recordTypedef(new JSTypeExpression(
+        new Node(Token.QMARK), statement.getSourceFileName()));
+    return jsDocBuilder.build();
+  }
+
+  public static void main(String[] args) throws IOException {
+    String outputPath = null;
+    List<SourceFile> sources = Lists.newArrayList();
+    for (int i = 0; i < args.length; i++) {
+      if (args[i].equals("--output") && i + 1 < args.length) {
+        outputPath = args[++i];
+      } else {
+        sources.add(SourceFile.fromCode(
+            args[i], Files.asCharSource(new File(args[i]), Charsets.UTF_8).read()));
+      }
+    }
+    if (outputPath == null || sources.isEmpty()) {
+      System.err.println(
+          "Usage: ReactTypeSummaryGenerator --output library.i.js library/*.js");
+      System.exit(-1);
+    }
+    String summary = new ReactTypeSummaryGenerator(System.err).generate(sources);
+    if (summary == null) {
+      System.exit(-1);
+    }
+    File outputFile = new File(outputPath);
+    Files.createParentDirs(outputFile);
+    Files.asCharSink(outputFile, Charsets.UTF_8).write(summary);
+  }
+}
@@ -24,12 +24,12 @@ class StateTypeExtractor {
   static final DiagnosticType UNEXPECTED_STATE_TYPE = DiagnosticType.warning(
       "REACT_UNEXPECTED_STATE_TYPE",
       "{0} must use a record type as the return type for 'getInitialState'");
-  private static final JSTypeExpression REACT_STATE_TYPE = new JSTypeExpression(
-      IR.string("ReactState"), null);
-  private static final JSTypeExpression REACT_STATE_TYPE_BANG = new JSTypeExpression(
-      new Node(Token.BANG, IR.string("ReactState")), null);
-  private static final JSTypeExpression REACT_STATE_TYPE_QMARK = new JSTypeExpression(
-      new Node(Token.QMARK, IR.string("ReactState")), null);
+  private static final TypeExpressionKey REACT_STATE_TYPE =
+      TypeExpressionKey.of(IR.string("ReactState"));
+  private static final TypeExpressionKey REACT_STATE_TYPE_BANG =
+      TypeExpressionKey.of(new Node(Token.BANG, IR.string("ReactState")));
+  private static final TypeExpressionKey REACT_STATE_TYPE_QMARK =
+      TypeExpressionKey.of(new Node(Token.QMARK, IR.string("ReactState")));
 
   private final String sourceFileName;
   private final String stateTypeName;
@@ -54,7 +54,7 @@ class StateTypeExtractor {
 
     // ?ReactStateType is the default return type that we pick up from types.js,
     // also treat that as a missing return type.
-    if (stateType != null && stateType.equals(REACT_STATE_TYPE_QMARK)) {
+    if (stateType != null && REACT_STATE_TYPE_QMARK.equals(TypeExpressionKey.of(stateType))) {
       stateType = null;
     }
 
@@ -113,6 +113,7 @@ class StateTypeExtractor {
     stateNode = IR.exprResult(stateNode);
     stateNode.useSourceInfoIfMissingFromForTree(insertionPoint);
     insertionPoint.getParent().addChildAfter(stateNode, insertionPoint);
+    ChangeReports.reportNewCode(compiler, stateNode);
     insertionPoint = stateNode;
 
     // /**
@@ -146,6 +147,7 @@ class StateTypeExtractor {
     setStateNode = IR.exprResult(setStateNode);
     setStateNode.useSourceInfoIfMissingFromForTree(insertionPoint);
     insertionPoint.getParent().addChildAfter(setStateNode, insertionPoint);
+    ChangeReports.reportNewCode(compiler, setStateNode);
     insertionPoint = setStateNode;
   }
 
@@ -188,6 +190,7 @@ private Node insertTypedefNode(Node insertionPoint, boolean partial) {
 
     stateTypedefNode.useSourceInfoIfMissingFromForTree(insertionPoint);
     insertionPoint.getParent().addChildAfter(stateTypedefNode, insertionPoint);
+    ChangeReports.reportNewCode(compiler, stateTypedefNode);
     return stateTypedefNode;
   }
 
@@ -200,7 +203,7 @@ private Node insertTypedefNode(Node insertionPoint, boolean partial) {
         new Node(Token.QMARK, IR.string(stateTypeName)), sourceFileName);
     React.replaceComponentMethodParameterTypes(
         componentMethodKeys,
-        ImmutableMap.<JSTypeExpression, JSTypeExpression>builder()
+        ImmutableMap.<TypeExpressionKey, JSTypeExpression>builder()
             .put(REACT_STATE_TYPE, replacementType)
             .put(REACT_STATE_TYPE_BANG, replacementType)
             .put(REACT_STATE_TYPE_QMARK, replacementTypeQMark)
@@ -1,22 +1,28 @@
 package info.persistent.react.jscomp;
 
-import com.google.common.base.Joiner;
 import com.google.common.collect.Maps;
 import com.google.javascript.jscomp.CompilerInput;
 import com.google.javascript.jscomp.ModulePathAccessor;
 import com.google.javascript.jscomp.Scope;
-import com.google.javascript.jscomp.Var;
-import com.google.javascript.jscomp.deps.ModuleLoader.ModulePath;
 import com.google.javascript.rhino.Node;
 
-import java.util.Arrays;
 import java.util.Collection;
 import java.util.Map;
+import java.util.Set;
 import java.util.function.Function;
 
 class SymbolTable<V> {
   // Need insertion order iteration
   private final Map<String, V> map = Maps.newLinkedHashMap();
+  private final ModuleExportIndex moduleExportIndex;
+
+  /**
+   * @param moduleExportIndex used to resolve references to symbols that are
+   *     imported from other modules.
+   */
+  public SymbolTable(ModuleExportIndex moduleExportIndex) {
+    this.moduleExportIndex = moduleExportIndex;
+  }
 
   public Collection<V> values() {
     return map.values();
@@ -34,6 +40,18 @@ class SymbolTable<V> {
     return map.get(name);
   }
 
+  public void putByName(String name, V value) {
+    map.put(name, value);
+  }
+
+  public V removeByName(String name) {
+    return map.remove(name);
+  }
+
+  public Set<String> names() {
+    return map.keySet();
+  }
+
   public V remove(Scope scope, Node nameNode) {
     return map.remove(readKey(scope, nameNode));
   }
@@ -63,68 +81,14 @@ class SymbolTable<V> {
   private static String writeKey(String name, CompilerInput exportInput) {
     String key = name;
     if (exportInput != null) {
-        key = ModulePathAccessor.getInputModulePath(exportInput).toString() + "|" + key;
+        key = ModuleExportIndex.getKey(
+            ModulePathAccessor.getInputModulePath(exportInput).toString(), key);
     }
     return key;
   }
 
-  private static String readKey(Scope scope, Node nameNode) {
-    String name = nameNode.getQualifiedName();
-    if (!scope.isModuleScope()) {
-      return name;
-    }
-    String[] namePieces = name.split("\\.");
-    Var nameVar = scope.getVar(namePieces[0]);
-    if (nameVar == null) {
-      return name;
-    }
-    ModulePath modulePath = ModulePathAccessor.getVarInputModulePath(nameVar);
-    if (namePieces.length == 1) {
-      if (nameVar.getNode().getParent().isImportSpec()) {
-        // Even if we're not doing a property access the name could be something
-        // that's exported. We handle both patterns:
-        // import {Name} from "./file.js";
-        // import {Name as Name2} from "./file.js";
-        // The AST looks like this:
-        // IMPORT
-        //    EMPTY
-        //    IMPORT_SPECS
-        //        IMPORT_SPEC
-        //            NAME # exported name
-        //            NAME # nameVar node
-        //    STRING # module identifier
-        Node moduleIdentifier = nameVar.getNode().getGrandparent().getNext();
-        ModulePath importPath = modulePath.resolveModuleAsPath(moduleIdentifier.getString());
-        return readKey(importPath, nameVar.getNode().getPrevious().getString());
-      }
-      return readKey(modulePath, name);
-    }
-
-    if (nameVar.getNode().isImportStar()) {
-        // Handle importing an entire module too, with this pattern:
-        // import * as file1 from "./file1.js"
-        // The AST looks like this:
-        // IMPORT
-        //    EMPTY
-        //    IMPORT_STAR # nameVar node
-        //    STRING # module identifier
-        Node moduleIdentifier = nameVar.getNode().getNext();
-        ModulePath importPath = modulePath.resolveModuleAsPath(moduleIdentifier.getString());
-        String nameRemainder = Joiner.on(".").join(Arrays.copyOfRange(namePieces, 1, namePieces.length));
-        return readKey(importPath, nameRemainder);
-    }
-    return name;
-  }
-
-  private static String readKey(ModulePath modulePath, String name) {
-      String key = modulePath.toString();
-      // Undo ModuleResolver.resolveModuleAsPath adding .js extensions to .jsx
-      // files.
-      if (key.endsWith(".jsx.js")) {
-          key = key.substring(0, key.length() - 3);
-      }
-      key += "|" + name;
-      return key;
+  private String readKey(Scope scope, Node nameNode) {
+    return moduleExportIndex.getName(scope, nameNode);
   }
 
   public void debugDump(String label) {
@@ -0,0 +1,61 @@
+package info.persistent.react.jscomp;
+
+import com.google.javascript.rhino.JSTypeExpression;
+import com.google.javascript.rhino.Node;
+
+/**
+ * A canonical form of a JSDoc type expression that can be used as a map key
+ * (JSTypeExpression implements equals but not hashCode). Two expressions have
+ * equal keys if their type ASTs are the same, regardless of where they came
+ * from.
+ */
+final class TypeExpressionKey {
+  private final String canonicalForm;
+
+  private TypeExpressionKey(String canonicalForm) {
+    this.canonicalForm = canonicalForm;
+  }
+
+  static TypeExpressionKey of(JSTypeExpression typeExpression) {
+    return of(typeExpression.getRoot());
+  }
+
+  static TypeExpressionKey of(Node typeNode) {
+    StringBuilder canonicalForm = new StringBuilder();
+    appendCanonicalForm(typeNode, canonicalForm);
+    return new TypeExpressionKey(canonicalForm.toString());
+  }
+
+  /**
+   * Appends the canonical form of the type AST, e.g. BANG(STRING:5:Array(...))
+   * (strings are length-prefixed, since record keys may have any character).
+   */
+  static void appendCanonicalForm(Node typeNode, StringBuilder out) {
+    out.append(typeNode.getToken());
+    if (typeNode.isString() || typeNode.isStringKey()) {
+      String string = typeNode.getString();
+      out.append(':').append(string.length()).append(':').append(string);
+    }
+    if (typeNode.hasChildren()) {
+      out.append('(');
+      for (Node child : typeNode.children()) {
+        appendCanonicalForm(child, out);
+        out.append(',');
+      }
+      out.append(')');
+    }
+  }
+
+  @Override public boolean equals(Object other) {
+    return other instanceof TypeExpressionKey &&
+        canonicalForm.equals(((TypeExpressionKey) other).canonicalForm);
+  }
+
+  @Override public int hashCode() {
+    return canonicalForm.hashCode();
+  }
+
+  @Override public String toString() {
+    return canonicalForm;
+  }
+}
@@ -0,0 +1,187 @@
+package info.persistent.react.jscomp;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Splitter;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.google.javascript.jscomp.NodeUtil;
+import com.google.javascript.rhino.JSDocInfo;
+import com.google.javascript.rhino.Node;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Trims the types.js externs down to the declarations that a program uses.
+ *
+ * A property declaration (e.g. ReactDOMProps.prototype.onClick) is kept if
+ * its property name (onClick) is used somewhere in the program, since the
+ * externs are what prevent those properties from being renamed (and what make
+ * them count as defined). The declarations of the names that it is qualified
+ * by (ReactDOMProps) are then kept too. A root declaration is otherwise kept
+ * only if the program references it. Field names of record types in the
+ * program's JSDoc (e.g. {{onClick: function()}}) count as used property names,
+ * and declarations whose JSDoc has record types with used field names (e.g.
+ * {{children: ?}}) are kept for the same reason as properties. Type names
+ * that are referenced by the JSDoc of kept declarations are in turn treated
+ * as used, until a fixed point is reached.
+ *
+ * Since the externs only affect the type checking and renaming of names that
+ * the program uses, dropping the rest does not change the output.
+ */
+class TypesSlicer {
+  private static final Splitter DOT_SPLITTER = Splitter.on('.');
+  private static final Joiner DOT_JOINER = Joiner.on('.');
+
+  private final Set<String> usedNames = Sets.newHashSet();
+  private final Set<String> usedPropertyNames = Sets.newHashSet();
+  // Qualified names that need to stay declared, since properties on them are.
+  private final Set<String> keptQualifiedNames = Sets.newHashSet();
+
+  /**
+   * Records the names, property names and type names used by source code.
+   */
+  void addSourceUsages(Node root) {
+    addUsages(root, true);
+  }
+
+  /**
+   * Records the names and type names used by externs. Property names are not
+   * recorded, since externs declaring a property do not make it a use of the
+   * React type's property of the same name.
+   */
+  void addExternsUsages(Node root) {
+    addUsages(root, false);
+  }
+
+  private void addUsages(Node root, boolean includePropertyNames) {
+    NodeUtil.visitPreOrder(root, n -> {
+      if (n.isName()) {
+        usedNames.add(n.getString());
+      } else if (includePropertyNames &&
+          (n.isGetProp() || n.isStringKey() || n.isMemberFunctionDef() ||
+              n.isGetterDef() || n.isSetterDef())) {
+        usedPropertyNames.add(
+            n.isGetProp() ? n.getLastChild().getString() : n.getString());
+      }
+      addJsDocUsages(n.getJSDocInfo(), includePropertyNames);
+    });
+  }
+
+  private void addJsDocUsages(
+      JSDocInfo jsDocInfo, boolean includeRecordFieldNames) {
+    if (jsDocInfo == null) {
+      return;
+    }
+    for (Node typeNode : jsDocInfo.getTypeNodes()) {
+      addTypeNameUsages(typeNode, includeRecordFieldNames);
+    }
+  }
+
+  private void addTypeNameUsages(
+      Node typeNode, boolean includeRecordFieldNames) {
+    if (typeNode.isString()) {
+      List<String> segments = DOT_SPLITTER.splitToList(typeNode.getString());
+      usedNames.add(segments.get(0));
+      usedPropertyNames.addAll(segments.subList(1, segments.size()));
+    } else if (typeNode.isStringKey() && includeRecordFieldNames) {
+      usedPropertyNames.add(typeNode.getString());
+    }
+    for (Node child : typeNode.children()) {
+      addTypeNameUsages(child, includeRecordFieldNames);
+    }
+  }
+
+  /**
+   * Removes the top-level declarations of the (parsed) types.js script that
+   * are not needed given the usages recorded so far.
+   */
+  void slice(Node typesScript) {
+    List<Node> pending = Lists.newArrayList();
+    for (Node statement : typesScript.children()) {
+      if (getDeclaredName(statement) != null) {
+        pending.add(statement);
+      }
+    }
+    boolean changed = true;
+    while (changed) {
+      changed = false;
+      for (int i = 0; i < pending.size(); i++) {
+        Node statement = pending.get(i);
+        List<String> segments =
+            DOT_SPLITTER.splitToList(getDeclaredName(statement));
+        JSDocInfo jsDocInfo =
+            NodeUtil.getBestJSDocInfo(getDeclarationNode(statement));
+        if (isNeeded(segments) || hasUsedRecordField(jsDocInfo)) {
+          pending.remove(i--);
+          changed = true;
+          usedNames.add(segments.get(0));
+          for (int j = 1; j < segments.size(); j++) {
+            keptQualifiedNames.add(DOT_JOINER.join(segments.subList(0, j)));
+          }
+          // Like other externs, kept declarations don't use the fields of
+          // their record types.
+          addJsDocUsages(jsDocInfo, false);
+        }
+      }
+    }
+    for (Node statement : pending) {
+      statement.detach();
+    }
+  }
+
+  private boolean isNeeded(List<String> segments) {
+    if (keptQualifiedNames.contains(DOT_JOINER.join(segments))) {
+      return true;
+    }
+    if (segments.size() == 1) {
+      return usedNames.contains(segments.get(0));
+    }
+    return usedPropertyNames.contains(segments.get(segments.size() - 1));
+  }
+
+  private boolean hasUsedRecordField(JSDocInfo jsDocInfo) {
+    if (jsDocInfo == null) {
+      return false;
+    }
+    for (Node typeNode : jsDocInfo.getTypeNodes()) {
+      if (NodeUtil.has(
+          typeNode,
+          n -> n.isStringKey() && usedPropertyNames.contains(n.getString()),
+          n -> true)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static Node getDeclarationNode(Node statement) {
+    if (statement.isExprResult()) {
+      return statement.getFirstChild();
+    }
+    return statement.isFunction() ? statement : statement.getFirstChild();
+  }
+
+  /**
+   * Returns the qualified name declared by a types.js statement, or null for
+   * statements that are not declarations (and are thus always kept).
+   */
+  static String getDeclaredName(Node statement) {
+    if (statement.isFunction()) {
+      return statement.getFirstChild().getString();
+    }
+    if (statement.isVar() && statement.hasOneChild()) {
+      return statement.getFirstChild().getString();
+    }
+    if (statement.isExprResult()) {
+      Node expression = statement.getFirstChild();
+      if (expression.isAssign()) {
+        expression = expression.getFirstChild();
+      }
+      if (expression.isQualifiedName()) {
+        return expression.getQualifiedName();
+      }
+    }
+    return null;
+  }
+}
@@ -0,0 +1,232 @@
+
+// Additions in React 16 (up to 16.14), appended to types.js.
+
+/**
+ * @param {*} error
+ * @param {{componentStack: string}} info
+ * @return {void}
+ */
+ReactComponent.prototype.componentDidCatch = function(error, info) {};
+
+/**
+ * @param {ReactProps} prevProps
+ * @param {ReactState} prevState
+ * @return {*}
+ */
+ReactComponent.prototype.getSnapshotBeforeUpdate = function(prevProps, prevState) {};
+
+/**
+ * @return {void}
+ */
+ReactComponent.prototype.UNSAFE_componentWillMount = function() {};
+
+/**
+ * @param {ReactProps} nextProps
+ * @return {void}
+ */
+ReactComponent.prototype.UNSAFE_componentWillReceiveProps = function(nextProps) {};
+
+/**
+ * @param {ReactProps} nextProps
+ * @param {ReactState} nextState
+ * @return {void}
+ */
+ReactComponent.prototype.UNSAFE_componentWillUpdate = function(nextProps, nextState) {};
+
+/** @override */
+ReactModule.prototype.Component.prototype.componentDidCatch = function(error, info) {};
+
+/** @override */
+ReactModule.prototype.Component.prototype.getSnapshotBeforeUpdate = function(prevProps, prevState) {};
+
+/** @override */
+ReactModule.prototype.Component.prototype.UNSAFE_componentWillMount = function() {};
+
+/** @override */
+ReactModule.prototype.Component.prototype.UNSAFE_componentWillReceiveProps = function(nextProps) {};
+
+/** @override */
+ReactModule.prototype.Component.prototype.UNSAFE_componentWillUpdate = function(nextProps, nextState) {};
+
+/**
+ * @param {ReactProps} nextProps
+ * @param {ReactState} prevState
+ * @return {Object}
+ */
+ReactModule.prototype.Component.getDerivedStateFromProps = function(nextProps, prevState) {};
+
+/**
+ * @param {*} error
+ * @return {Object}
+ */
+ReactModule.prototype.Component.getDerivedStateFromError = function(error) {};
+
+/**
+ * @type {!ReactContext<?>|undefined}
+ */
+ReactModule.prototype.Component.contextType;
+
+/**
+ * @record
+ * @template T
+ */
+function ReactRef() {}
+
+/** @type {T} */
+ReactRef.prototype.current;
+
+/**
+ * @interface
+ * @template T
+ */
+function ReactContext() {}
+
+/** @type {?} */
+ReactContext.prototype.Provider;
+
+/** @type {?} */
+ReactContext.prototype.Consumer;
+
+/** @type {?} */
+ReactModule.prototype.Fragment;
+
+/** @type {?} */
+ReactModule.prototype.StrictMode;
+
+/** @type {?} */
+ReactModule.prototype.Suspense;
+
+/** @type {?} */
+ReactModule.prototype.Profiler;
+
+/**
+ * @return {!ReactRef<?>}
+ */
+ReactModule.prototype.createRef = function() {};
+
+/**
+ * @param {function(?, ?): ReactChild} render
+ * @return {?}
+ */
+ReactModule.prototype.forwardRef = function(render) {};
+
+/**
+ * @param {T} defaultValue
+ * @return {!ReactContext<T>}
+ * @template T
+ */
+ReactModule.prototype.createContext = function(defaultValue) {};
+
+/**
+ * @param {?} type
+ * @param {function(?, ?): boolean=} areEqual
+ * @return {?}
+ */
+ReactModule.prototype.memo = function(type, areEqual) {};
+
+/**
+ * @param {function(): !Promise<?>} factory
+ * @return {?}
+ */
+ReactModule.prototype.lazy = function(factory) {};
+
+/**
+ * @param {T|function(): T} initialState
+ * @return {!Array<?>}
+ * @template T
+ */
+ReactModule.prototype.useState = function(initialState) {};
+
+/**
+ * @param {function(?, ?): ?} reducer
+ * @param {?} initialArg
+ * @param {function(?): ?=} init
+ * @return {!Array<?>}
+ */
+ReactModule.prototype.useReducer = function(reducer, initialArg, init) {};
+
+/**
+ * @param {function(): (undefined|function(): void)} effect
+ * @param {!Array<?>=} deps
+ * @return {void}
+ */
+ReactModule.prototype.useEffect = function(effect, deps) {};
+
+/**
+ * @param {function(): (undefined|function(): void)} effect
+ * @param {!Array<?>=} deps
+ * @return {void}
+ */
+ReactModule.prototype.useLayoutEffect = function(effect, deps) {};
+
+/**
+ * @param {!ReactContext<T>} context
+ * @return {T}
+ * @template T
+ */
+ReactModule.prototype.useContext = function(context) {};
+
+/**
+ * @param {T} callback
+ * @param {!Array<?>} deps
+ * @return {T}
+ * @template T
+ */
+ReactModule.prototype.useCallback = function(callback, deps) {};
+
+/**
+ * @param {function(): T} factory
+ * @param {!Array<?>} deps
+ * @return {T}
+ * @template T
+ */
+ReactModule.prototype.useMemo = function(factory, deps) {};
+
+/**
+ * @param {T=} initialValue
+ * @return {!ReactRef<T>}
+ * @template T
+ */
+ReactModule.prototype.useRef = function(initialValue) {};
+
+/**
+ * @param {?} ref
+ * @param {function(): ?} create
+ * @param {!Array<?>=} deps
+ * @return {void}
+ */
+ReactModule.prototype.useImperativeHandle = function(ref, create, deps) {};
+
+/**
+ * @param {*} value
+ * @return {void}
+ */
+ReactModule.prototype.useDebugValue = function(value) {};
+
+/**
+ * @param {ReactChild} children
+ * @param {Element} container
+ * @return {!ReactElement}
+ */
+ReactDOMModule.prototype.createPortal = function(children, container) {};
+
+/**
+ * @param {ReactElement.<T>} element
+ * @param {Element} container
+ * @param {function()=} callback
+ * @return {T}
+ * @template T
+ */
+ReactDOMModule.prototype.hydrate = function(element, container, callback) {};
+
+/**
+ * @param {ReactElement} element
+ * @return {?}
+ */
+ReactDOMServerModule.prototype.renderToNodeStream = function(element) {};
+
+/**
+ * @param {ReactElement} element
+ * @return {?}
+ */
+ReactDOMServerModule.prototype.renderToStaticNodeStream = function(element) {};
@@ -0,0 +1,79 @@
+
+// Additions in React 18, appended to types.js (after types-react16.js).
+
+/**
+ * @interface
+ */
+function ReactDOMRoot() {}
+
+/**
+ * @param {ReactChild} children
+ * @return {void}
+ */
+ReactDOMRoot.prototype.render = function(children) {};
+
+/**
+ * @return {void}
+ */
+ReactDOMRoot.prototype.unmount = function() {};
+
+/**
+ * @param {Element} container
+ * @param {Object=} options
+ * @return {!ReactDOMRoot}
+ */
+ReactDOMModule.prototype.createRoot = function(container, options) {};
+
+/**
+ * @param {Element} container
+ * @param {ReactChild} initialChildren
+ * @param {Object=} options
+ * @return {!ReactDOMRoot}
+ */
+ReactDOMModule.prototype.hydrateRoot = function(container, initialChildren, options) {};
+
+/**
+ * @param {function(): T} callback
+ * @return {T}
+ * @template T
+ */
+ReactDOMModule.prototype.flushSync = function(callback) {};
+
+/**
+ * @param {function(): void} scope
+ * @return {void}
+ */
+ReactModule.prototype.startTransition = function(scope) {};
+
+/**
+ * @return {string}
+ */
+ReactModule.prototype.useId = function() {};
+
+/**
+ * @return {!Array<?>}
+ */
+ReactModule.prototype.useTransition = function() {};
+
+/**
+ * @param {T} value
+ * @return {T}
+ * @template T
+ */
+ReactModule.prototype.useDeferredValue = function(value) {};
+
+/**
+ * @param {function(function(): void): function(): void} subscribe
+ * @param {function(): T} getSnapshot
+ * @param {function(): T=} getServerSnapshot
+ * @return {T}
+ * @template T
+ */
+ReactModule.prototype.useSyncExternalStore = function(subscribe, getSnapshot, getServerSnapshot) {};
+
+/**
+ * @param {function(): (undefined|function(): void)} effect
+ * @param {!Array<?>=} deps
+ * @return {void}
+ */
+ReactModule.prototype.useInsertionEffect = function(effect, deps) {};
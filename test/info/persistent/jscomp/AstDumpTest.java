@@ -0,0 +1,131 @@
+package info.persistent.jscomp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Files;
+import com.google.javascript.rhino.Token;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringWriter;
+import java.util.List;
+
+/**
+ * Test {@link AstDump}.
+ */
+public class AstDumpTest {
+  @Rule public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  @Test public void testDumpFilesInOrder() throws Exception {
+    ImmutableList.Builder<String> paths = ImmutableList.builder();
+    StringBuilder expected = new StringBuilder();
+    for (int i = 0; i < 20; i++) {
+      paths.add(writeFile("file" + i + ".js", "var x" + i + ";"));
+      String name = "x" + i;
+      // Each dump is preceded by its path, since there are several.
+      expected.append(new File(tempFolder.getRoot(), "file" + i + ".js"))
+          .append(":\n");
+      expected.append("        NAME " + name + " 1 [length: " + name.length() +
+          "] [source_file: ")
+          .append(new File(tempFolder.getRoot(), "file" + i + ".js"))
+          .append("]\n");
+    }
+    StringWriter out = new StringWriter();
+    ByteArrayOutputStream err = new ByteArrayOutputStream();
+    assertTrue(createAstDump(4).dumpFiles(
+        paths.build(), null, out, new PrintStream(err)));
+    assertEquals(expected.toString(), out.toString());
+    assertEquals("", err.toString());
+  }
+
+  @Test public void testDumpFilesToOutputDir() throws Exception {
+    String path = writeFile("a.js", "var a;");
+    File outputDir = tempFolder.newFolder("out");
+    StringWriter out = new StringWriter();
+    assertTrue(createAstDump(2).dumpFiles(
+        ImmutableList.of(path), outputDir, out, System.err));
+    assertEquals("", out.toString());
+    // The dump has the path relative to the base directory.
+    File dump = new File(outputDir, "a.js.ast");
+    assertEquals(
+        "        NAME a 1 [length: 1] [source_file: " + path + "]\n",
+        Files.asCharSource(dump, Charsets.UTF_8).read());
+  }
+
+  @Test public void testInvalidOutputPaths() throws Exception {
+    String root = tempFolder.getRoot().getPath();
+    writeFile("sub/a.js", "var a;");
+    writeFile("b.js", "var b;");
+    File outputDir = tempFolder.newFolder("out");
+    AstDump astDump = new AstDump(
+        createDumpOptions(), 2, new File(tempFolder.getRoot(), "sub"));
+
+    // Files outside of the base directory would be dumped outside of the
+    // output directory...
+    ByteArrayOutputStream err = new ByteArrayOutputStream();
+    assertFalse(astDump.dumpFiles(
+        ImmutableList.of(root + "/sub/a.js", root + "/sub/../b.js"),
+        outputDir, new StringWriter(), new PrintStream(err)));
+    assertTrue(err.toString(), err.toString().contains(
+        root + "/sub/../b.js: not in the base directory"));
+    // ...and different paths to the same file would have the same dump.
+    err = new ByteArrayOutputStream();
+    assertFalse(astDump.dumpFiles(
+        ImmutableList.of(root + "/sub/a.js", root + "/sub/./a.js"),
+        outputDir, new StringWriter(), new PrintStream(err)));
+    assertTrue(err.toString(), err.toString().contains(
+        root + "/sub/./a.js: the same file as " + root + "/sub/a.js"));
+    // Nothing is dumped in either case.
+    assertEquals(0, outputDir.list().length);
+  }
+
+  @Test public void testParseErrors() throws Exception {
+    String validPath = writeFile("valid.js", "var a;");
+    String invalidPath = writeFile("invalid.js", "var = ;");
+    StringWriter out = new StringWriter();
+    ByteArrayOutputStream err = new ByteArrayOutputStream();
+    assertFalse(createAstDump(2).dumpFiles(
+        ImmutableList.of(invalidPath, validPath), null, out,
+        new PrintStream(err)));
+    assertTrue(err.toString(), err.toString().contains("invalid.js:1"));
+    assertTrue(out.toString(), out.toString().contains("NAME a"));
+  }
+
+  @Test public void testExpandGlobs() throws IOException {
+    String aPath = writeFile("a.js", "");
+    String bPath = writeFile("sub/b.js", "");
+    writeFile("sub/c.txt", "");
+    String root = tempFolder.getRoot().getPath();
+    List<String> paths = AstDump.expandGlobs(
+        ImmutableList.of(root + "/**.js", root + "/sub/c.txt"));
+    assertEquals(ImmutableList.of(aPath, bPath, root + "/sub/c.txt"), paths);
+  }
+
+  private AstDump createAstDump(int threadCount) {
+    return new AstDump(
+        createDumpOptions(), threadCount, tempFolder.getRoot());
+  }
+
+  private static Debug.DumpOptions createDumpOptions() {
+    Debug.DumpOptions options = new Debug.DumpOptions();
+    options.tokens.add(Token.NAME);
+    return options;
+  }
+
+  private String writeFile(String name, String contents) throws IOException {
+    File file = new File(tempFolder.getRoot(), name);
+    Files.createParentDirs(file);
+    Files.asCharSink(file, Charsets.UTF_8).write(contents);
+    return file.getPath();
+  }
+}
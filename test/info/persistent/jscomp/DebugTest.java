@@ -0,0 +1,205 @@
+package info.persistent.jscomp;
+
+import static org.junit.Assert.assertEquals;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Strings;
+import com.google.gson.JsonObject;
+import com.google.gson.Gson;
+import com.google.javascript.jscomp.Compiler;
+import com.google.javascript.jscomp.CompilerOptions;
+import com.google.javascript.jscomp.SourceFile;
+import com.google.javascript.rhino.IR;
+import com.google.javascript.rhino.JSDocInfoBuilder;
+import com.google.javascript.rhino.Node;
+import com.google.javascript.rhino.Token;
+
+import org.junit.Test;
+
+import java.io.IOException;
+
+/**
+ * Test {@link Debug}.
+ */
+public class DebugTest {
+  @Test public void testToStringTreeVerbose() {
+    Node script = createScript();
+    assertEquals(
+        Joiner.on('\n').join(
+            "SCRIPT 1 [length: 15] [source_file: test.js] " +
+                "[input_id: InputId: test.js] [feature_set: []]",
+            "    VAR 1 [length: 12] [source_file: test.js]",
+            "        NAME x 1 [length: 7] [source_file: test.js]",
+            "            NUMBER 1.0 2 [length: 1] [source_file: test.js]",
+            "    EXPR_RESULT 3 [length: 2] [source_file: test.js]",
+            "        NAME x 3 [length: 1] [source_file: test.js]",
+            ""),
+        Debug.toStringTreeVerbose(script));
+  }
+
+  @Test public void testFilters() throws IOException {
+    Node script = createScript();
+    Debug.DumpOptions options = new Debug.DumpOptions();
+    options.tokens.add(Token.NAME);
+    assertEquals(
+        Joiner.on('\n').join(
+            "        NAME x 1 [length: 7] [source_file: test.js]",
+            "        NAME x 3 [length: 1] [source_file: test.js]",
+            ""),
+        dump(script, options));
+
+    options = new Debug.DumpOptions();
+    options.startLine = 2;
+    options.endLine = 3;
+    assertEquals(
+        Joiner.on('\n').join(
+            "            NUMBER 1.0 2 [length: 1] [source_file: test.js]",
+            "    EXPR_RESULT 3 [length: 2] [source_file: test.js]",
+            "        NAME x 3 [length: 1] [source_file: test.js]",
+            ""),
+        dump(script, options));
+
+    // Ranges can start and end within lines.
+    options = new Debug.DumpOptions();
+    options.startLine = 1;
+    options.startColumn = 4;
+    options.endLine = 3;
+    options.endColumn = 0;
+    assertEquals(
+        Joiner.on('\n').join(
+            "        NAME x 1 [length: 7] [source_file: test.js]",
+            "            NUMBER 1.0 2 [length: 1] [source_file: test.js]",
+            "    EXPR_RESULT 3 [length: 2] [source_file: test.js]",
+            "        NAME x 3 [length: 1] [source_file: test.js]",
+            ""),
+        dump(script, options));
+  }
+
+  @Test public void testJson() throws IOException {
+    Debug.DumpOptions options = new Debug.DumpOptions();
+    options.format = Debug.DumpFormat.JSON;
+    options.tokens.add(Token.NAME);
+    options.tokens.add(Token.NUMBER);
+    String[] lines = dump(createScript(), options).split("\n");
+    assertEquals(3, lines.length);
+    JsonObject name = new Gson().fromJson(lines[0], JsonObject.class);
+    assertEquals(2, name.get("depth").getAsInt());
+    assertEquals("NAME", name.get("token").getAsString());
+    assertEquals("x", name.get("string").getAsString());
+    assertEquals("test.js", name.get("sourceFile").getAsString());
+    assertEquals(1, name.get("line").getAsInt());
+    assertEquals(7, name.get("length").getAsInt());
+    JsonObject number = new Gson().fromJson(lines[1], JsonObject.class);
+    assertEquals(3, number.get("depth").getAsInt());
+    assertEquals(1.0, number.get("number").getAsDouble(), 0);
+  }
+
+  @Test public void testJsonNonFiniteNumbers() throws IOException {
+    Compiler compiler = new Compiler();
+    compiler.initOptions(new CompilerOptions());
+    Node script = compiler.parse(SourceFile.fromCode("test.js", "1e400;"));
+    Debug.DumpOptions options = new Debug.DumpOptions();
+    options.format = Debug.DumpFormat.JSON;
+    options.tokens.add(Token.NUMBER);
+    JsonObject number = new Gson().fromJson(
+        dump(script, options).trim(), JsonObject.class);
+    assertEquals("Infinity", number.get("number").getAsString());
+  }
+
+  @Test public void testDeeplyNestedTree() throws IOException {
+    // Deep enough that a recursive traversal would overflow the stack.
+    int depth = 100000;
+    Node root = IR.name("x");
+    for (int i = 0; i < depth; i++) {
+      root = IR.not(root);
+    }
+    Debug.DumpOptions options = new Debug.DumpOptions();
+    options.tokens.add(Token.NAME);
+    assertEquals(
+        Strings.repeat("    ", depth) + "NAME x\n",
+        dump(root, options));
+  }
+
+  @Test public void testDumpChanges() throws IOException {
+    Compiler compiler = new Compiler();
+    compiler.initOptions(new CompilerOptions());
+    Node script = compiler.parse(SourceFile.fromCode("test.js",
+        "var x = 1;\nvar y = 2;\nvar z = 3;\nx;\nfunction f() {}"));
+    Debug.AstSnapshot snapshot = Debug.snapshot(script);
+    Node xVar = script.getFirstChild();
+    Node yVar = xVar.getNext();
+    Node zVar = yVar.getNext();
+    Node xUse = zVar.getNext();
+    Node f = xUse.getNext();
+    // Replaced (the new node is inserted where the old one was).
+    xVar.getFirstChild().getFirstChild().replaceWith(IR.number(4));
+    // Detached.
+    yVar.detach();
+    // Inserted (with its child).
+    script.addChildToBack(IR.exprResult(IR.name("w")));
+    // Moved.
+    zVar.detach();
+    f.getLastChild().addChildToFront(zVar);
+    // Annotated.
+    JSDocInfoBuilder builder = new JSDocInfoBuilder(false);
+    builder.recordConstancy();
+    xUse.setJSDocInfo(builder.build());
+
+    StringBuilder out = new StringBuilder();
+    snapshot.dumpChanges(compiler, out);
+    assertEquals(
+        Joiner.on('\n').join(
+            "replaced NUMBER test.js:1:8",
+            "- 1",
+            "+ 4",
+            "annotated EXPR_RESULT test.js:4:0",
+            "+ /** @const */",
+            "moved VAR test.js:3:0",
+            "+ var z = 3;",
+            "inserted EXPR_RESULT test.js:1:0",
+            "+ w;",
+            "detached VAR test.js:2:0",
+            "- var y = 2;",
+            ""),
+        out.toString());
+  }
+
+  @Test public void testDumpChangesReorderedSiblings() throws IOException {
+    Compiler compiler = new Compiler();
+    compiler.initOptions(new CompilerOptions());
+    Node script = compiler.parse(SourceFile.fromCode("test.js",
+        "function f() {\n  a;\n  b;\n  c;\n}\nd;"));
+    Debug.AstSnapshot snapshot = Debug.snapshot(script);
+    StringBuilder out = new StringBuilder();
+    snapshot.dumpChanges(compiler, out);
+    assertEquals("", out.toString());
+
+    Node body = script.getFirstChild().getLastChild();
+    Node a = body.getFirstChild();
+    Node b = a.getNext();
+    // Swaps the first two statements.
+    b.detach();
+    body.addChildToFront(b);
+
+    snapshot.dumpChanges(compiler, out);
+    assertEquals(
+        Joiner.on('\n').join(
+            "moved EXPR_RESULT test.js:2:2",
+            "+ a;",
+            ""),
+        out.toString());
+  }
+
+  private static Node createScript() {
+    Compiler compiler = new Compiler();
+    compiler.initOptions(new CompilerOptions());
+    return compiler.parse(SourceFile.fromCode("test.js", "var x =\n  1;\nx;"));
+  }
+
+  private static String dump(Node root, Debug.DumpOptions options)
+      throws IOException {
+    StringBuilder out = new StringBuilder();
+    Debug.dump(root, options, out);
+    return out.toString();
+  }
+}
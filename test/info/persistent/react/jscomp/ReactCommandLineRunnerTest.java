@@ -0,0 +1,248 @@
+package info.persistent.react.jscomp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.Files;
+import com.google.javascript.jscomp.Result;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Test {@link ReactCommandLineRunner}.
+ */
+public class ReactCommandLineRunnerTest {
+  @Rule public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  @Test public void testChecksOnly() throws IOException {
+    File input = tempFolder.newFile("input.js");
+    Files.asCharSink(input, Charsets.UTF_8).write(
+        "var Comp = React.createClass({" +
+          "propTypes: {aNumber: React.PropTypes.number.isRequired}," +
+          "render: function() {return null;}" +
+        "});\n" +
+        "window.comp = React.createElement(Comp, {aNumber: 'notANumber'});");
+
+    RunResult fullResult = run(
+        "--compilation_level=ADVANCED", "--js", input.getPath());
+    RunResult checksOnlyResult = run(
+        "--compilation_level=ADVANCED", "--checks_only", "--js", input.getPath());
+
+    // The same (React-specific) diagnostics are reported...
+    assertTrue(checksOnlyResult.err,
+        checksOnlyResult.err.contains("[REACT_PROP_TYPES_VALIDATION_MISMATCH]"));
+    assertEquals(fullResult.err, checksOnlyResult.err);
+    assertEquals(fullResult.exitCode, checksOnlyResult.exitCode);
+    // ...but no code is generated.
+    assertTrue(fullResult.out, fullResult.out.contains("createElement"));
+    assertFalse(checksOnlyResult.out, checksOnlyResult.out.contains("createElement"));
+  }
+
+  @Test public void testCheckSessionRechecks() throws IOException {
+    File comp = tempFolder.newFile("comp.js");
+    Files.asCharSink(comp, Charsets.UTF_8).write(
+        "var Comp = React.createClass({" +
+          "propTypes: {aNumber: React.PropTypes.number.isRequired}," +
+          "render: function() {return null;}" +
+        "});");
+    File input = tempFolder.newFile("input.js");
+    Files.asCharSink(input, Charsets.UTF_8).write(
+        "window.comp = React.createElement(Comp, {aNumber: 'notANumber'});");
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    ByteArrayOutputStream err = new ByteArrayOutputStream();
+    ReactCommandLineRunner.CheckSession session =
+        new ReactCommandLineRunner.CheckSession(
+            new String[] {"--compilation_level=ADVANCED",
+                "--js", comp.getPath(), "--js", input.getPath()},
+            new PrintStream(out), new PrintStream(err));
+
+    Result result = session.check();
+    assertEquals(1, result.warnings.size());
+    assertTrue(err.toString(),
+        err.toString().contains("[REACT_PROP_TYPES_VALIDATION_MISMATCH]"));
+    assertEquals(2, session.getInputNames().size());
+
+    // Fixing the error is picked up by the next check...
+    err.reset();
+    Files.asCharSink(input, Charsets.UTF_8).write(
+        "window.comp = React.createElement(Comp, {aNumber: 42});");
+    result = session.check();
+    assertTrue(result.success);
+    assertEquals(0, result.warnings.size());
+    assertEquals("", err.toString());
+
+    // ...as are new errors, including parse errors (which are reported by
+    // every check, since unparseable inputs are not cached).
+    for (int i = 0; i < 2; i++) {
+      err.reset();
+      Files.asCharSink(input, Charsets.UTF_8).write("window.comp = ;");
+      assertFalse(session.check().success);
+      assertTrue(err.toString(), err.toString().contains("Parse error"));
+    }
+
+    // Unsaved contents are used instead of the file's (which doesn't parse).
+    session.setUnsavedCode(ImmutableMap.of(input.getPath(),
+        "window.comp = React.createElement(Comp, {aNumber: 'unsaved'});"));
+    result = session.check();
+    assertTrue(result.success);
+    assertEquals(1, result.warnings.size());
+    assertEquals(input.getPath(), result.warnings.get(0).sourceName);
+
+    // No output is written when checking.
+    assertEquals("", out.toString());
+  }
+
+  @Test public void testBuildCache() throws IOException {
+    File input = tempFolder.newFile("input.js");
+    Files.asCharSink(input, Charsets.UTF_8).write(
+        "var Comp = React.createClass({" +
+          "propTypes: {aNumber: React.PropTypes.number.isRequired}," +
+          "render: function() {return null;}" +
+        "});\n" +
+        "window.comp = React.createElement(Comp, {aNumber: 'notANumber'});");
+    File output = new File(tempFolder.getRoot(), "out/output.js");
+    File sourceMap = new File(tempFolder.getRoot(), "out/output.js.map");
+    String[] args = {
+        "--compilation_level=ADVANCED",
+        "--js", input.getPath(),
+        "--js_output_file", output.getPath(),
+        "--create_source_map", sourceMap.getPath()};
+    File cacheDir = new File(tempFolder.getRoot(), "cache");
+    BuildCache buildCache = new BuildCache(cacheDir, 1024 * 1024);
+
+    PrintStream out = new PrintStream(new ByteArrayOutputStream());
+    ByteArrayOutputStream err = new ByteArrayOutputStream();
+    assertEquals(0, buildCache.run(args, out, new PrintStream(err)));
+    assertEquals(0, buildCache.getHitCount());
+    String firstErr = err.toString();
+    assertTrue(firstErr,
+        firstErr.contains("[REACT_PROP_TYPES_VALIDATION_MISMATCH]"));
+    String firstOutput = Files.asCharSource(output, Charsets.UTF_8).read();
+    String firstSourceMap =
+        Files.asCharSource(sourceMap, Charsets.UTF_8).read();
+
+    // The same build is replayed, including its outputs and diagnostics.
+    output.delete();
+    sourceMap.delete();
+    err.reset();
+    assertEquals(0, buildCache.run(args, out, new PrintStream(err)));
+    assertEquals(1, buildCache.getHitCount());
+    assertEquals(firstErr, err.toString());
+    assertEquals(firstOutput, Files.asCharSource(output, Charsets.UTF_8).read());
+    assertEquals(
+        firstSourceMap, Files.asCharSource(sourceMap, Charsets.UTF_8).read());
+
+    // Changed inputs are compiled again.
+    Files.asCharSink(input, Charsets.UTF_8).write(
+        "var Comp = React.createClass({" +
+          "propTypes: {aNumber: React.PropTypes.number.isRequired}," +
+          "render: function() {return null;}" +
+        "});\n" +
+        "window.comp = React.createElement(Comp, {aNumber: 42});");
+    err.reset();
+    assertEquals(0, buildCache.run(args, out, new PrintStream(err)));
+    assertEquals(1, buildCache.getHitCount());
+    assertEquals("", err.toString());
+    assertNotEquals(
+        firstOutput, Files.asCharSource(output, Charsets.UTF_8).read());
+    assertEquals(2, cacheDir.listFiles().length);
+  }
+
+  @Test public void testBuildCacheEviction() throws IOException {
+    File input = tempFolder.newFile("input.js");
+    File output = new File(tempFolder.getRoot(), "output.js");
+    String[] args = {
+        "--compilation_level=ADVANCED",
+        "--js", input.getPath(),
+        "--js_output_file", output.getPath()};
+    File cacheDir = new File(tempFolder.getRoot(), "cache");
+    PrintStream out = new PrintStream(new ByteArrayOutputStream());
+    PrintStream err = new PrintStream(new ByteArrayOutputStream());
+
+    // Entries of the same size, the first one used least recently...
+    File[] entryDirs = new File[3];
+    for (int i = 0; i < 2; i++) {
+      Files.asCharSink(input, Charsets.UTF_8).write("window.a" + i + " = 1;");
+      new BuildCache(cacheDir, 1024 * 1024).run(args, out, err);
+      entryDirs[i] = getNewEntryDir(cacheDir, entryDirs);
+      entryDirs[i].setLastModified(System.currentTimeMillis() - 10000 + i);
+    }
+    long entrySize = 0;
+    for (File file : entryDirs[0].listFiles()) {
+      entrySize += file.length();
+    }
+    // ...until it's replayed.
+    Files.asCharSink(input, Charsets.UTF_8).write("window.a0 = 1;");
+    BuildCache buildCache = new BuildCache(cacheDir, 2 * entrySize);
+    buildCache.run(args, out, err);
+    assertEquals(1, buildCache.getHitCount());
+
+    // A temporary directory that a killed build left behind, and one of a
+    // build that is still running.
+    File staleTempDir = new File(cacheDir, "stale.tmp");
+    staleTempDir.mkdir();
+    staleTempDir.setLastModified(
+        System.currentTimeMillis() - TimeUnit.DAYS.toMillis(1));
+    File activeTempDir = new File(cacheDir, "active.tmp");
+    activeTempDir.mkdir();
+
+    // A new entry only leaves room for one more, the most recently used one.
+    Files.asCharSink(input, Charsets.UTF_8).write("window.a2 = 1;");
+    buildCache.run(args, out, err);
+    entryDirs[2] = getNewEntryDir(cacheDir, entryDirs);
+    assertTrue(entryDirs[0].isDirectory());
+    assertFalse(entryDirs[1].exists());
+    assertTrue(entryDirs[2].isDirectory());
+    assertFalse(staleTempDir.exists());
+    assertTrue(activeTempDir.isDirectory());
+  }
+
+  private static File getNewEntryDir(File cacheDir, File[] knownEntryDirs) {
+    File newEntryDir = null;
+    for (File entryDir : cacheDir.listFiles()) {
+      if (!entryDir.getName().endsWith(".tmp") &&
+          !Arrays.asList(knownEntryDirs).contains(entryDir)) {
+        assertEquals(null, newEntryDir);
+        newEntryDir = entryDir;
+      }
+    }
+    assertNotEquals(null, newEntryDir);
+    return newEntryDir;
+  }
+
+  private static class RunResult {
+    int exitCode = -1;
+    String out;
+    String err;
+  }
+
+  private static RunResult run(String... args) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    ByteArrayOutputStream err = new ByteArrayOutputStream();
+    ReactCommandLineRunner runner = new ReactCommandLineRunner(
+        args, new PrintStream(out), new PrintStream(err));
+    RunResult result = new RunResult();
+    runner.setExitCodeReceiver(exitCode -> {
+      result.exitCode = exitCode;
+      return null;
+    });
+    runner.run();
+    result.out = out.toString();
+    result.err = err.toString();
+    return result;
+  }
+}
@@ -0,0 +1,176 @@
+package info.persistent.react.jscomp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Files;
+import com.google.gson.Gson;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.URL;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Test {@link ReactCompileServer}.
+ */
+public class ReactCompileServerTest {
+  @Rule public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private static final String COMP_JS =
+      "var Comp = React.createClass({" +
+        "propTypes: {aNumber: React.PropTypes.number.isRequired}," +
+        "render: function() {return null;}" +
+      "});";
+
+  private ReactCompileServer server;
+  private int port;
+
+  @Before public void setUp() throws IOException {
+    server = new ReactCompileServer(tempFolder.getRoot(), 2);
+    port = server.start(0);
+  }
+
+  @After public void tearDown() {
+    server.stop();
+  }
+
+  @Test public void testCheckAndCompile() throws Exception {
+    Files.asCharSink(tempFolder.newFile("comp.js"), Charsets.UTF_8)
+        .write(COMP_JS);
+
+    // Checks report the React-specific diagnostics, without output.
+    ReactCompileServer.Response checkResponse = post("/check", request(
+        "window.comp = React.createElement(Comp, {aNumber: 'notANumber'});"));
+    assertEquals(1, checkResponse.warningCount);
+    assertTrue(checkResponse.diagnostics,
+        checkResponse.diagnostics.contains(
+            "[REACT_PROP_TYPES_VALIDATION_MISMATCH]"));
+    assertNull(checkResponse.output);
+
+    // Compiles return the output.
+    ReactCompileServer.Response compileResponse = post("/compile", request(
+        "window.comp = React.createElement(Comp, {aNumber: 42});"));
+    assertTrue(compileResponse.success);
+    assertEquals("", compileResponse.diagnostics);
+    assertTrue(compileResponse.output,
+        compileResponse.output.contains("createElement"));
+
+    ReactCompileServer.Response errorResponse =
+        post("/compile", request("window.comp = ;"));
+    assertFalse(errorResponse.success);
+    assertEquals(1, errorResponse.errorCount);
+    assertNull(errorResponse.output);
+  }
+
+  @Test public void testConcurrentRequests() throws Exception {
+    Files.asCharSink(tempFolder.newFile("comp.js"), Charsets.UTF_8)
+        .write(COMP_JS);
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<ReactCompileServer.Response>> futures =
+          Lists.newArrayList();
+      for (int i = 0; i < 8; i++) {
+        String aNumber = i % 2 == 0 ? "" + i : "'" + i + "'";
+        futures.add(executor.submit(() -> post("/check", request(
+            "window.comp = React.createElement(Comp, {aNumber: " +
+                aNumber + "});"))));
+      }
+      // Each request gets its own diagnostics.
+      for (int i = 0; i < futures.size(); i++) {
+        ReactCompileServer.Response response = futures.get(i).get();
+        assertEquals(response.diagnostics,
+            i % 2 == 0 ? 0 : 1, response.warningCount);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test public void testBadRequests() throws Exception {
+    assertEquals(400, postForStatus("/check", "{"));
+    assertEquals(400, postForStatus("/check",
+        "{\"compilationLevel\": \"NOT_A_LEVEL\"}"));
+    assertEquals(400, postForStatus("/check",
+        "{\"sources\": [{\"path\": \"missing.js\"}]}"));
+  }
+
+  @Test public void testPathsOutsideOfBaseDir() throws Exception {
+    Files.asCharSink(tempFolder.newFile("secret.js"), Charsets.UTF_8)
+        .write("var secret;");
+    ReactCompileServer subdirServer =
+        new ReactCompileServer(tempFolder.newFolder("base"), 1);
+    // The other requests go to the server that can read secret.js.
+    port = subdirServer.start(0);
+    try {
+      assertEquals(400, postForStatus("/check",
+          "{\"sources\": [{\"path\": \"../secret.js\"}]}"));
+    } finally {
+      subdirServer.stop();
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNoThreads() throws Exception {
+    new ReactCompileServer(tempFolder.getRoot(), 0);
+  }
+
+  private static ReactCompileServer.Request request(String code) {
+    ReactCompileServer.Input comp = new ReactCompileServer.Input();
+    comp.path = "comp.js";
+    ReactCompileServer.Input input = new ReactCompileServer.Input();
+    input.path = "input.js";
+    input.code = code;
+    ReactCompileServer.Request request = new ReactCompileServer.Request();
+    request.sources = ImmutableList.of(comp, input);
+    return request;
+  }
+
+  private ReactCompileServer.Response post(
+      String path, ReactCompileServer.Request request) throws IOException {
+    HttpURLConnection connection = open(path, new Gson().toJson(request));
+    assertEquals(200, connection.getResponseCode());
+    try (InputStream in = connection.getInputStream()) {
+      return new Gson().fromJson(
+          new String(ByteStreams.toByteArray(in), Charsets.UTF_8),
+          ReactCompileServer.Response.class);
+    }
+  }
+
+  private int postForStatus(String path, String body) throws IOException {
+    return open(path, body).getResponseCode();
+  }
+
+  private HttpURLConnection open(String path, String body) throws IOException {
+    HttpURLConnection connection = (HttpURLConnection)
+        new URL(
+            "http",
+            InetAddress.getLoopbackAddress().getHostAddress(),
+            port,
+            path).openConnection();
+    connection.setRequestMethod("POST");
+    connection.setDoOutput(true);
+    try (OutputStream out = connection.getOutputStream()) {
+      out.write(body.getBytes(Charsets.UTF_8));
+    }
+    return connection;
+  }
+}
@@ -24,13 +24,16 @@ import com.google.javascript.jscomp.CustomPassExecutionTime;
 import com.google.javascript.jscomp.DiagnosticGroups;
 import com.google.javascript.jscomp.DiagnosticType;
 import com.google.javascript.jscomp.JSError;
+import com.google.javascript.jscomp.JsAst;
 import com.google.javascript.jscomp.Result;
 import com.google.javascript.jscomp.SourceFile;
 import com.google.javascript.jscomp.StrictWarningsGuard;
 import com.google.javascript.jscomp.WarningLevel;
+import com.google.javascript.rhino.Node;
 
 import org.junit.Test;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.PrintStream;
 import java.util.List;
@@ -343,6 +346,68 @@ public class ReactCompilerPassTest {
       "JSC_TYPE_MISMATCH");
   }
 
+  @Test public void testEs6ModulesReexports() {
+    String compJs =
+      "export class Comp extends React.Component {\n" +
+        "/* @override */" +
+        "render() {return null;}\n" +
+      "}\n" +
+      "Comp.propTypes = {aNumber: React.PropTypes.number.isRequired};" +
+      FILE_SEPARATOR;
+    // Components are resolved through re-exports...
+    testError(
+      compJs +
+      "export {Comp} from './file1.js';" +
+      FILE_SEPARATOR +
+      "import {Comp} from './file2.js';\n" +
+      "React.createElement(Comp, {aNumber: 'notANumber'});",
+      "JSC_TYPE_MISMATCH");
+    // ...including renamed ones and namespace imports...
+    testError(
+      compJs +
+      "export {Comp as RenamedComp} from './file1.js';" +
+      FILE_SEPARATOR +
+      "import * as file2 from './file2.js';\n" +
+      "React.createElement(file2.RenamedComp, {aNumber: 'notANumber'});",
+      "JSC_TYPE_MISMATCH");
+    // ...re-exported imports...
+    testError(
+      compJs +
+      "import {Comp} from './file1.js';\n" +
+      "export {Comp};" +
+      FILE_SEPARATOR +
+      "import {Comp} from './file2.js';\n" +
+      "React.createElement(Comp, {aNumber: 'notANumber'});",
+      "JSC_TYPE_MISMATCH");
+    // ...and chains of barrel modules.
+    testError(
+      compJs +
+      "export * from './file1.js';" +
+      FILE_SEPARATOR +
+      "export * from './file2.js';" +
+      FILE_SEPARATOR +
+      "import {Comp} from './file3.js';\n" +
+      "React.createElement(Comp, {aNumber: 'notANumber'});",
+      "JSC_TYPE_MISMATCH");
+    testNoError(
+      compJs +
+      "export * from './file1.js';" +
+      FILE_SEPARATOR +
+      "export * from './file2.js';" +
+      FILE_SEPARATOR +
+      "import {Comp} from './file3.js';\n" +
+      "React.createElement(Comp, {aNumber: 1});");
+    // Default exports are resolved too.
+    testError(
+      compJs +
+      "import {Comp} from './file1.js';\n" +
+      "export default Comp;" +
+      FILE_SEPARATOR +
+      "import DefaultComp from './file2.js';\n" +
+      "React.createElement(DefaultComp, {aNumber: 'notANumber'});",
+      "JSC_TYPE_MISMATCH");
+  }
+
   @Test public void testEs6ModulesMixins() {
     // Mixin references across modules work
     testNoError(
@@ -708,7 +773,7 @@ public class ReactCompilerPassTest {
             "$chainedMixinMethod$:function(){window.$foo$=456}" +
           "}]," +
           "$mixinMethod$:function(){window.$foo$=123}," +
-          "$PropsValidator$:function($props$jscomp$5$$){return $props$jscomp$5$$}" +
+          "$PropsValidator$:function($props$jscomp$3$$){return $props$jscomp$3$$}" +
         "}]," +
         "render:function(){" +
           "this.$mixinMethod$();" +
@@ -716,7 +781,7 @@ public class ReactCompilerPassTest {
           "return React.createElement(\"div\")" +
         "}" +
       "});" +
-      "$Comp$$.$PropsValidator$=function($props$jscomp$6$$){return $props$jscomp$6$$};" +
+      "$Comp$$.$PropsValidator$=function($props$jscomp$4$$){return $props$jscomp$4$$};" +
       "var $inst$$=ReactDOM.render(React.createElement($Comp$$),document.body);" +
       "$inst$$.$mixinMethod$();" +
       "$inst$$.$chainedMixinMethod$();");
@@ -746,7 +811,7 @@ public class ReactCompilerPassTest {
         "}," +
         "$mixinAbstractMethod$:function(){return 123}" +
       "});" +
-      "$Comp$$.$PropsValidator$=function($props$jscomp$5$$){return $props$jscomp$5$$};" +
+      "$Comp$$.$PropsValidator$=function($props$jscomp$3$$){return $props$jscomp$3$$};" +
       "ReactDOM.render(React.createElement($Comp$$),document.body);");
     testError(
       "var Mixin = React.createMixin({" +
@@ -2379,8 +2444,8 @@ public class ReactCompilerPassTest {
           "return React.createElement(\"div\",null,this.props.$aProp$)" +
         "}" +
       "});" +
-      "$Comp$$.$PropsValidator$=function($props$jscomp$5$$){" +
-        "return $props$jscomp$5$$" +
+      "$Comp$$.$PropsValidator$=function($props$jscomp$3$$){" +
+        "return $props$jscomp$3$$" +
       "};" +
       "ReactDOM.render(React.createElement($Comp$$),document.body);");
     // isRequired variant
@@ -3451,8 +3516,8 @@ public class ReactCompilerPassTest {
       "};\n" +
       "React.createElement(Comp, {numFunc: x => x/10});",
       "class $Comp$$ extends React.Component{" +
-        "componentWillReceiveProps($nextProps$jscomp$6$$){" +
-          "$nextProps$jscomp$6$$.$numFunc$(42)" +
+        "componentWillReceiveProps($nextProps$jscomp$2$$){" +
+          "$nextProps$jscomp$2$$.$numFunc$(42)" +
         "}" +
         "render(){" +
           "return null" +
@@ -3523,6 +3588,56 @@ public class ReactCompilerPassTest {
       "React.createElement(Comp, " + props + ");");
   }
 
+  @Test public void testPropTypesSharedShape() {
+    // Components with the same props share their types and validators (the
+    // order of the props doesn't matter).
+    String inputJs =
+      "var Comp1 = React.createClass({" +
+        "propTypes: {" +
+          "aNumber: React.PropTypes.number.isRequired," +
+          "aString: React.PropTypes.string" +
+        "}," +
+        "getDefaultProps: function() {return {aString: 'a'};}," +
+        "render: function() {return null;}" +
+      "});\n" +
+      "var Comp2 = React.createClass({" +
+        "propTypes: {" +
+          "aString: React.PropTypes.string," +
+          "aNumber: React.PropTypes.number.isRequired" +
+        "}," +
+        "getDefaultProps: function() {return {aString: 'b'};}," +
+        "render: function() {return null;}" +
+      "});\n" +
+      "React.createElement(Comp1, {aNumber: 1});" +
+      "React.createElement(Comp2, {aNumber: 2, aString: 'c'});";
+    testNoError(inputJs);
+    String output = ReactCompilerPass.lastOutputForTests;
+    assertTrue(output, output.contains(
+        "/** @typedef {!Comp1$Props} */ Comp2.Props;"));
+    assertTrue(output, output.contains(
+        "/** @typedef {!Comp1$CreateProps} */ Comp2.CreateProps;"));
+    assertTrue(output, output.contains(
+        "/** @const */ Comp2.PropsValidator = Comp1.PropsValidator;"));
+    assertFalse(output, output.contains("Comp2$Props = function"));
+    // Errors are still reported against (the validator alias of) the component
+    // that was created.
+    testError(
+        inputJs + "React.createElement(Comp2, {aNumber: 'notANumber'});",
+        "JSC_TYPE_MISMATCH");
+    // Different props (or required-ness) are not shared.
+    testNoError(
+      "var Comp1 = React.createClass({" +
+        "propTypes: {aNumber: React.PropTypes.number.isRequired}," +
+        "render: function() {return null;}" +
+      "});\n" +
+      "var Comp2 = React.createClass({" +
+        "propTypes: {aNumber: React.PropTypes.number}," +
+        "render: function() {return null;}" +
+      "});\n");
+    output = ReactCompilerPass.lastOutputForTests;
+    assertTrue(output, output.contains("Comp2$Props = function"));
+  }
+
   @Test public void testChildren() {
     // Non-comprehensive test that the React.Children namespace functions exist.
     test(
@@ -3545,11 +3660,11 @@ public class ReactCompilerPassTest {
             "\"div\",null,React.Children.only(this.props.children))" +
         "}" +
       "});" +
-      "$Comp$$.$PropsValidator$=function($props$jscomp$5$$){" +
-        "return $props$jscomp$5$$" +
+      "$Comp$$.$PropsValidator$=function($props$jscomp$3$$){" +
+        "return $props$jscomp$3$$" +
       "};" +
-      "$Comp$$.$ChildrenValidator$=function($children$jscomp$7$$){" +
-        "return $children$jscomp$7$$" +
+      "$Comp$$.$ChildrenValidator$=function($children$jscomp$2$$){" +
+        "return $children$jscomp$2$$" +
       "};" +
       "ReactDOM.render(React.createElement($Comp$$),document.body);");
   }
@@ -3716,6 +3831,148 @@ public class ReactCompilerPassTest {
       "ReactDOMServer.renderToStaticMarkup(React.createElement($Comp$$));");
   }
 
+  @Test public void testHotSwapKeepsUnusedTypes() {
+    // Scripts that are hot-swapped in may use more of the React API than the
+    // program did, so by default none of the types are pruned...
+    assertTrue(compileAndHotSwap(new ReactCompilerPass.Options())
+        .contains("ReactDOMServerModule.prototype.renderToString"));
+    // ...unlike for whole-program compilations that opt into it.
+    ReactCompilerPass.Options pruneOptions = new ReactCompilerPass.Options();
+    pruneOptions.pruneUnusedTypes = true;
+    assertFalse(compileAndHotSwap(pruneOptions)
+        .contains("ReactDOMServerModule.prototype.renderToString"));
+  }
+
+  @Test public void testApiVersions() {
+    // All versions have valid externs.
+    for (React.ApiVersion apiVersion : React.ApiVersion.values()) {
+      ReactCompilerPass.Options passOptions = new ReactCompilerPass.Options();
+      passOptions.propTypesTypeChecking = true;
+      passOptions.pruneUnusedTypes = false;
+      passOptions.apiVersion = apiVersion;
+      test(
+        "class Comp extends React.Component {}" +
+        "ReactDOMServer.renderToString(React.createElement(Comp));",
+        "class $Comp$$ extends React.Component{}" +
+        "ReactDOMServer.renderToString(React.createElement($Comp$$));",
+        passOptions,
+        null);
+    }
+
+    ReactCompilerPass.Options react16Options = new ReactCompilerPass.Options();
+    react16Options.propTypesTypeChecking = true;
+    react16Options.apiVersion = React.ApiVersion.REACT_16;
+    // React.createClass is no longer available.
+    test(
+      "var Comp = React.createClass({render: function() {return null;}});",
+      "",
+      react16Options,
+      DiagnosticType.error("REACT_CREATE_TYPE_NOT_AVAILABLE", ""));
+    test(
+      "var Mixin = React.createMixin({method: function() {}});",
+      "",
+      react16Options,
+      DiagnosticType.error("REACT_CREATE_TYPE_NOT_AVAILABLE", ""));
+    // But newer APIs and lifecycle methods are.
+    test(
+      "class Comp extends React.Component {" +
+        "constructor(props) {" +
+          "super(props);" +
+          "this.divRef = React.createRef();" +
+        "}" +
+        "getSnapshotBeforeUpdate(prevProps, prevState) {" +
+          "return this.divRef.current;" +
+        "}" +
+        "render() {" +
+          "return React.createElement(\"div\", {" +
+            "ref: this.divRef, onPointerDown: sideEffect" +
+          "});" +
+        "}" +
+      "}" +
+      "ReactDOM.render(React.createElement(Comp), document.body);",
+      "class $Comp$$ extends React.Component{" +
+        "constructor($props$jscomp$5$$){" +
+          "super($props$jscomp$5$$);" +
+          "this.$divRef$=React.createRef()" +
+        "}" +
+        "getSnapshotBeforeUpdate(){" +
+          "return this.$divRef$.current" +
+        "}" +
+        "render(){" +
+          "return React.createElement(\"div\",{" +
+            "ref:this.$divRef$,onPointerDown:sideEffect" +
+          "})" +
+        "}" +
+      "}" +
+      "ReactDOM.render(React.createElement($Comp$$),document.body);",
+      react16Options,
+      null);
+
+    // Including the static lifecycle methods and contextType, which React
+    // reads from the class (so they're not collapsed or renamed).
+    test(
+      "var Ctx = React.createContext(0);" +
+      "class Comp extends React.Component {" +
+        "static getDerivedStateFromProps(props, state) {" +
+          "return null;" +
+        "}" +
+        "render() {" +
+          "return React.createElement(\"div\");" +
+        "}" +
+      "}" +
+      "Comp.contextType = Ctx;" +
+      "ReactDOM.render(React.createElement(Comp), document.body);",
+      "var $Ctx$$=React.createContext(0);" +
+      "class $Comp$$ extends React.Component{" +
+        "static getDerivedStateFromProps(){" +
+          "return null" +
+        "}" +
+        "render(){" +
+          "return React.createElement(\"div\")" +
+        "}" +
+      "}" +
+      "$Comp$$.contextType=$Ctx$$;" +
+      "ReactDOM.render(React.createElement($Comp$$),document.body);",
+      react16Options,
+      null);
+
+    // React 17 has the same API as React 16.
+    ReactCompilerPass.Options react17Options = new ReactCompilerPass.Options();
+    react17Options.propTypesTypeChecking = true;
+    react17Options.apiVersion = React.ApiVersion.REACT_17;
+    test(
+      "var Comp = React.createClass({render: function() {return null;}});",
+      "",
+      react17Options,
+      DiagnosticType.error("REACT_CREATE_TYPE_NOT_AVAILABLE", ""));
+    test(
+      "ReactDOM.render(" +
+        "React.createElement(\"div\", {onPointerDown: null})," +
+        "document.body);",
+      "ReactDOM.render(" +
+        "React.createElement(\"div\",{onPointerDown:null})," +
+        "document.body);",
+      react17Options,
+      null);
+    test(
+      "ReactDOM.createRoot(document.body).render(React.createElement(\"div\"));",
+      "",
+      react17Options,
+      DiagnosticType.error("JSC_INEXISTENT_PROPERTY", ""));
+
+    ReactCompilerPass.Options react18Options = new ReactCompilerPass.Options();
+    react18Options.propTypesTypeChecking = true;
+    react18Options.apiVersion = React.ApiVersion.REACT_18;
+    test(
+      "ReactDOM.createRoot(document.body).render(React.createElement(\"div\"));",
+      "ReactDOM.createRoot(document.body).render(React.createElement(\"div\"));",
+      react18Options,
+      null);
+    testError(
+      "ReactDOM.createRoot(document.body).render(React.createElement(\"div\"));",
+      "JSC_INEXISTENT_PROPERTY");
+  }
+
   /**
    * Tests static methods and properties.
    */
@@ -3795,6 +4052,190 @@ public class ReactCompilerPassTest {
       "JSC_TYPE_MISMATCH");
   }
 
+  @Test public void testConvertCreateClassToClasses() {
+    ReactCompilerPass.Options passOptions = new ReactCompilerPass.Options();
+    passOptions.propTypesTypeChecking = true;
+    passOptions.convertCreateClassToClasses = true;
+    // Only methods that are used as callbacks are bound.
+    test(
+      "var Comp = React.createClass({" +
+        "propTypes: {label: React.PropTypes.string.isRequired}," +
+        "/** @return {{count: number}} */" +
+        "getInitialState: function() {return {count: 0};}," +
+        "handleClick: function() {" +
+          "this.setState({count: this.state.count + 1});" +
+        "}," +
+        "renderLabel: function() {return this.props.label;}," +
+        "render: function() {" +
+          "return React.createElement(" +
+            "\"div\", {onClick: this.handleClick}, this.renderLabel());" +
+        "}" +
+      "});" +
+      "ReactDOM.render(React.createElement(Comp, {label: \"a\"}), document.body);",
+      "var $Comp$$=class extends React.Component{" +
+        "constructor($props$jscomp$5$$,$context$jscomp$4$$){" +
+          "super($props$jscomp$5$$,$context$jscomp$4$$);" +
+          "this.$handleClick$=this.$handleClick$.bind(this);" +
+          "this.state={count:0}" +
+        "}" +
+        "$handleClick$(){this.setState({count:this.state.count+1})}" +
+        "render(){" +
+          "return React.createElement(" +
+            "\"div\",{onClick:this.$handleClick$},this.props.$label$)" +
+        "}" +
+      "};" +
+      "$Comp$$.propTypes={$label$:React.PropTypes.string.isRequired};" +
+      "ReactDOM.render(React.createElement($Comp$$,{$label$:\"a\"}),document.body);",
+      passOptions,
+      null);
+    // Statics become static methods and properties, and thus can be collapsed.
+    test(
+      "var Comp = React.createClass({" +
+        "statics: {" +
+          "/** @const {number} */" +
+          "aNumber: 123,\n" +
+          "/** @return {number} */" +
+          "aFunction: function() {return 123}" +
+        "},\n" +
+        "render: function() {return React.createElement(\"div\");}" +
+      "});\n" +
+      "window.aNumber = Comp.aNumber;\n" +
+      "window.aFunctionResult = Comp.aFunction();\n",
+      "window.$aNumber$=123;" +
+      "window.$aFunctionResult$=123;",
+      passOptions,
+      null);
+    // Props are still type checked after the conversion.
+    test(
+      "var Comp = React.createClass({" +
+        "propTypes: {aNumber: React.PropTypes.number.isRequired}," +
+        "render: function() {return null;}" +
+      "});" +
+      "React.createElement(Comp, {aNumber: \"notANumber\"});",
+      "",
+      passOptions,
+      DiagnosticType.error("JSC_TYPE_MISMATCH", ""));
+    // Specs with mixins are left as React.createClass calls.
+    test(
+      "var Mixin = React.createMixin({" +
+        "mixinMethod: function() {window.foo = 123}" +
+      "});" +
+      "var Comp = React.createClass({" +
+        "mixins: [Mixin]," +
+        "render: function() {" +
+          "this.mixinMethod();" +
+          "return React.createElement(\"div\");" +
+        "}" +
+      "});" +
+      "ReactDOM.render(React.createElement(Comp), document.body);",
+      "var $Comp$$=React.createClass({" +
+        "mixins:[{$mixinMethod$:function(){window.$foo$=123}}]," +
+        "render:function(){" +
+          "this.$mixinMethod$();" +
+          "return React.createElement(\"div\")" +
+        "}" +
+      "});" +
+      "$Comp$$.$PropsValidator$=function($props$jscomp$5$$){return $props$jscomp$5$$};" +
+      "ReactDOM.render(React.createElement($Comp$$),document.body);",
+      passOptions,
+      null);
+    // As are specs whose getDefaultProps is not just a literal (classes ignore
+    // getDefaultProps methods, so the defaults would be lost).
+    test(
+      "var Comp = React.createClass({" +
+        "propTypes: {aString: React.PropTypes.string}," +
+        "getDefaultProps: function() {" +
+          "var aString = String(Math.random());" +
+          "return {aString: aString};" +
+        "}," +
+        "render: function() {return null;}" +
+      "});",
+      null,
+      passOptions,
+      null);
+    String output = ReactCompilerPass.lastOutputForTests;
+    assertTrue(output, output.contains("React.createClass"));
+    // Methods that are destructured from this are bound too.
+    test(
+      "var Comp = React.createClass({" +
+        "handleClick: function() {window.foo = 123;}," +
+        "render: function() {" +
+          "const {handleClick} = this;" +
+          "return React.createElement(\"div\", {onClick: handleClick});" +
+        "}" +
+      "});",
+      null,
+      passOptions,
+      null);
+    output = ReactCompilerPass.lastOutputForTests;
+    assertTrue(output, output.contains(
+        "this.handleClick = this.handleClick.bind(this);"));
+    // Unless it's not known which ones are.
+    test(
+      "var Comp = React.createClass({" +
+        "handleClick: function() {window.foo = 123;}," +
+        "render: function() {" +
+          "const {...methods} = this;" +
+          "window.methods = methods;" +
+          "return React.createElement(\"div\");" +
+        "}" +
+      "});",
+      null,
+      passOptions,
+      null);
+    output = ReactCompilerPass.lastOutputForTests;
+    assertTrue(output, output.contains("React.createClass"));
+    // Arrow functions share this with their method, so they can't use
+    // createClass-only methods either.
+    test(
+      "var Comp = React.createClass({" +
+        "componentDidMount: function() {" +
+          "window.check = () => {" +
+            "if (this.isMounted()) window.foo = 123;" +
+          "};" +
+        "}," +
+        "render: function() {return React.createElement(\"div\");}" +
+      "});",
+      null,
+      passOptions,
+      null);
+    output = ReactCompilerPass.lastOutputForTests;
+    assertTrue(output, output.contains("React.createClass"));
+    // Element accesses detach methods.
+    test(
+      "var Comp = React.createClass({" +
+        "handleClick: function() {window.foo = 123;}," +
+        // Element accesses on structs are type errors.
+        "/** @suppress {checkTypes} */" +
+        "render: function() {" +
+          "return React.createElement(" +
+            "\"div\", {onClick: this['handleClick']});" +
+        "}" +
+      "});",
+      null,
+      passOptions,
+      null);
+    output = ReactCompilerPass.lastOutputForTests;
+    assertTrue(output, output.contains(
+        "this.handleClick = this.handleClick.bind(this);"));
+    // Unless it's not known which ones they are.
+    test(
+      "var Comp = React.createClass({" +
+        "handleClick: function() {window.foo = 123;}," +
+        // Element accesses on structs are type errors.
+        "/** @suppress {checkTypes} */" +
+        "render: function() {" +
+          "return React.createElement(" +
+            "\"div\", {onClick: this[window.methodName]});" +
+        "}" +
+      "});",
+      null,
+      passOptions,
+      null);
+    output = ReactCompilerPass.lastOutputForTests;
+    assertTrue(output, output.contains("React.createClass"));
+  }
+
   @Test public void testPureRenderMixin() {
     test(
       "var Comp = React.createClass({" +
@@ -4158,6 +4599,445 @@ public class ReactCompilerPassTest {
       "ReactSupport.mixin(MixinB, MixinA);");
   }
 
+  @Test public void testMixinsFromEarlierScripts() {
+    // Mixins are summarized once their script is done, the summaries still
+    // have methods, statics and abstract methods (including of chained
+    // mixins).
+    String mixinsJs =
+      "var MixinA = React.createMixin({" +
+        "statics: {" +
+          "/** @param {number} n */" +
+          "staticMethod(n) {}" +
+        "}," +
+        "/** @param {string} s */" +
+        "methodA: function(s) {}" +
+      "});" +
+      "/** @return {number} */" +
+      "MixinA.abstractMethod;" +
+      FILE_SEPARATOR +
+      "var MixinB = React.createMixin({" +
+        "mixins: [MixinA]," +
+        "methodB: function() {}" +
+      "});" +
+      FILE_SEPARATOR;
+    testNoError(
+      mixinsJs +
+      "var Comp = React.createClass({" +
+        "mixins: [MixinB]," +
+        "abstractMethod: function() {return 42;}," +
+        "render: function() {" +
+          "this.methodA('a');" +
+          "this.methodB();" +
+          "return null;" +
+        "}" +
+      "});" +
+      "Comp.staticMethod(1);");
+    testError(
+      mixinsJs +
+      "var Comp = React.createClass({" +
+        "mixins: [MixinB]," +
+        "render: function() {return null;}" +
+      "});" +
+      "Comp.staticMethod('notANumber');",
+      "JSC_TYPE_MISMATCH");
+    testError(
+      mixinsJs +
+      "var Comp = React.createClass({" +
+        "mixins: [MixinB]," +
+        "render: function() {" +
+          "this.methodA(1);" +
+          "return null;" +
+        "}" +
+      "});",
+      "JSC_TYPE_MISMATCH");
+
+    String classMixinsJs =
+      REACT_SUPPORT_CODE +
+      "class MixinA extends React.Component {" +
+        "/** @param {number} n */" +
+        "static staticMethod(n) {}" +
+        "/** @param {string} s */" +
+        "methodA(s) {}" +
+      "}" +
+      "ReactSupport.declareMixin(MixinA);" +
+      FILE_SEPARATOR +
+      "class MixinB extends React.Component {" +
+        "methodB() {}" +
+      "}" +
+      "ReactSupport.declareMixin(MixinB);" +
+      "ReactSupport.mixin(MixinB, MixinA);" +
+      FILE_SEPARATOR;
+    testNoError(
+      classMixinsJs +
+      "class Comp extends React.Component {" +
+        "/** @override */" +
+        "render() {" +
+          "this.methodA('a');" +
+          "this.methodB();" +
+          "return null;" +
+        "}" +
+      "}" +
+      "ReactSupport.mixin(Comp, MixinB);" +
+      "Comp.staticMethod(1);");
+    testError(
+      classMixinsJs +
+      "class Comp extends React.Component {" +
+        "/** @override */" +
+        "render() {" +
+          "this.methodA(1);" +
+          "return null;" +
+        "}" +
+      "}" +
+      "ReactSupport.mixin(Comp, MixinB);",
+      "JSC_TYPE_MISMATCH");
+
+    // Abstract methods can only be declared in the mixin's own script, since
+    // its interface has already been summarized by the time later scripts are
+    // traversed.
+    testError(
+      mixinsJs +
+      "/** @return {string} */" +
+      "MixinB.otherAbstractMethod;",
+      "REACT_MIXIN_ABSTRACT_METHOD_OUTSIDE_OF_SCRIPT");
+    testError(
+      classMixinsJs +
+      "/** @return {string} */" +
+      "MixinA.otherAbstractMethod;",
+      "REACT_MIXIN_ABSTRACT_METHOD_OUTSIDE_OF_SCRIPT");
+  }
+
+  @Test public void testMixinsIncludedByMultipleTypes() {
+    // Mixins (and the ones they include) are flattened once, and then reused
+    // by the later types that include them.
+    String mixinsJs =
+      "var MixinA = React.createMixin({" +
+        "/** @param {string} s */" +
+        "methodA: function(s) {}" +
+      "});" +
+      "var MixinB = React.createMixin({" +
+        "mixins: [MixinA]," +
+        "methodB: function() {}" +
+      "});" +
+      FILE_SEPARATOR;
+    String compsJs =
+      "var Comp1 = React.createClass({" +
+        "mixins: [MixinB]," +
+        "render: function() {this.methodA('a'); return null;}" +
+      "});" +
+      "var Comp2 = React.createClass({" +
+        "mixins: [MixinB]," +
+        "render: function() {this.methodA(%s); return null;}" +
+      "});";
+    testNoError(mixinsJs + String.format(compsJs, "'b'"));
+    testError(mixinsJs + String.format(compsJs, "2"), "JSC_TYPE_MISMATCH");
+    // Unknown chained mixins are still reported.
+    testError(
+      "var MixinB = React.createMixin({" +
+        "mixins: [NonExistent]," +
+        "methodB: function() {}" +
+      "});" +
+      FILE_SEPARATOR +
+      String.format(compsJs, "'b'"),
+      ReactCompilerPass.MIXIN_UNKNOWN);
+
+    String classMixinsJs =
+      REACT_SUPPORT_CODE +
+      "class MixinA extends React.Component {" +
+        "/** @param {string} s */" +
+        "methodA(s) {}" +
+      "}" +
+      "ReactSupport.declareMixin(MixinA);" +
+      "class MixinB extends React.Component {" +
+        "methodB() {}" +
+      "}" +
+      "ReactSupport.declareMixin(MixinB);" +
+      "ReactSupport.mixin(MixinB, MixinA);" +
+      FILE_SEPARATOR;
+    String classCompsJs =
+      "class Comp1 extends React.Component {" +
+        "/** @override */" +
+        "render() {this.methodA('a'); return null;}" +
+      "}" +
+      "ReactSupport.mixin(Comp1, MixinB);" +
+      "class Comp2 extends React.Component {" +
+        "/** @override */" +
+        "render() {this.methodA(%s); return null;}" +
+      "}" +
+      "ReactSupport.mixin(Comp2, MixinB);";
+    testNoError(classMixinsJs + String.format(classCompsJs, "'b'"));
+    testError(
+        classMixinsJs + String.format(classCompsJs, "2"), "JSC_TYPE_MISMATCH");
+  }
+
+  @Test public void testDumpChanges() {
+    ByteArrayOutputStream changes = new ByteArrayOutputStream();
+    ReactCompilerPass.Options passOptions = new ReactCompilerPass.Options();
+    passOptions.propTypesTypeChecking = true;
+    passOptions.dumpChangesTo = new PrintStream(changes);
+    test(
+      "var Comp = React.createClass({" +
+        "render: function() {return React.createElement('div');}" +
+      "});" +
+      "ReactDOM.render(React.createElement(Comp), document.body);",
+      null,
+      passOptions,
+      null);
+    String changesOutput = changes.toString();
+    // Only the generated types and the inserted casts are printed, and code
+    // that casts are inserted around is elided.
+    assertTrue(changesOutput,
+        changesOutput.contains("inserted VAR /src/file1.js:1:0\n" +
+            "+ var CompInterface = /**\n"));
+    assertTrue(changesOutput,
+        changesOutput.contains("inserted CAST /src/file1.js:1:11\n" +
+            "+ /** @typedef {CompInterface} */ (React.createClass(...))\n"));
+    assertTrue(changesOutput,
+        changesOutput.contains("inserted CAST /src/file1.js:1:104\n" +
+            "+ /** @type {!ReactElement<!Comp>} */ " +
+            "(React.createElement(Comp))\n"));
+    assertFalse(changesOutput, changesOutput.contains("ReactDOM.render"));
+  }
+
+  @Test public void testCastElementsOnlyAtTypedSinks() {
+    ByteArrayOutputStream changes = new ByteArrayOutputStream();
+    ReactCompilerPass.Options passOptions = new ReactCompilerPass.Options();
+    passOptions.propTypesTypeChecking = true;
+    passOptions.castElementsOnlyAtTypedSinks = true;
+    passOptions.dumpChangesTo = new PrintStream(changes);
+    test(
+      "var Comp = React.createClass({" +
+        "propTypes: {aNumber: React.PropTypes.number.isRequired}," +
+        "render: function() {" +
+          "return React.createElement('div', null," +
+            "React.createElement('span', null, 'child')," +
+            "this.props.aNumber && React.createElement('hr'));" +
+        "}" +
+      "});" +
+      "var inst = ReactDOM.render(" +
+        "React.createElement(Comp, {aNumber: 1}), document.body);" +
+      "window.el = React.createElement(Comp, {aNumber: 2});",
+      null,
+      passOptions,
+      null);
+    String changesOutput = changes.toString();
+    // Returned, assigned and rendered elements are cast...
+    assertTrue(changesOutput, changesOutput.contains(
+        "+ /** @type {!ReactDOMElement} */ (React.createElement(\"div\""));
+    assertEquals(changesOutput, 2, countOccurrences(changesOutput,
+        "+ /** @type {!ReactElement<!Comp>} */ (React.createElement("));
+    // ...but their children aren't.
+    assertEquals(changesOutput, 1,
+        countOccurrences(changesOutput, "@type {!ReactDOMElement}"));
+    // Props are still checked for elements that aren't cast.
+    passOptions = new ReactCompilerPass.Options();
+    passOptions.propTypesTypeChecking = true;
+    passOptions.castElementsOnlyAtTypedSinks = true;
+    test(
+      "var Comp = React.createClass({" +
+        "propTypes: {aNumber: React.PropTypes.number.isRequired}," +
+        "render: function() {return null;}" +
+      "});" +
+      "window.el = React.createElement('div', null," +
+        "React.createElement(Comp, {aNumber: 'notANumber'}));",
+      "",
+      passOptions,
+      DiagnosticType.error("JSC_TYPE_MISMATCH", ""));
+  }
+
+  @Test public void testCheckLiteralPropsInPass() {
+    String compJs =
+      "var Comp = React.createClass({" +
+        "propTypes: {" +
+          "aNumber: React.PropTypes.number.isRequired," +
+          "aString: React.PropTypes.string," +
+          "aNode: React.PropTypes.node," +
+          "children: React.PropTypes.element.isRequired" +
+        "}," +
+        "render: function() {return null;}" +
+      "});";
+    ByteArrayOutputStream changes = new ByteArrayOutputStream();
+    ReactCompilerPass.Options passOptions = new ReactCompilerPass.Options();
+    passOptions.propTypesTypeChecking = true;
+    passOptions.checkLiteralPropsInPass = true;
+    passOptions.dumpChangesTo = new PrintStream(changes);
+    test(
+      compJs +
+      "window.el = React.createElement(" +
+        "Comp, {aNumber: -1, aString: 'a', aNode: 'b', key: 'c'}, " +
+        "React.createElement('div'));",
+      null,
+      passOptions,
+      null);
+    // Literal props and children are checked without validators.
+    String changesOutput = changes.toString();
+    assertFalse(changesOutput, changesOutput.contains("Comp.PropsValidator("));
+    assertFalse(changesOutput, changesOutput.contains("Comp.ChildrenValidator("));
+
+    testLiteralPropsError(
+      compJs +
+      "window.el = React.createElement(" +
+        "Comp, {aNumber: 'notANumber'}, React.createElement('div'));",
+      PropTypesExtractor.PROP_TYPES_VALIDATION_MISMATCH);
+    testLiteralPropsError(
+      compJs +
+      "window.el = React.createElement(" +
+        "Comp, {aString: 'a'}, React.createElement('div'));",
+      PropTypesExtractor.PROP_TYPES_VALIDATION_MISMATCH);
+    testLiteralPropsError(
+      compJs +
+      "window.el = React.createElement(" +
+        "Comp, null, React.createElement('div'));",
+      PropTypesExtractor.PROP_TYPES_VALIDATION_MISMATCH);
+    // Props that need type inference are still validated by the type checker.
+    testLiteralPropsError(
+      compJs +
+      "var s = 'notANumber';" +
+      "window.el = React.createElement(" +
+        "Comp, {aNumber: s}, React.createElement('div'));",
+      DiagnosticType.error("JSC_TYPE_MISMATCH", ""));
+    testLiteralPropsError(
+      compJs +
+      "window.el = React.createElement(Comp, {aNumber: 1}, 'notAnElement');",
+      DiagnosticType.error("JSC_TYPE_MISMATCH", ""));
+  }
+
+  private static void testLiteralPropsError(
+      String inputJs, DiagnosticType expectedError) {
+    ReactCompilerPass.Options passOptions = new ReactCompilerPass.Options();
+    passOptions.propTypesTypeChecking = true;
+    passOptions.checkLiteralPropsInPass = true;
+    test(inputJs, "", passOptions, expectedError);
+  }
+
+  @Test public void testInsertValidatorsOnDemand() {
+    String compsJs =
+      "var Unused = React.createClass({" +
+        "propTypes: {aNumber: React.PropTypes.number.isRequired}," +
+        "render: function() {return null;}" +
+      "});" +
+      // Has the same props as Unused, so it aliases its validators.
+      "var Used = React.createClass({" +
+        "propTypes: {aNumber: React.PropTypes.number.isRequired}," +
+        "render: function() {return null;}" +
+      "});" +
+      "class UnusedClass extends React.Component {" +
+        "render() {return null;}" +
+      "}" +
+      "UnusedClass.propTypes = {aString: React.PropTypes.string};";
+    ByteArrayOutputStream changes = new ByteArrayOutputStream();
+    ReactCompilerPass.Options passOptions = new ReactCompilerPass.Options();
+    passOptions.propTypesTypeChecking = true;
+    passOptions.insertValidatorsOnDemand = true;
+    passOptions.dumpChangesTo = new PrintStream(changes);
+    test(
+      compsJs +
+      "window.el = React.createElement(Used, {aNumber: 1});",
+      null,
+      passOptions,
+      null);
+    String changesOutput = changes.toString();
+    // Used gets its validators, along with those of the component whose
+    // validators it aliases...
+    assertTrue(changesOutput,
+        changesOutput.contains("Used.PropsValidator = Unused.PropsValidator"));
+    assertTrue(changesOutput,
+        changesOutput.contains("+ Unused.PropsValidator = "));
+    // ...but components that are never created only get their props types.
+    assertTrue(changesOutput,
+        changesOutput.contains("UnusedClass.Props"));
+    assertFalse(changesOutput,
+        changesOutput.contains("UnusedClass.PropsValidator"));
+    // Props are still checked, both where elements are created and where the
+    // components use them.
+    passOptions = new ReactCompilerPass.Options();
+    passOptions.propTypesTypeChecking = true;
+    passOptions.insertValidatorsOnDemand = true;
+    test(
+      compsJs +
+      "window.el = React.createElement(Used, {aNumber: 'notANumber'});",
+      "",
+      passOptions,
+      DiagnosticType.error("JSC_TYPE_MISMATCH", ""));
+    test(
+      "class Comp extends React.Component {" +
+        "render() {" +
+          "var /** number */ n = this.props.aString;" +
+          "return null;" +
+        "}" +
+      "}" +
+      "Comp.propTypes = {aString: React.PropTypes.string.isRequired};",
+      "",
+      passOptions,
+      DiagnosticType.error("JSC_TYPE_MISMATCH", ""));
+  }
+
+  @Test public void testTypeSummaries() {
+    // Components and mixins from a library's type summary are known to the
+    // code that uses them, as if the library had been compiled together with
+    // it.
+    String summaryJs = new ReactTypeSummaryGenerator(
+        new PrintStream(ByteStreams.nullOutputStream())).generate(
+            ImmutableList.of(SourceFile.fromCode("/lib/lib.js",
+              "var LibMixin = React.createMixin({" +
+                "/** @param {string} s */" +
+                "mixinMethod: function(s) {window.foo = s;}" +
+              "});" +
+              "var LibComp = React.createClass({" +
+                "propTypes: {" +
+                  "aNumber: React.PropTypes.number.isRequired," +
+                  "aString: React.PropTypes.string" +
+                "}," +
+                "getDefaultProps: function() {return {aString: 'a'};}," +
+                "/** @return {{enabled: boolean}} */" +
+                "getInitialState: function() {return {enabled: false};}," +
+                "/** @return {number} */" +
+                "method: function() {return this.props.aNumber;}," +
+                "render: function() {return null;}" +
+              "});")));
+    testNoError(
+      summaryJs + FILE_SEPARATOR +
+      "var Comp = React.createClass({" +
+        "mixins: [LibMixin]," +
+        "render: function() {" +
+          "this.mixinMethod('a');" +
+          "return React.createElement(LibComp, {aNumber: 1});" +
+        "}" +
+      "});" +
+      "/** @param {LibComp.State} state */" +
+      "function useState(state) {}" +
+      "var inst = ReactDOM.render(" +
+        "React.createElement(LibComp, {aNumber: 1}), document.body);" +
+      "var /** number */ n = inst.method();" +
+      "/** @type {LibCompElement} */" +
+      "var el = React.createElement(LibComp, {aNumber: 2, aString: 'b'});");
+    testError(
+      summaryJs + FILE_SEPARATOR +
+      "React.createElement(LibComp, {aNumber: 'notANumber'});",
+      "JSC_TYPE_MISMATCH");
+    testError(
+      summaryJs + FILE_SEPARATOR +
+      "var Comp = React.createClass({" +
+        "mixins: [LibMixin]," +
+        "render: function() {" +
+          "this.mixinMethod(1);" +
+          "return null;" +
+        "}" +
+      "});",
+      "JSC_TYPE_MISMATCH");
+    // The library's types are not part of the output. Its validators are
+    // (since they're called by the code), but their calls are still inlined.
+    test(
+      summaryJs + FILE_SEPARATOR +
+      "ReactDOM.render(React.createElement(LibComp, {aNumber: 1}), " +
+        "document.body);",
+      "LibComp.$PropsValidator$=function(){return{aNumber:1}};" +
+      "LibComp.$PropsValidatorSpread$=function($props$jscomp$4$$){" +
+        "return $props$jscomp$4$$" +
+      "};" +
+      "ReactDOM.render(React.createElement(LibComp,{aNumber:1})," +
+        "document.body);");
+  }
+
   @Test public void testnoCollapseOfStaticMixinMethodsClass() {
     // Even when optimizing for size there is no renaming.
     ReactCompilerPass.Options passOptions = new ReactCompilerPass.Options();
@@ -4213,6 +5093,15 @@ public class ReactCompilerPassTest {
       null);
   }
 
+  private static int countOccurrences(String s, String substring) {
+    int count = 0;
+    for (int i = s.indexOf(substring); i != -1;
+        i = s.indexOf(substring, i + substring.length())) {
+      count++;
+    }
+    return count;
+  }
+
   private static void test(String inputJs, String expectedJs) {
     test(inputJs, expectedJs, null, null);
   }
@@ -4229,6 +5118,38 @@ public class ReactCompilerPassTest {
     test(inputJs, null, null, null);
   }
 
+  /**
+   * Compiles a program that does not use ReactDOMServer, then hot-swaps in a
+   * script that does, and returns the externs.
+   */
+  private static String compileAndHotSwap(
+        ReactCompilerPass.Options passOptions) {
+    Compiler compiler = new Compiler(
+        new PrintStream(ByteStreams.nullOutputStream())); // Silence logging
+    compiler.disableThreads();
+    CompilerOptions options = new CompilerOptions();
+    options.setLanguage(CompilerOptions.LanguageMode.ECMASCRIPT_2018);
+    options.setChecksOnly(true);
+    ReactCompilerPass compilerPass =
+        new ReactCompilerPass(compiler, passOptions);
+    options.addCustomPass(CustomPassExecutionTime.BEFORE_CHECKS, compilerPass);
+    Result result = compiler.compile(
+        ImmutableList.of(SourceFile.fromCode("externs.js", "var window;")),
+        ImmutableList.of(SourceFile.fromCode("/src/file1.js",
+            "window.foo = React.createElement(\"div\");")),
+        options);
+    assertTrue(Joiner.on(",").join(result.errors), result.success);
+
+    Node scriptRoot = new JsAst(SourceFile.fromCode("/src/file2.js",
+        "window.bar = ReactDOMServer.renderToString(" +
+            "React.createElement(\"div\"));"))
+        .getAstRoot(compiler);
+    compiler.getRoot().getSecondChild().addChildToBack(scriptRoot);
+    compilerPass.hotSwapScript(scriptRoot, null);
+    assertEquals(0, compiler.getErrorCount());
+    return compiler.toSource(compiler.getRoot().getFirstChild());
+  }
+
   private static void test(
         String inputJs,
         String expectedJs,
@@ -4237,7 +5158,9 @@ public class ReactCompilerPassTest {
     if (passOptions == null) {
       passOptions = new ReactCompilerPass.Options();
       passOptions.propTypesTypeChecking = true;
+      passOptions.pruneUnusedTypes = true;
     }
+    passOptions.verifyChangeReports = true;
     Compiler compiler = new Compiler(
         new PrintStream(ByteStreams.nullOutputStream())); // Silence logging
     compiler.disableThreads(); // Makes errors easier to track down.
@@ -0,0 +1,229 @@
+package info.persistent.react.jscomp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Files;
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Test {@link ReactLanguageServer}.
+ */
+public class ReactLanguageServerTest {
+  @Rule public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private final Gson gson = new Gson();
+  private ExecutorService executor;
+  private OutputStream toServer;
+  private InputStream fromServer;
+  private Future<Integer> exitCode;
+  private int nextId = 1;
+
+  @Before public void setUp() throws IOException {
+    PipedInputStream serverIn = new PipedInputStream(1 << 16);
+    toServer = new PipedOutputStream(serverIn);
+    PipedInputStream clientIn = new PipedInputStream(1 << 16);
+    OutputStream serverOut = new PipedOutputStream(clientIn);
+    fromServer = clientIn;
+    ReactLanguageServer server = new ReactLanguageServer(serverIn, serverOut);
+    executor = Executors.newSingleThreadExecutor();
+    exitCode = executor.submit(server::run);
+  }
+
+  @After public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test public void testDiagnostics() throws Exception {
+    File comp = tempFolder.newFile("comp.js");
+    Files.asCharSink(comp, Charsets.UTF_8).write(
+        "var Comp = React.createClass({" +
+          "propTypes: {aNumber: React.PropTypes.number.isRequired}," +
+          "render: function() {return null;}" +
+        "});");
+    File input = tempFolder.newFile("input.js");
+    Files.asCharSink(input, Charsets.UTF_8).write(
+        "window.comp = React.createElement(Comp, {aNumber: 42});");
+    String inputUri = input.toPath().toUri().toString();
+
+    JsonObject initializationOptions = new JsonObject();
+    initializationOptions.add("args", gson.toJsonTree(new String[] {
+        "--compilation_level=ADVANCED",
+        "--js", comp.getPath(),
+        "--js", input.getPath()}));
+    JsonObject initializeParams = new JsonObject();
+    initializeParams.add("initializationOptions", initializationOptions);
+    int initializeId = sendRequest("initialize", initializeParams);
+    JsonObject initializeResponse = readMessage();
+    assertEquals(initializeId, initializeResponse.get("id").getAsInt());
+    assertTrue(initializeResponse.toString(),
+        initializeResponse.getAsJsonObject("result").has("capabilities"));
+    sendNotification("initialized", new JsonObject());
+
+    // An unsaved edit with a props mismatch is reported for that file...
+    JsonObject textDocument = new JsonObject();
+    textDocument.addProperty("uri", inputUri);
+    textDocument.addProperty("text", "\n" +
+        "window.comp = React.createElement(Comp, {aNumber: 'notANumber'});");
+    JsonObject didOpenParams = new JsonObject();
+    didOpenParams.add("textDocument", textDocument);
+    sendNotification("textDocument/didOpen", didOpenParams);
+
+    JsonObject diagnosticsParams = readDiagnostics(inputUri, 1);
+    JsonObject diagnostic = diagnosticsParams.getAsJsonArray("diagnostics")
+        .get(0).getAsJsonObject();
+    assertEquals("REACT_PROP_TYPES_VALIDATION_MISMATCH",
+        diagnostic.get("code").getAsString());
+    assertEquals(2, diagnostic.get("severity").getAsInt());
+    assertEquals(1, diagnostic.getAsJsonObject("range")
+        .getAsJsonObject("start").get("line").getAsInt());
+
+    // ...and cleared once it's fixed.
+    JsonObject change = new JsonObject();
+    change.addProperty("text",
+        "window.comp = React.createElement(Comp, {aNumber: 42});");
+    JsonArray contentChanges = new JsonArray();
+    contentChanges.add(change);
+    JsonObject versionedTextDocument = new JsonObject();
+    versionedTextDocument.addProperty("uri", inputUri);
+    JsonObject didChangeParams = new JsonObject();
+    didChangeParams.add("textDocument", versionedTextDocument);
+    didChangeParams.add("contentChanges", contentChanges);
+    sendNotification("textDocument/didChange", didChangeParams);
+    readDiagnostics(inputUri, 0);
+
+    int shutdownId = sendRequest("shutdown", new JsonObject());
+    assertEquals(shutdownId, readMessage().get("id").getAsInt());
+    sendNotification("exit", new JsonObject());
+    assertEquals(0, (int) exitCode.get(10, TimeUnit.SECONDS));
+  }
+
+  @Test public void testUnsupportedRequest() throws Exception {
+    int id = sendRequest("textDocument/hover", new JsonObject());
+    JsonObject response = readMessage();
+    assertEquals(id, response.get("id").getAsInt());
+    assertEquals(-32601,
+        response.getAsJsonObject("error").get("code").getAsInt());
+  }
+
+  @Test public void testMalformedParams() throws Exception {
+    // Notifications with missing params are ignored...
+    sendNotification("textDocument/didOpen", new JsonObject());
+    sendNotification("textDocument/didChange", new JsonObject());
+    // ...and requests with mistyped ones get an error response.
+    JsonObject initializationOptions = new JsonObject();
+    initializationOptions.addProperty("args", "notAnArray");
+    JsonObject initializeParams = new JsonObject();
+    initializeParams.add("initializationOptions", initializationOptions);
+    int initializeId = sendRequest("initialize", initializeParams);
+    JsonObject initializeResponse = readMessage();
+    assertEquals(initializeId, initializeResponse.get("id").getAsInt());
+    assertEquals(-32602,
+        initializeResponse.getAsJsonObject("error").get("code").getAsInt());
+
+    // The server keeps handling messages.
+    int shutdownId = sendRequest("shutdown", new JsonObject());
+    JsonObject shutdownResponse = readMessage();
+    assertEquals(shutdownId, shutdownResponse.get("id").getAsInt());
+    assertTrue(shutdownResponse.toString(), shutdownResponse.has("result"));
+    sendNotification("exit", new JsonObject());
+    assertEquals(0, (int) exitCode.get(10, TimeUnit.SECONDS));
+  }
+
+  /**
+   * Reads messages until diagnostics with the given count are published for
+   * the URI (earlier checks may still be reported).
+   */
+  private JsonObject readDiagnostics(String uri, int count) throws IOException {
+    while (true) {
+      JsonObject message = readMessage();
+      if (!message.has("method") || !message.get("method").getAsString()
+          .equals("textDocument/publishDiagnostics")) {
+        continue;
+      }
+      JsonObject params = message.getAsJsonObject("params");
+      if (params.get("uri").getAsString().equals(uri) &&
+          params.getAsJsonArray("diagnostics").size() == count) {
+        return params;
+      }
+    }
+  }
+
+  private int sendRequest(String method, JsonObject params) throws IOException {
+    int id = nextId++;
+    JsonObject message = new JsonObject();
+    message.add("id", new JsonPrimitive(id));
+    message.addProperty("method", method);
+    message.add("params", params);
+    send(message);
+    return id;
+  }
+
+  private void sendNotification(String method, JsonObject params)
+      throws IOException {
+    JsonObject message = new JsonObject();
+    message.addProperty("method", method);
+    message.add("params", params);
+    send(message);
+  }
+
+  private void send(JsonObject message) throws IOException {
+    message.addProperty("jsonrpc", "2.0");
+    byte[] content = gson.toJson(message).getBytes(Charsets.UTF_8);
+    toServer.write(("Content-Length: " + content.length + "\r\n\r\n")
+        .getBytes(Charsets.US_ASCII));
+    toServer.write(content);
+    toServer.flush();
+  }
+
+  private JsonObject readMessage() throws IOException {
+    int contentLength = -1;
+    while (true) {
+      ByteArrayOutputStream line = new ByteArrayOutputStream();
+      int c;
+      while ((c = fromServer.read()) != '\n') {
+        if (c == -1) {
+          throw new IOException("Server closed its output");
+        }
+        if (c != '\r') {
+          line.write(c);
+        }
+      }
+      String header = new String(line.toByteArray(), Charsets.US_ASCII);
+      if (header.isEmpty()) {
+        break;
+      }
+      if (header.startsWith("Content-Length:")) {
+        contentLength = Integer.parseInt(
+            header.substring("Content-Length:".length()).trim());
+      }
+    }
+    byte[] content = new byte[contentLength];
+    ByteStreams.readFully(fromServer, content);
+    return gson.fromJson(
+        new String(content, Charsets.UTF_8), JsonObject.class);
+  }
+}
@@ -0,0 +1,187 @@
+package info.persistent.react.jscomp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Files;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+
+/**
+ * Test {@link ReactMultiBundleRunner}.
+ */
+public class ReactMultiBundleRunnerTest {
+  @Rule public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  @Test public void testBundles() throws Exception {
+    write("common.js",
+        "goog.provide('common');\n" +
+        "common.Label = React.createClass({" +
+          "propTypes: {text: React.PropTypes.string.isRequired}," +
+          "render: function() {" +
+            "return React.createElement('span', null, this.props.text);" +
+          "}" +
+        "});");
+    write("home.js",
+        "goog.provide('home');\n" +
+        "goog.require('common');\n" +
+        "ReactDOM.render(React.createElement(common.Label, {text: 'home'})," +
+          "document.body);");
+    write("settings.js",
+        "goog.require('common');\n" +
+        "ReactDOM.render(React.createElement(common.Label, {text: 'settings'})," +
+          "document.body);");
+    write("unused.js", "window.unused = 'unused';");
+
+    ReactMultiBundleRunner.Manifest manifest =
+        new ReactMultiBundleRunner.Manifest();
+    manifest.sources = ImmutableList.of(
+        "common.js", "home.js", "settings.js", "unused.js");
+    manifest.bundles = ImmutableList.of(
+        bundle("out/home.js", "goog:home"),
+        bundle("out/settings.js", "settings.js"));
+
+    String err = run(manifest, true);
+    assertEquals("", err);
+    String homeJs = read("out/home.js");
+    assertTrue(homeJs, homeJs.contains("\"home\""));
+    assertTrue(homeJs, homeJs.contains("render"));
+    assertFalse(homeJs, homeJs.contains("\"settings\""));
+    assertFalse(homeJs, homeJs.contains("unused"));
+    String settingsJs = read("out/settings.js");
+    assertTrue(settingsJs, settingsJs.contains("\"settings\""));
+    assertFalse(settingsJs, settingsJs.contains("\"home\""));
+    assertFalse(settingsJs, settingsJs.contains("unused"));
+  }
+
+  @Test public void testBundleErrors() throws Exception {
+    write("common.js",
+        "goog.provide('common');\n" +
+        "common.Label = React.createClass({" +
+          "propTypes: {text: React.PropTypes.string.isRequired}," +
+          "render: function() {return null;}" +
+        "});");
+    write("good.js",
+        "goog.require('common');\n" +
+        "window.good = React.createElement(common.Label, {text: 'good'});");
+    write("bad.js",
+        "goog.require('common');\n" +
+        "window.bad = React.createElement(common.Label, {text: 42});");
+    write("syntax.js", "window.syntax = ;");
+
+    ReactMultiBundleRunner.Manifest manifest =
+        new ReactMultiBundleRunner.Manifest();
+    manifest.sources = ImmutableList.of(
+        "common.js", "good.js", "bad.js", "syntax.js");
+    manifest.bundles = ImmutableList.of(
+        bundle("out/good.js", "good.js"),
+        bundle("out/bad.js", "bad.js"),
+        bundle("out/syntax.js", "syntax.js"));
+
+    String err = run(manifest, false);
+    // Errors are attributed to the bundles that have them.
+    assertFalse(err, err.contains("out/good.js:"));
+    assertTrue(err, err.contains("out/bad.js:"));
+    assertTrue(err, err.contains("[REACT_PROP_TYPES_VALIDATION_MISMATCH]"));
+    assertTrue(err, err.contains("out/syntax.js:"));
+    assertTrue(err, err.contains("Parse error"));
+    assertTrue(err, new File(tempFolder.getRoot(), "out/good.js").exists());
+    assertFalse(err, new File(tempFolder.getRoot(), "out/syntax.js").exists());
+  }
+
+  @Test public void testVariants() throws Exception {
+    write("home.js",
+        "var Label = React.createClass({" +
+          "propTypes: {text: React.PropTypes.string.isRequired}," +
+          "render: function() {" +
+            "return React.createElement('span', null, this.props.text);" +
+          "}" +
+        "});\n" +
+        "ReactDOM.render(React.createElement(Label, {text: 42})," +
+          "document.body);");
+
+    ReactMultiBundleRunner.Variant checks =
+        new ReactMultiBundleRunner.Variant();
+    checks.name = "checks";
+    checks.checksOnly = true;
+    ReactMultiBundleRunner.Variant prod = new ReactMultiBundleRunner.Variant();
+    prod.name = "prod";
+    prod.propTypesTypeChecking = false;
+    prod.optimizeForSize = true;
+    prod.outputSuffix = ".min";
+    ReactMultiBundleRunner.Manifest manifest =
+        new ReactMultiBundleRunner.Manifest();
+    manifest.sources = ImmutableList.of("home.js");
+    manifest.bundles = ImmutableList.of(bundle("out/home.js", "home.js"));
+    manifest.variants = ImmutableList.of(checks, prod);
+
+    String err = run(manifest, true);
+    // Props are only checked by the variant that type checks them...
+    assertTrue(err, err.contains("out/home.js (checks):"));
+    assertTrue(err, err.contains("[REACT_PROP_TYPES_VALIDATION_MISMATCH]"));
+    assertFalse(err, err.contains("(prod)"));
+    // ...and only the other one has output (optimized for size).
+    assertFalse(new File(tempFolder.getRoot(), "out/home.js").exists());
+    String homeMinJs = read("out/home.min.js");
+    assertTrue(homeMinJs, homeMinJs.contains("render"));
+    assertFalse(homeMinJs, homeMinJs.contains("propTypes"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testDuplicateOutputs() throws Exception {
+    write("home.js", "window.home = 'home';");
+
+    // A null suffix is the same as an empty one, so both variants would
+    // write out/home.js.
+    ReactMultiBundleRunner.Variant debug = new ReactMultiBundleRunner.Variant();
+    debug.name = "debug";
+    debug.outputSuffix = null;
+    ReactMultiBundleRunner.Variant prod = new ReactMultiBundleRunner.Variant();
+    prod.name = "prod";
+    prod.optimizeForSize = true;
+    ReactMultiBundleRunner.Manifest manifest =
+        new ReactMultiBundleRunner.Manifest();
+    manifest.sources = ImmutableList.of("home.js");
+    manifest.bundles = ImmutableList.of(bundle("out/home.js", "home.js"));
+    manifest.variants = ImmutableList.of(debug, prod);
+
+    run(manifest, false);
+  }
+
+  private static ReactMultiBundleRunner.Bundle bundle(
+      String output, String entryPoint) {
+    ReactMultiBundleRunner.Bundle bundle = new ReactMultiBundleRunner.Bundle();
+    bundle.output = output;
+    bundle.entryPoints = ImmutableList.of(entryPoint);
+    return bundle;
+  }
+
+  private String run(ReactMultiBundleRunner.Manifest manifest,
+      boolean expectedSuccess) throws Exception {
+    ByteArrayOutputStream err = new ByteArrayOutputStream();
+    ReactMultiBundleRunner runner = new ReactMultiBundleRunner(
+        manifest, tempFolder.getRoot(), 2, new PrintStream(err));
+    assertEquals(err.toString(), expectedSuccess, runner.run());
+    return err.toString();
+  }
+
+  private void write(String path, String contents) throws IOException {
+    Files.asCharSink(new File(tempFolder.getRoot(), path), Charsets.UTF_8)
+        .write(contents);
+  }
+
+  private String read(String path) throws IOException {
+    return Files.asCharSource(
+        new File(tempFolder.getRoot(), path), Charsets.UTF_8).read();
+  }
+}
@@ -0,0 +1,89 @@
+package info.persistent.react.jscomp;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.ImmutableList;
+
+import com.google.javascript.jscomp.SourceFile;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+/**
+ * Test {@link ReactTypeSummaryGenerator}.
+ */
+public class ReactTypeSummaryGeneratorTest {
+  @Test public void testSummary() {
+    String summary = generate(
+        "goog.provide('lib');\n" +
+        "/** @param {string} s @return {number} */\n" +
+        "lib.helper = function(s) {return s.length;};\n" +
+        "lib.helper('side effect');\n" +
+        "lib.Mixin = React.createMixin({\n" +
+        "  /** @return {number} */\n" +
+        "  mixinMethod: function() {return lib.helper('mixin');}\n" +
+        "});\n" +
+        "lib.Comp = React.createClass({\n" +
+        "  mixins: [lib.Mixin],\n" +
+        "  propTypes: {label: React.PropTypes.string.isRequired},\n" +
+        "  getDefaultProps: function() {return {label: lib.helper('a')};},\n" +
+        "  getInitialState: function() {\n" +
+        "    /** @private {number} */\n" +
+        "    this.count_ = lib.helper('count');\n" +
+        "    return null;\n" +
+        "  },\n" +
+        "  render: function() {return React.createElement('div');}\n" +
+        "});\n" +
+        "class ClassComp extends React.Component {\n" +
+        "  render() {return React.createElement('div');}\n" +
+        "}\n" +
+        "ClassComp.propTypes = {size: React.PropTypes.number};\n" +
+        "ClassComp.defaultProps = {size: lib.helper('size')};\n");
+    assertTrue(summary, summary.startsWith("/** @fileoverview @typeSummary */"));
+    assertTrue(summary, summary.contains("goog.provide(\"lib\")"));
+    // Declarations are kept (without their bodies), other statements are not.
+    assertTrue(summary, summary.contains("lib.helper = function(s) {\n}"));
+    assertFalse(summary, summary.contains("side effect"));
+    // React calls are kept, but their methods are stubbed out.
+    assertTrue(summary, summary.contains("lib.Mixin = React.createMixin("));
+    assertTrue(summary, summary.contains("lib.Comp = React.createClass("));
+    assertTrue(summary, summary.contains("mixins:[lib.Mixin]"));
+    assertTrue(summary,
+        summary.contains("propTypes:{label:React.PropTypes.string.isRequired}"));
+    assertTrue(summary,
+        summary.contains("return {label:/** @type {?} */ (0)};"));
+    assertTrue(summary,
+        summary.contains("/** @private @type {number} */ this.count_;"));
+    assertTrue(summary,
+        summary.contains("ClassComp.propTypes = {size:React.PropTypes.number}"));
+    assertTrue(summary,
+        summary.contains("ClassComp.defaultProps = {size:/** @type {?} */ (0)}"));
+    assertFalse(summary, summary.contains("'mixin'"));
+    assertFalse(summary, summary.contains("createElement"));
+    assertFalse(summary, summary.contains("lib.helper("));
+  }
+
+  @Test public void testModulesNotSupported() {
+    ByteArrayOutputStream err = new ByteArrayOutputStream();
+    String summary = new ReactTypeSummaryGenerator(new PrintStream(err))
+        .generate(ImmutableList.of(SourceFile.fromCode("lib.js",
+            "export const Comp = React.createClass({" +
+              "render: function() {return null;}" +
+            "});")));
+    assertNull(summary);
+    assertTrue(err.toString(),
+        err.toString().contains("REACT_TYPE_SUMMARY_MODULES_NOT_SUPPORTED"));
+  }
+
+  private static String generate(String libraryJs) {
+    ByteArrayOutputStream err = new ByteArrayOutputStream();
+    String summary = new ReactTypeSummaryGenerator(new PrintStream(err))
+        .generate(ImmutableList.of(SourceFile.fromCode("lib.js", libraryJs)));
+    assertTrue(err.toString(), summary != null);
+    return summary;
+  }
+}
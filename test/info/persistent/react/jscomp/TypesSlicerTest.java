@@ -0,0 +1,78 @@
+package info.persistent.react.jscomp;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.google.javascript.jscomp.Compiler;
+import com.google.javascript.jscomp.CompilerOptions;
+import com.google.javascript.jscomp.SourceFile;
+import com.google.javascript.rhino.Node;
+
+import org.junit.Test;
+
+/**
+ * Test {@link TypesSlicer}.
+ */
+public class TypesSlicerTest {
+  @Test public void testUsedPropertiesAreKept() {
+    String typesJs = slice(
+        "ReactDOM.render(" +
+          "React.createElement(\"div\", {onClick: function() {}})," +
+          "document.body);");
+    // Referenced roots and their types are kept.
+    assertTrue(typesJs.contains("var ReactDOM;"));
+    assertTrue(typesJs.contains("function ReactDOMModule()"));
+    assertTrue(typesJs.contains("ReactDOMModule.prototype.render ="));
+    assertTrue(typesJs.contains("ReactModule.prototype.createElement ="));
+    // Used properties are kept even if their root is not referenced (so that
+    // they are not renamed).
+    assertTrue(typesJs.contains("ReactDOMProps.prototype.onClick;"));
+    assertTrue(typesJs.contains("function ReactDOMProps()"));
+    // Unused parts of the API are removed.
+    assertFalse(typesJs.contains("ReactDOMProps.prototype.onWheel;"));
+    assertFalse(typesJs.contains("ReactDOMServerModule"));
+    assertFalse(typesJs.contains("ReactAddonsPerf"));
+  }
+
+  @Test public void testRecordFieldsAreKept() {
+    // children is only declared via a record type.
+    String typesJs = slice("window.foo = window.bar.children;");
+    assertTrue(typesJs.contains("var ReactPropsChildren;"));
+    assertFalse(typesJs.contains("var ReactDOM;"));
+  }
+
+  @Test public void testRecordFieldsInSourceJsDocAreUsed() {
+    // onClick is only used as the field of a record type.
+    String typesJs = slice(
+        "/** @param {{onClick: function()}} props */\n" +
+        "function render(props) {}");
+    assertTrue(typesJs.contains("ReactDOMProps.prototype.onClick;"));
+    assertFalse(typesJs.contains("ReactDOMProps.prototype.onWheel;"));
+  }
+
+  @Test public void testQualifyingDeclarationsAreKept() {
+    String typesJs = slice("window.foo.isRequired;");
+    assertTrue(typesJs.contains("ReactPropTypes.prototype.array.isRequired;"));
+    assertTrue(typesJs.contains("ReactPropTypes.prototype.array;"));
+    assertTrue(typesJs.contains("function ReactPropTypes()"));
+    // As well as the types referenced from their JSDoc.
+    assertTrue(typesJs.contains("var ReactPropsChainableTypeChecker;"));
+  }
+
+  private static String slice(String js) {
+    Compiler compiler = new Compiler();
+    CompilerOptions options = new CompilerOptions();
+    options.preserveTypeAnnotations = true;
+    options.setPrettyPrint(true);
+    compiler.initOptions(options);
+    compiler.disableThreads(); // Makes errors easier to track down.
+    Node root = compiler.parse(SourceFile.fromCode("/src/test.js", js));
+    Node typesNode = compiler.parse(SourceFile.fromCode(
+        React.TYPES_JS_RESOURCE_PATH, React.getTypesJs()));
+
+    TypesSlicer typesSlicer = new TypesSlicer();
+    typesSlicer.addSourceUsages(root);
+    typesSlicer.slice(typesNode);
+    return compiler.toSource(typesNode);
+  }
+}